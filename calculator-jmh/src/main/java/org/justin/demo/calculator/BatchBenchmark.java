@@ -0,0 +1,102 @@
+package org.justin.demo.calculator;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to apply one formula to every row of int columns, row at a time (BatchEvaluator) versus column at a time
+ * (ColumnarEvaluator), each sequential and on the common ForkJoinPool:
+ * - scale:  add(mult(a, 3), b), array-constant and array-array operations
+ * - mixed:  let(c, sub(a, b), add(mult(c, c), mult(a, 7))), a let bound register reused twice
+ * - divide: add(div(a, b), mult(b, 2)), int division does not vectorize, so this measures dispatch savings only
+ *
+ * java -jar calculator-jmh/target/benchmarks.jar BatchBenchmark -prof gc
+ * @author justin.cranford
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class BatchBenchmark {
+	@Param({"scale", "mixed", "divide"})
+	public String formula;
+
+	@Param({"1000000"})
+	public int rows;
+
+	private int[][]           columns;
+	private BatchEvaluator    rowAtATime;
+	private ColumnarEvaluator columnar;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		final String equation;
+		switch(this.formula) {
+			case("scale")  : equation = "add(mult(a, 3), b)"; break;
+			case("mixed")  : equation = "let(c, sub(a, b), add(mult(c, c), mult(a, 7)))"; break;
+			case("divide") : equation = "add(div(a, b), mult(b, 2))"; break;
+			default        : throw new IllegalArgumentException("Unknown formula " + this.formula);
+		}
+		final Random random = new Random(1L);
+		this.columns = new int[2][this.rows];
+		for (int i=0; i<this.rows; i++) {
+			this.columns[0][i] = random.nextInt();
+			this.columns[1][i] = random.nextInt(1000) + 1;	// never zero
+		}
+		this.rowAtATime = BatchEvaluator.parse(equation, "a", "b");
+		this.columnar   = ColumnarEvaluator.parse(equation, "a", "b");
+		if (!Arrays.equals(this.rowAtATime.evaluateSequential(this.columns), this.columnar.evaluateSequential(this.columns))) {
+			throw new IllegalStateException("Evaluators disagree for " + equation);
+		}
+	}
+
+	@Benchmark
+	public int[] rowAtATimeSequential() {
+		return this.rowAtATime.evaluateSequential(this.columns);
+	}
+
+	@Benchmark
+	public int[] columnarSequential() {
+		return this.columnar.evaluateSequential(this.columns);
+	}
+
+	@Benchmark
+	public int[] rowAtATimeParallel() {
+		return this.rowAtATime.evaluate(this.columns);
+	}
+
+	@Benchmark
+	public int[] columnarParallel() {
+		return this.columnar.evaluate(this.columns);
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.include(BatchBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
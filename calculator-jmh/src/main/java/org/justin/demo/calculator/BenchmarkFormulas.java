@@ -0,0 +1,76 @@
+package org.justin.demo.calculator;
+
+/**
+ * Generate benchmark equations by shape name. Shape names are "kind-size", so JMH reports one row per shape:
+ * - nested-N: N nested operations, add(1, mult(2, sub(3, ...))), no div so no divide by zero
+ * - let-N:    chain of N let bindings, each adding 1 to the previous one, let(a, add(1, 1), let(b, add(a, 1), ...))
+ * - width-N:  fixed shape with N digit operands, sub(add(mult(987, 987), 987), div(987, 987))
+ * @author justin.cranford
+ */
+/*package*/ final class BenchmarkFormulas {
+	private static final String[] OPERATORS = {"add", "mult", "sub"};
+	private static final String   LETTERS   = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+	private BenchmarkFormulas() {
+		// static methods only
+	}
+
+	/*package*/ static String generate(final String shape) {
+		final int separator = shape.lastIndexOf('-');
+		final String kind = shape.substring(0, separator);
+		final int    size = Integer.parseInt(shape.substring(separator + 1));
+		switch(kind) {
+			case("nested") : return BenchmarkFormulas.nested(size);
+			case("let")    : return BenchmarkFormulas.letChain(size);
+			case("width")  : return BenchmarkFormulas.width(size);
+			default        : throw new IllegalArgumentException("Unknown shape " + shape);
+		}
+	}
+
+	/**
+	 * Right-nested operations cycling through add, mult, sub. Results wrap on overflow, same as Calc.
+	 */
+	/*package*/ static String nested(final int depth) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i=0; i<depth; i++) {
+			sb.append(BenchmarkFormulas.OPERATORS[i % BenchmarkFormulas.OPERATORS.length]).append('(').append(i + 1).append(", ");
+		}
+		sb.append(depth + 1);
+		for (int i=0; i<depth; i++) {
+			sb.append(')');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Let chain where each binding adds 1 to the previous binding. Letters are reused (shadowed) after 52 bindings.
+	 */
+	/*package*/ static String letChain(final int length) {
+		final StringBuilder sb = new StringBuilder();
+		String previous = "1";
+		for (int i=0; i<length; i++) {
+			final String letter = String.valueOf(BenchmarkFormulas.LETTERS.charAt(i % BenchmarkFormulas.LETTERS.length()));
+			sb.append("let(").append(letter).append(", add(").append(previous).append(", 1), ");
+			previous = letter;
+		}
+		sb.append("mult(").append(previous).append(", 2)");
+		for (int i=0; i<length; i++) {
+			sb.append(')');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Fixed shape of three operations, with every operand having the given number of digits (1 to 9, so no int parse overflow).
+	 */
+	/*package*/ static String width(final int digits) {
+		if ((digits < 1) || (digits > 9)) {
+			throw new IllegalArgumentException("Invalid width. Must be 1 to 9 digits.");
+		}
+		final StringBuilder operand = new StringBuilder();
+		for (int i=0; i<digits; i++) {
+			operand.append((char) ('9' - (i % 9)));
+		}
+		return "sub(add(mult(" + operand + ", " + operand + "), " + operand + "), div(" + operand + ", " + operand + "))";
+	}
+}
@@ -0,0 +1,133 @@
+package org.justin.demo.calculator;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of each calculator stage for each equation shape in BenchmarkFormulas:
+ * - compute*:  Calc.compute end to end, cache hit plus evaluation (the steady state of streaming and server modes)
+ * - parse*:    uncached parse, and parse plus optimize (the cost of a cache miss)
+ * - compile:   uncached parse plus bytecode generation (the cost of a COMPILER cache miss)
+ * - tokenize:  legacy Calc.tokenizeExpression of the top-level operation
+ * - evaluate*: evaluation only of a pre-parsed, unoptimized tree, interpreted or compiled
+ * - evaluateLong, evaluateBigInteger, evaluateAdaptive: evaluation only in the wide numeric modes
+ *
+ * Run every benchmark with the GC profiler, which reports gc.alloc.rate.norm (bytes allocated per operation):
+ * java -jar calculator-jmh/target/benchmarks.jar -prof gc
+ * or run main(), which adds the GC profiler. Extra arguments are passed to JMH, ex: -p shape=let-52
+ * @author justin.cranford
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class CalcBenchmark {
+	@Param({"nested-1", "nested-8", "nested-64", "nested-512", "let-1", "let-8", "let-52", "width-1", "width-5", "width-9"})
+	public String shape;
+
+	private String        equation;
+	private Formula       formula;	// unoptimized, so evaluation benchmarks measure the whole tree
+	private IntExpression compiled;
+	private Formula       wideFormula;	// literals parsed for BIG_INTEGER and ADAPTIVE modes
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		this.equation    = BenchmarkFormulas.generate(this.shape);
+		this.formula     = Parser.parse(this.equation);
+		this.compiled    = ExpressionCompiler.compile(this.formula);
+		this.wideFormula = Parser.parse(this.equation, Calc.NumericMode.BIG_INTEGER);
+		if (this.formula.evaluate() != this.compiled.evaluate()) {
+			throw new IllegalStateException("Backends disagree for " + this.equation);
+		}
+		Calc.compute(this.equation, Calc.Backend.INTERPRETER);	// warm caches, so compute benchmarks measure hits
+		Calc.compute(this.equation, Calc.Backend.COMPILER);
+	}
+
+	@Benchmark
+	public int computeInterpreter() throws Exception {
+		return Calc.compute(this.equation, Calc.Backend.INTERPRETER);
+	}
+
+	@Benchmark
+	public int computeCompiler() throws Exception {
+		return Calc.compute(this.equation, Calc.Backend.COMPILER);
+	}
+
+	@Benchmark
+	public Formula parse() throws Exception {
+		return Parser.parse(this.equation);
+	}
+
+	@Benchmark
+	public Formula parseOptimize() throws Exception {
+		return Optimizer.optimize(Parser.parse(this.equation));
+	}
+
+	@Benchmark
+	public IntExpression compile() throws Exception {
+		return ExpressionCompiler.compile(Parser.parse(this.equation));
+	}
+
+	@Benchmark
+	public List<String> tokenize() throws Exception {
+		return Calc.tokenizeExpression(this.equation);
+	}
+
+	@Benchmark
+	public int evaluateInterpreter() {
+		return this.formula.evaluate();
+	}
+
+	@Benchmark
+	public int evaluateCompiled() {
+		return this.compiled.evaluate();
+	}
+
+	@Benchmark
+	public long evaluateLong() {
+		try {
+			return this.wideFormula.evaluateLong();
+		} catch(ArithmeticException e) {
+			return 0L;	// nested shapes overflow long, measure the cost of detecting it
+		}
+	}
+
+	@Benchmark
+	public Object evaluateBigInteger() {
+		return this.wideFormula.evaluateBigInteger();
+	}
+
+	@Benchmark
+	public Object evaluateAdaptive() {
+		return this.wideFormula.evaluateAdaptive();
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.include(CalcBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
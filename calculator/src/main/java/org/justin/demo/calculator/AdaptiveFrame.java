@@ -0,0 +1,37 @@
+package org.justin.demo.calculator;
+
+import java.math.BigInteger;
+
+/**
+ * Frame for adaptive evaluation. Let bindings are stored as a long, or as a BigInteger if they do not fit in a long.
+ * Each node returns its value as a long, and if the value does not fit, stores it in overflow instead. The consuming
+ * node takes the overflow before evaluating its next operand, so at most one overflow is pending at any time.
+ * @author justin.cranford
+ */
+/*package*/ final class AdaptiveFrame {
+	/*package*/ final long[]       values;
+	/*package*/ final BigInteger[] bigValues;	// null entry means the slot value is in values
+	/*package*/ BigInteger overflow = null;		// value of the last evaluated node if it does not fit in a long
+
+	/*package*/ AdaptiveFrame(final int frameSize) {
+		this.values    = new long[frameSize];
+		this.bigValues = new BigInteger[frameSize];
+	}
+
+	/*package*/ BigInteger takeOverflow() {
+		final BigInteger taken = this.overflow;
+		this.overflow = null;
+		return taken;
+	}
+
+	/**
+	 * Return the value as a long if it fits, else store it as the pending overflow.
+	 */
+	/*package*/ long narrow(final BigInteger value) {
+		if (value.bitLength() < 64) {
+			return value.longValue();
+		}
+		this.overflow = value;
+		return 0L;
+	}
+}
@@ -0,0 +1,169 @@
+package org.justin.demo.calculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * Asynchronous JDK14 logging handler. Logging threads only claim a slot in a fixed-size ring buffer and store the record,
+ * with no lock and no I/O. A background daemon thread drains the ring buffer, formats records, and writes them to the
+ * log file through a direct ByteBuffer and FileChannel.
+ *
+ * Ring buffer protocol: producers claim increasing sequence numbers with an atomic increment. Sequence N uses slot
+ * (N mod capacity), and a producer waits only if the drainer is a full lap behind. The drainer consumes sequences in
+ * order, so records are written in claim order.
+ * @author justin.cranford
+ */
+public final class AsyncFileHandler extends Handler {
+	/*package*/ static final int DEFAULT_CAPACITY = 8192;	// must be a power of two
+	private static final int   WRITE_BUFFER_SIZE = 1 << 16;
+	private static final long  IDLE_PARK_NANOS   = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final AtomicReferenceArray<LogRecord> slots;
+	private final int         mask;
+	private final AtomicLong  claimed  = new AtomicLong();	// next sequence to claim by producers
+	private volatile long     consumed = 0;					// next sequence to drain by the drainer
+	private volatile long     written  = 0;					// every sequence before this one is written to the channel
+	private volatile boolean  closed   = false;
+	private final FileChannel channel;
+	private final Thread      drainer;
+
+	public AsyncFileHandler(final String logfile) throws IOException {
+		this(logfile, AsyncFileHandler.DEFAULT_CAPACITY);
+	}
+
+	public AsyncFileHandler(final String logfile, final int capacity) throws IOException {
+		if ((capacity <= 0) || (0 != (capacity & (capacity - 1)))) {
+			throw new IllegalArgumentException("Invalid capacity. Must be a power of two.");
+		}
+		this.slots   = new AtomicReferenceArray<>(capacity);
+		this.mask    = capacity - 1;
+		this.channel = FileChannel.open(Paths.get(logfile), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);	// same as FileHandler default, no append
+		this.setFormatter(new SimpleFormatter());
+		this.drainer = new Thread(new Drainer(), "calculator-log-writer");
+		this.drainer.setDaemon(true);
+		this.drainer.start();
+	}
+
+	@Override
+	public void publish(final LogRecord record) {
+		if (this.closed || !this.isLoggable(record)) {
+			return;
+		}
+		final long sequence = this.claimed.getAndIncrement();
+		while (sequence - this.consumed > this.mask) {	// ring buffer full, wait for the drainer to free the slot
+			LockSupport.unpark(this.drainer);
+			Thread.yield();
+		}
+		this.slots.set((int) sequence & this.mask, record);	// volatile write publishes record to the drainer
+	}
+
+	/**
+	 * Block until every record published before this call is written to the file channel.
+	 */
+	@Override
+	public void flush() {
+		final long target = this.claimed.get();
+		while ((this.written < target) && this.drainer.isAlive()) {
+			LockSupport.unpark(this.drainer);
+			Thread.yield();
+		}
+	}
+
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.flush();
+		this.closed = true;
+		LockSupport.unpark(this.drainer);
+		try {
+			this.drainer.join(TimeUnit.SECONDS.toMillis(5));
+			this.channel.close();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(IOException e) {
+			this.reportError("Failed to close log file", e, ErrorManager.CLOSE_FAILURE);
+		}
+	}
+
+	private final class Drainer implements Runnable {
+		private final ByteBuffer     buffer  = ByteBuffer.allocateDirect(AsyncFileHandler.WRITE_BUFFER_SIZE);
+		private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+		private long next = 0;	// next sequence to drain, only accessed by the drainer thread
+
+		@Override
+		public void run() {
+			final AsyncFileHandler handler = AsyncFileHandler.this;
+			while (true) {
+				final int slot = (int) this.next & handler.mask;
+				final LogRecord record = handler.slots.get(slot);
+				if (null == record) {	// nothing published yet for this sequence, or the claiming producer has not stored it yet
+					this.write();
+					if (handler.closed && (this.next >= handler.claimed.get())) {
+						return;
+					}
+					LockSupport.parkNanos(AsyncFileHandler.IDLE_PARK_NANOS);
+					continue;
+				}
+				handler.slots.lazySet(slot, null);
+				this.encode(record);
+				handler.consumed = ++this.next;	// slot is free for the next lap
+			}
+		}
+
+		private void encode(final LogRecord record) {
+			final String message;
+			try {
+				message = AsyncFileHandler.this.getFormatter().format(record);
+			} catch(Exception e) {
+				AsyncFileHandler.this.reportError("Failed to format log record", e, ErrorManager.FORMAT_FAILURE);
+				return;
+			}
+			final CharBuffer chars = CharBuffer.wrap(message);
+			while (true) {
+				final CoderResult result = this.encoder.encode(chars, this.buffer, true);
+				if (!result.isOverflow()) {
+					break;
+				}
+				this.write();	// buffer full, write it and continue encoding
+			}
+			this.encoder.reset();
+		}
+
+		/**
+		 * Write buffered bytes, which contain every record before the next sequence.
+		 */
+		private void write() {
+			if (0 == this.buffer.position()) {
+				AsyncFileHandler.this.written = this.next;
+				return;
+			}
+			this.buffer.flip();
+			try {
+				while (this.buffer.hasRemaining()) {
+					AsyncFileHandler.this.channel.write(this.buffer);
+				}
+			} catch(IOException e) {
+				AsyncFileHandler.this.reportError("Failed to write log file", e, ErrorManager.WRITE_FAILURE);
+			}
+			this.buffer.clear();
+			AsyncFileHandler.this.written = this.next;
+		}
+	}
+}
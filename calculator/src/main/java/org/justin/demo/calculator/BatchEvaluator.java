@@ -0,0 +1,126 @@
+package org.justin.demo.calculator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluate one equation over many rows of variable bindings. The equation is parsed once with its free variables bound
+ * to the first frame slots. Bindings are supplied as columns, one int[] per free variable, and results are returned as
+ * one int[] with a value per row. Rows are split into chunks evaluated in parallel on the common ForkJoinPool.
+ *
+ * Example:
+ * BatchEvaluator.parse("add(mult(a, 10), b)", "a", "b").evaluate(new int[][]{{1, 2, 3}, {4, 5, 6}}) => {14, 25, 36}
+ * @author justin.cranford
+ */
+public final class BatchEvaluator {
+	/*package*/ static final int CHUNK_SIZE = 8192;	// rows evaluated sequentially per fork/join task
+
+	private final Formula  formula;
+	private final String[] variables;
+
+	private BatchEvaluator(final Formula formula, final String[] variables) {
+		this.formula   = formula;
+		this.variables = variables;
+	}
+
+	/**
+	 * Parse and optimize equation with free variables. Each variable must be a unique single letter. Throws Exception for parse errors.
+	 */
+	public static BatchEvaluator parse(final String equation, final String... variables) throws Exception {
+		if (null == equation) {
+			throw new Exception("null equation");
+		} else if (null == variables) {
+			throw new Exception("null variables");
+		}
+		return new BatchEvaluator(Optimizer.optimize(Parser.parse(ExpressionCache.normalize(equation), variables)), variables.clone());
+	}
+
+	public String[] getVariables() {
+		return this.variables.clone();
+	}
+
+	/**
+	 * Evaluate every row. Columns are in the same order as the variables passed to parse(), and must have the same length.
+	 * Throws ArithmeticException if any row divides by zero.
+	 */
+	public int[] evaluate(final int[][] columns) {
+		final int rows = this.validate(columns);
+		final int[] results = new int[rows];
+		final ChunkTask task = new ChunkTask(this.formula, columns, results, 0, rows);
+		if (rows <= BatchEvaluator.CHUNK_SIZE) {
+			task.compute();	// avoid fork/join overhead for small batches
+		} else {
+			ForkJoinPool.commonPool().invoke(task);
+		}
+		return results;
+	}
+
+	/**
+	 * Evaluate every row on the calling thread only.
+	 */
+	public int[] evaluateSequential(final int[][] columns) {
+		final int rows = this.validate(columns);
+		final int[] results = new int[rows];
+		BatchEvaluator.evaluateRows(this.formula, columns, results, 0, rows);
+		return results;
+	}
+
+	private int validate(final int[][] columns) {
+		if (null == columns) {
+			throw new IllegalArgumentException("Null columns");
+		} else if (columns.length != this.variables.length) {
+			throw new IllegalArgumentException("Expected " + this.variables.length + " columns, got " + columns.length);
+		} else if (0 == columns.length) {
+			throw new IllegalArgumentException("Batch requires at least one variable column");
+		}
+		final int rows = columns[0].length;
+		for (int i=1; i<columns.length; i++) {
+			if (columns[i].length != rows) {
+				throw new IllegalArgumentException("Column " + this.variables[i] + " has " + columns[i].length + " rows, expected " + rows);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Tight loop over rows [from, to). One frame is reused for every row, free variable slots are overwritten per row.
+	 */
+	/*package*/ static void evaluateRows(final Formula formula, final int[][] columns, final int[] results, final int from, final int to) {
+		final Expression expression = formula.getExpression();
+		final int numColumns = columns.length;
+		final int[] frame = new int[Math.max(formula.getFrameSize(), numColumns)];	// optimizer may remove every variable
+		for (int row=from; row<to; row++) {
+			for (int column=0; column<numColumns; column++) {
+				frame[column] = columns[column][row];
+			}
+			results[row] = expression.evaluate(frame);
+		}
+	}
+
+	private static final class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Formula formula;
+		private final int[][] columns;
+		private final int[]   results;
+		private final int     from;
+		private final int     to;
+
+		/*package*/ ChunkTask(final Formula formula, final int[][] columns, final int[] results, final int from, final int to) {
+			this.formula = formula;
+			this.columns = columns;
+			this.results = results;
+			this.from    = from;
+			this.to      = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= BatchEvaluator.CHUNK_SIZE) {
+				BatchEvaluator.evaluateRows(this.formula, this.columns, this.results, this.from, this.to);
+			} else {
+				final int middle = (this.from + this.to) >>> 1;
+				RecursiveAction.invokeAll(new ChunkTask(this.formula, this.columns, this.results, this.from, middle), new ChunkTask(this.formula, this.columns, this.results, middle, this.to));
+			}
+		}
+	}
+}
@@ -1,18 +1,44 @@
 package org.justin.demo.calculator;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public final class Calc {
 	private static final Pattern FUNCTION = Pattern.compile("^\\s*(\\w+)\\s*\\(\\s*(.+)\\s*\\)\\s*$");	// " let ( a , -25 , a ) "
-	private static final Pattern NUMBER   = Pattern.compile("^([\\+-]?\\d+)$");								// " -25 "
-	private static final Pattern LETTER   = Pattern.compile("^([a-zA-Z])$");								// " A "
+	private static final int     CACHE_SIZE      = Integer.getInteger("calculator.cache.size", ExpressionCache.DEFAULT_MAX_SIZE).intValue();
+	private static final Backend DEFAULT_BACKEND = Backend.valueOf(System.getProperty("calculator.backend", Backend.INTERPRETER.name()).toUpperCase());
+	private static final NumericMode DEFAULT_NUMERIC_MODE = NumericMode.valueOf(System.getProperty("calculator.mode", NumericMode.INT.name()).toUpperCase());
+	private static final boolean OPTIMIZE        = Boolean.parseBoolean(System.getProperty("calculator.optimize", "true"));
+	private static final ExpressionCache INTERPRETER_CACHE = new ExpressionCache(Calc.CACHE_SIZE, Backend.INTERPRETER, Calc.OPTIMIZE);
+	private static final ExpressionCache COMPILER_CACHE    = new ExpressionCache(Calc.CACHE_SIZE, Backend.COMPILER, Calc.OPTIMIZE);
+	private static final ExpressionCache LONG_CACHE        = new ExpressionCache(Calc.CACHE_SIZE, NumericMode.LONG);
+	private static final ExpressionCache BIG_INTEGER_CACHE = new ExpressionCache(Calc.CACHE_SIZE, NumericMode.BIG_INTEGER);	// also used by ADAPTIVE, same literals
 
 	/**
-	 * Compute input equation. This method strips whitespace, validates against null and empty, initializes empty variable scope, and invokes private API.
+	 * Evaluation backends. INTERPRETER walks the parsed expression tree. COMPILER generates a JVM class per equation.
+	 * Default is selected by system property calculator.backend=(INTERPRETER,COMPILER).
+	 */
+	public static enum Backend {
+		INTERPRETER, COMPILER
+	}
+
+	/**
+	 * Numeric modes. INT wraps on overflow (original behavior). LONG throws ArithmeticException("long overflow").
+	 * BIG_INTEGER never overflows. ADAPTIVE computes with long, and promotes to BigInteger only for subexpressions that
+	 * overflow. Backends apply to INT only, wide modes are always interpreted.
+	 * Default is selected by system property calculator.mode=(INT,LONG,BIG_INTEGER,ADAPTIVE).
+	 */
+	public static enum NumericMode {
+		INT, LONG, BIG_INTEGER, ADAPTIVE
+	}
+
+	/**
+	 * Compute input equation using the default backend. This method validates against null and empty, looks up the
+	 * parsed expression in the shared cache (parsing it in a single pass and optimizing it on a miss), and evaluates it
+	 * starting with an empty variable scope. Optimization is disabled by system property calculator.optimize=false.
 	 * 
 	 * Example inputs:
 	 * add(2, 2)
@@ -24,58 +50,137 @@ public final class Calc {
 	 * let(a, let(b, 10, add(b, b)), let(b, 20, add(a, b))
 	 */
 	public static int compute(String equation) throws Exception {
+		return Calc.compute(equation, Calc.DEFAULT_BACKEND);
+	}
+
+	/**
+	 * Compute input equation using the specified backend. Both backends return the same results and throw the same
+	 * exceptions, so they can be compared.
+	 */
+	public static int compute(final String equation, final Backend backend) throws Exception {
+		if (null == equation) {
+			throw new Exception("null equation");
+		}
+		try {
+			return Calc.getCache(backend).get(equation).evaluate();
+		} catch(Throwable t) {				// catch unchecked exceptions (i.e. error and runtime) for debug logging (ex: NullPointerException, RuntimeException, etc)
+			Calc.debugLog(t);
+			throw t;						// rethrow exception
+		}
+	}
+
+	/**
+	 * Compute input equation with long arithmetic. Literals may be any long, and overflow throws ArithmeticException.
+	 * 
+	 * Example input:
+	 * mult(4000000000, 4000000000) => 16000000000000000000 overflows, throws ArithmeticException
+	 * add(4000000000, 4000000000)  => 8000000000
+	 */
+	public static long computeLong(final String equation) throws Exception {
 		if (null == equation) {
 			throw new Exception("null equation");
 		}
-		final String equationNoWhitespace = equation.replaceAll(" ", "");
-		if (equationNoWhitespace.isEmpty()) {
-			throw new Exception("empty equation");
+		try {
+			return Calc.LONG_CACHE.getFormula(equation).evaluateLong();
+		} catch(Throwable t) {
+			Calc.debugLog(t);
+			throw t;
 		}
-		return Calc.compute(new HashMap<String,Integer>(), equationNoWhitespace);
 	}
 
 	/**
-	 * Private API. It assumes no nulls or empty strings.
+	 * Compute input equation with BigInteger arithmetic. Literals have no size limit, and results never overflow.
 	 */
-	private static int compute(final HashMap<String,Integer> variables, final String equation) throws Exception {
+	public static BigInteger computeBigInteger(final String equation) throws Exception {
+		if (null == equation) {
+			throw new Exception("null equation");
+		}
 		try {
-			final Matcher numberMatcher = Calc.NUMBER.matcher(equation);
-			if (numberMatcher.find()) {
-				return Integer.parseInt(numberMatcher.group(1));
-			}
-			final Matcher letterMatcher = Calc.LETTER.matcher(equation);
-			if (letterMatcher.find()) {
-				final String letter = letterMatcher.group(1);
-				final Integer value = variables.get(letter);
-				if (null == value) {
-					throw new Exception("unknown variable " + letter);
-				}
-				return value.intValue();
-			}
-			final List<String> functionTokens = Calc.tokenizeExpression(equation);
-			final String operator = functionTokens.get(0);
-			if (3 == functionTokens.size()) {	// 0th is operation, 1st and 2nd are operands
-				switch(operator) {
-					case("add")  : return Calc.compute(variables, functionTokens.get(1)) + Calc.compute(variables, functionTokens.get(2));
-					case("sub")  : return Calc.compute(variables, functionTokens.get(1)) - Calc.compute(variables, functionTokens.get(2));
-					case("mult") : return Calc.compute(variables, functionTokens.get(1)) * Calc.compute(variables, functionTokens.get(2));
-					case("div")  : return Calc.compute(variables, functionTokens.get(1)) / Calc.compute(variables, functionTokens.get(2));
-					default: throw new Exception("unknown operator " + operator);
-				}
-			} else if (4 == functionTokens.size()) {	// 0th is operation, 1st and 2nd and 3rd are operands
-				if (operator.equals("let")) {
-					final String  letter = functionTokens.get(1);
-					final Integer number = new Integer(Calc.compute(variables, functionTokens.get(2)));
-					final HashMap<String,Integer> scopedVariables = new HashMap<>(variables);	// pass by copy, not by reference, shallow copy sufficient for immutable content
-					scopedVariables.put(letter, number);	// save the variable assignment
-					return Calc.compute(scopedVariables, functionTokens.get(3));	// recursive call with new scopedVariables
-				}
-				throw new Exception("unknown operator " + operator);
-			}
-			throw new Exception("unknown operation " + equation);
-		} catch(Throwable t) {				// catch unchecked exceptions (i.e. error and runtime) for debug logging (ex: NullPointerException, RuntimeException, etc)
+			return Calc.BIG_INTEGER_CACHE.getFormula(equation).evaluateBigInteger();
+		} catch(Throwable t) {
+			Calc.debugLog(t);
+			throw t;
+		}
+	}
+
+	/**
+	 * Compute input equation with long arithmetic, promoting to BigInteger only where a subexpression overflows.
+	 * Returns a Long if the result fits, else a BigInteger. Results are the same as computeBigInteger().
+	 */
+	public static Number computeAdaptive(final String equation) throws Exception {
+		if (null == equation) {
+			throw new Exception("null equation");
+		}
+		try {
+			return Calc.BIG_INTEGER_CACHE.getFormula(equation).evaluateAdaptive();
+		} catch(Throwable t) {
+			Calc.debugLog(t);
+			throw t;
+		}
+	}
+
+	/**
+	 * Compute input equation in any numeric mode, and return the result as text. Used by line-oriented modes.
+	 */
+	public static String computeToString(final String equation, final NumericMode numericMode, final Backend backend) throws Exception {
+		switch(numericMode) {
+			case INT         : return Integer.toString(Calc.compute(equation, backend));
+			case LONG        : return Long.toString(Calc.computeLong(equation));
+			case BIG_INTEGER : return Calc.computeBigInteger(equation).toString();
+			default          : return Calc.computeAdaptive(equation).toString();
+		}
+	}
+
+	/**
+	 * Compute input equation once per row of variable bindings. Variables are single letters, and columns hold one
+	 * int[] of values per variable. Equation is parsed once, and blocks of rows are evaluated column at a time in parallel.
+	 * 
+	 * Example input:
+	 * computeBatch("add(a, mult(b, 2))", new String[]{"a", "b"}, new int[][]{{1, 2}, {10, 20}}) => {21, 42}
+	 */
+	public static int[] computeBatch(final String equation, final String[] variables, final int[][] columns) throws Exception {
+		try {
+			return ColumnarEvaluator.parse(equation, variables).evaluate(columns);
+		} catch(Throwable t) {
+			Calc.debugLog(t);
+			throw t;
+		}
+	}
+
+	/**
+	 * Log a failed computation at debug level. Callers rethrow the original throwable, so checked exceptions keep their
+	 * precise types, and results are returned directly instead of through a lambda that would box int and long results.
+	 */
+	private static void debugLog(final Throwable t) {
+		if (Log.isDebugEnabled()) {
 			Log.debug(t.getMessage(), t);	// log throwable as debug
-			throw t;						// rethrow exception
+		}
+	}
+
+	public static Backend getDefaultBackend() {
+		return Calc.DEFAULT_BACKEND;
+	}
+
+	public static NumericMode getDefaultNumericMode() {
+		return Calc.DEFAULT_NUMERIC_MODE;
+	}
+
+	/**
+	 * Shared cache of parsed expressions used by compute() for the default backend. Exposed for hit, miss, and eviction counters.
+	 */
+	public static ExpressionCache getCache() {
+		return Calc.getCache(Calc.DEFAULT_BACKEND);
+	}
+
+	public static ExpressionCache getCache(final Backend backend) {
+		return (Backend.COMPILER == backend) ? Calc.COMPILER_CACHE : Calc.INTERPRETER_CACHE;
+	}
+
+	public static ExpressionCache getCache(final NumericMode numericMode) {
+		switch(numericMode) {
+			case INT  : return Calc.getCache();
+			case LONG : return Calc.LONG_CACHE;
+			default   : return Calc.BIG_INTEGER_CACHE;
 		}
 	}
 
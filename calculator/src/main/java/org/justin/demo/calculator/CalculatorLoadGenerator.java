@@ -0,0 +1,166 @@
+package org.justin.demo.calculator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Load generator for CalculatorServer. Opens N connections, each on its own thread, and sends equations round-robin
+ * with up to pipelineDepth requests in flight per connection. Latency of each request is measured from the time it is
+ * written to the time its response line is read, so it includes queuing behind earlier pipelined requests.
+ *
+ * Example:
+ * new CalculatorLoadGenerator(new InetSocketAddress("localhost", 9000), 4, 100000, 16, "add(1, 2)").run() => p50, p99, requests/sec
+ * @author justin.cranford
+ */
+public final class CalculatorLoadGenerator {
+	private final InetSocketAddress address;
+	private final int               connections;
+	private final int               requestsPerConnection;
+	private final int               pipelineDepth;
+	private final byte[][]          requests;	// encoded request lines, including '\n'
+
+	public CalculatorLoadGenerator(final InetSocketAddress address, final int connections, final int requestsPerConnection, final int pipelineDepth, final String... equations) {
+		if (connections <= 0) {
+			throw new IllegalArgumentException("Invalid number of connections. Must be 1 or more.");
+		} else if (requestsPerConnection <= 0) {
+			throw new IllegalArgumentException("Invalid number of requests. Must be 1 or more.");
+		} else if (pipelineDepth <= 0) {
+			throw new IllegalArgumentException("Invalid pipeline depth. Must be 1 or more.");
+		} else if ((null == equations) || (0 == equations.length)) {
+			throw new IllegalArgumentException("Load generator requires at least one equation");
+		}
+		this.address               = address;
+		this.connections           = connections;
+		this.requestsPerConnection = requestsPerConnection;
+		this.pipelineDepth         = pipelineDepth;
+		this.requests              = new byte[equations.length][];
+		for (int i=0; i<equations.length; i++) {
+			this.requests[i] = (equations[i] + "\n").getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Run every connection to completion, and return the combined latency distribution and throughput.
+	 */
+	public Result run() throws IOException, InterruptedException {
+		final ConnectionLoad[] loads   = new ConnectionLoad[this.connections];
+		final Thread[]         threads = new Thread[this.connections];
+		for (int i=0; i<this.connections; i++) {
+			loads[i]   = new ConnectionLoad();
+			threads[i] = new Thread(loads[i], "calculator-load-" + i);
+		}
+		final long startNanos = System.nanoTime();
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		final long elapsedNanos = System.nanoTime() - startNanos;
+		final long[] latencies = new long[this.connections * this.requestsPerConnection];
+		long errors = 0;
+		for (int i=0; i<this.connections; i++) {
+			if (null != loads[i].failure) {
+				throw loads[i].failure;
+			}
+			System.arraycopy(loads[i].latencies, 0, latencies, i * this.requestsPerConnection, this.requestsPerConnection);
+			errors += loads[i].errors;
+		}
+		Arrays.sort(latencies);
+		return new Result(latencies, errors, elapsedNanos);
+	}
+
+	private final class ConnectionLoad implements Runnable {
+		/*package*/ final long[] latencies = new long[CalculatorLoadGenerator.this.requestsPerConnection];
+		/*package*/ long errors = 0;
+		/*package*/ IOException failure = null;
+
+		@Override
+		public void run() {
+			final CalculatorLoadGenerator generator = CalculatorLoadGenerator.this;
+			final int total = generator.requestsPerConnection;
+			final long[] sendNanos = new long[generator.pipelineDepth];	// ring of in-flight request send times
+			try (final Socket socket = new Socket()) {
+				socket.setTcpNoDelay(true);
+				socket.connect(generator.address);
+				final OutputStream   output = new BufferedOutputStream(socket.getOutputStream(), CalculatorServer.BUFFER_SIZE);
+				final BufferedReader input  = new BufferedReader(new InputStreamReader(new BufferedInputStream(socket.getInputStream(), CalculatorServer.BUFFER_SIZE), StandardCharsets.UTF_8));
+				int sent     = 0;
+				int received = 0;
+				while (received < total) {
+					while ((sent < total) && (sent - received < generator.pipelineDepth)) {
+						output.write(generator.requests[sent % generator.requests.length]);
+						sendNanos[sent % generator.pipelineDepth] = System.nanoTime();
+						sent++;
+					}
+					if (!input.ready()) {
+						output.flush();	// flush only before blocking, so a full window goes out in one write
+					}
+					final String response = input.readLine();
+					if (null == response) {
+						throw new IOException("Server closed connection after " + received + " of " + total + " responses");
+					}
+					this.latencies[received] = System.nanoTime() - sendNanos[received % generator.pipelineDepth];
+					if (response.startsWith(StreamingCalculator.ERROR_PREFIX)) {
+						this.errors++;
+					}
+					received++;
+				}
+			} catch(IOException e) {
+				this.failure = e;
+			}
+		}
+	}
+
+	/**
+	 * Sorted request latencies in nanoseconds, plus error count and wall clock time for the whole run.
+	 */
+	public static final class Result {
+		private final long[] latencies;
+		private final long   errors;
+		private final long   elapsedNanos;
+
+		/*package*/ Result(final long[] sortedLatencies, final long errors, final long elapsedNanos) {
+			this.latencies    = sortedLatencies;
+			this.errors       = errors;
+			this.elapsedNanos = Math.max(1L, elapsedNanos);
+		}
+
+		public long getRequests() {
+			return this.latencies.length;
+		}
+		public long getErrors() {
+			return this.errors;
+		}
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+		public double getRequestsPerSecond() {
+			return (this.latencies.length * 1000000000D) / this.elapsedNanos;
+		}
+
+		/**
+		 * Latency at the percentile (0 to 100) in nanoseconds, using the nearest-rank method.
+		 */
+		public long getLatencyNanos(final double percentile) {
+			if ((percentile < 0D) || (percentile > 100D)) {
+				throw new IllegalArgumentException("Invalid percentile. Must be 0 to 100.");
+			}
+			final int rank = (int) Math.ceil((percentile / 100D) * this.latencies.length);
+			return this.latencies[Math.max(0, rank - 1)];
+		}
+
+		@Override
+		public String toString() {
+			return "Sent " + this.latencies.length + " requests with " + this.errors + " errors in " + (this.elapsedNanos / 1000000L) + "ms, " + (long) this.getRequestsPerSecond() + " requests/sec, p50=" + (this.getLatencyNanos(50D) / 1000L) + "us, p99=" + (this.getLatencyNanos(99D) / 1000L) + "us, max=" + (this.latencies[this.latencies.length - 1] / 1000L) + "us";
+		}
+	}
+}
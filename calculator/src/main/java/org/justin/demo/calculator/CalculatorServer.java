@@ -0,0 +1,345 @@
+package org.justin.demo.calculator;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Long-running calculator server. Clients send newline-delimited equations over TCP, and receive one result line per
+ * equation, in request order, in the same format as StreamingCalculator ("error: message" for failures). Clients may
+ * pipeline any number of requests without waiting for responses.
+ *
+ * One acceptor thread hands new connections round-robin to N event loop threads. Each event loop owns a NIO Selector
+ * and evaluates equations inline, so there is no per-request thread hand-off. All connections share the Calc
+ * expression cache, so an equation is parsed and compiled once per server, not once per connection.
+ *
+ * Backpressure: a connection is not read while its responses cannot be written, so a client that pipelines requests
+ * but does not read responses only fills its own socket buffers.
+ * @author justin.cranford
+ */
+public final class CalculatorServer implements AutoCloseable {
+	/*package*/ static final int BUFFER_SIZE = 1 << 16;	// also the max request line length, longer lines are answered with an error and skipped
+	private static final int MAX_RESPONSE_LENGTH = 1024;	// longer error messages are truncated
+	private static final byte[] LINE_TOO_LONG = (StreamingCalculator.ERROR_PREFIX + "line too long\n").getBytes(StandardCharsets.UTF_8);
+
+	private final Calc.Backend        backend;
+	private final Calc.NumericMode    numericMode;
+	private final ServerSocketChannel serverChannel;
+	private final EventLoop[]         eventLoops;
+	private final Thread              acceptor;
+	private volatile boolean          running = true;
+
+	/**
+	 * Bind to the port (0 for any free port) on the loopback address, and start the acceptor and event loop threads. The
+	 * server has no authentication, so pass an explicit address to listen on other interfaces.
+	 */
+	public CalculatorServer(final int port, final Calc.Backend backend, final int numEventLoops) throws IOException {
+		this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), backend, Calc.NumericMode.INT, numEventLoops);
+	}
+
+	public CalculatorServer(final InetSocketAddress address, final Calc.Backend backend, final int numEventLoops) throws IOException {
+		this(address, backend, Calc.NumericMode.INT, numEventLoops);
+	}
+
+	public CalculatorServer(final InetSocketAddress address, final Calc.Backend backend, final Calc.NumericMode numericMode, final int numEventLoops) throws IOException {
+		if (numEventLoops <= 0) {
+			throw new IllegalArgumentException("Invalid number of event loops. Must be 1 or more.");
+		}
+		this.backend       = backend;
+		this.numericMode   = numericMode;
+		this.serverChannel = ServerSocketChannel.open();
+		this.eventLoops    = new EventLoop[numEventLoops];
+		try {
+			this.serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, Boolean.TRUE);
+			this.serverChannel.bind(address, 1024);
+			for (int i=0; i<numEventLoops; i++) {
+				this.eventLoops[i] = new EventLoop("calculator-server-loop-" + i);
+			}
+		} catch(IOException e) {
+			this.closeQuietly();
+			throw e;
+		}
+		for (final EventLoop eventLoop : this.eventLoops) {
+			eventLoop.start();
+		}
+		this.acceptor = new Thread(new Acceptor(), "calculator-server-acceptor");
+		this.acceptor.start();
+	}
+
+	public int getPort() {
+		return this.serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Total requests answered across all connections.
+	 */
+	public long getRequests() {
+		long requests = 0;
+		for (final EventLoop eventLoop : this.eventLoops) {
+			requests += eventLoop.requests;
+		}
+		return requests;
+	}
+
+	/**
+	 * Block until the server is closed.
+	 */
+	public void awaitTermination() throws InterruptedException {
+		this.acceptor.join();
+		for (final EventLoop eventLoop : this.eventLoops) {
+			eventLoop.join();
+		}
+	}
+
+	/**
+	 * Stop accepting, close every connection, and wait for the threads to exit. If interrupted while waiting, stop waiting
+	 * and restore the interrupt flag for the caller.
+	 */
+	@Override
+	public void close() {
+		this.closeQuietly();
+		try {
+			this.awaitTermination();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void closeQuietly() {
+		this.running = false;
+		try {
+			this.serverChannel.close();	// unblocks accept()
+		} catch(IOException e) {
+			Log.error("Failed to close server channel", e);
+		}
+		for (final EventLoop eventLoop : this.eventLoops) {
+			if (null != eventLoop) {
+				eventLoop.selector.wakeup();
+			}
+		}
+	}
+
+	private final class Acceptor implements Runnable {
+		@Override
+		public void run() {
+			final CalculatorServer server = CalculatorServer.this;
+			int next = 0;
+			while (server.running) {
+				try {
+					final SocketChannel channel = server.serverChannel.accept();
+					channel.setOption(StandardSocketOptions.TCP_NODELAY, Boolean.TRUE);
+					server.eventLoops[next].register(channel);
+					next = (next + 1) % server.eventLoops.length;
+				} catch(ClosedChannelException e) {
+					break;	// closed by close()
+				} catch(IOException e) {
+					if (server.running) {
+						Log.error("Failed to accept connection", e);
+					}
+				}
+			}
+		}
+	}
+
+	private final class EventLoop extends Thread {
+		/*package*/ final Selector selector;
+		private final ConcurrentLinkedQueue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+		private final char[] digits = new char[11];	// shared by every connection of this event loop
+		/*package*/ volatile long requests = 0;
+
+		/*package*/ EventLoop(final String name) throws IOException {
+			super(name);
+			this.selector = Selector.open();
+		}
+
+		/*package*/ void register(final SocketChannel channel) {
+			this.pending.add(channel);
+			this.selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (CalculatorServer.this.running) {
+					this.selector.select();
+					SocketChannel channel;
+					while (null != (channel = this.pending.poll())) {
+						try {
+							channel.configureBlocking(false);
+							channel.register(this.selector, SelectionKey.OP_READ, new Connection(channel));
+						} catch(IOException e) {
+							Connection.closeQuietly(channel);
+						}
+					}
+					final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						final SelectionKey key = keys.next();
+						keys.remove();
+						final Connection connection = (Connection) key.attachment();
+						try {
+							if (key.isValid()) {
+								this.handle(key, connection);
+							}
+						} catch(IOException e) {
+							if (Log.isDebugEnabled()) {
+								Log.debug("Connection closed: " + e.getMessage());
+							}
+							key.cancel();
+							Connection.closeQuietly(connection.channel);
+						}
+					}
+				}
+			} catch(IOException e) {
+				Log.error("Event loop failed", e);
+			} finally {
+				for (final SelectionKey key : this.selector.keys()) {
+					Connection.closeQuietly((SocketChannel) key.channel());
+				}
+				SocketChannel channel;
+				while (null != (channel = this.pending.poll())) {
+					Connection.closeQuietly(channel);
+				}
+				try {
+					this.selector.close();
+				} catch(IOException e) {
+					Log.error("Failed to close selector", e);
+				}
+			}
+		}
+
+		/**
+		 * Read available requests, answer every complete line, and write as many responses as the socket accepts.
+		 * Interest is OP_WRITE while responses are pending, else OP_READ.
+		 */
+		private void handle(final SelectionKey key, final Connection connection) throws IOException {
+			if (key.isReadable()) {
+				if (connection.channel.read(connection.in) < 0) {
+					connection.endOfInput = true;
+				}
+			}
+			this.answer(connection);
+			connection.flush();
+			if ((connection.out.position() > 0) || connection.pendingLines) {
+				key.interestOps(SelectionKey.OP_WRITE);	// stop reading until responses drain, then answer buffered requests
+			} else if (connection.endOfInput) {
+				key.cancel();
+				connection.channel.close();
+			} else {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		/**
+		 * Evaluate buffered lines until none are left or the output buffer cannot hold another response.
+		 */
+		private void answer(final Connection connection) throws IOException {
+			final ByteBuffer in  = connection.in;
+			final ByteBuffer out = connection.out;
+			if (connection.endOfInput && (in.position() > 0) && ('\n' != in.get(in.position() - 1)) && in.hasRemaining()) {
+				in.put((byte) '\n');	// answer the last line even if the client did not terminate it
+			}
+			connection.pendingLines = false;
+			in.flip();
+			final byte[] bytes = in.array();
+			int start = in.position();
+			long answered = 0;
+			for (int i=start; i<in.limit(); i++) {
+				if ('\n' != bytes[i]) {
+					continue;
+				} else if (connection.discarding) {
+					connection.discarding = false;	// end of the line that was too long, next line is a new request
+					start = i + 1;
+					continue;
+				}
+				if (out.remaining() < CalculatorServer.MAX_RESPONSE_LENGTH) {
+					connection.flush();
+					if (out.remaining() < CalculatorServer.MAX_RESPONSE_LENGTH) {
+						connection.pendingLines = true;	// leave the line buffered until the socket is writable
+						break;
+					}
+				}
+				final int end = ((i > start) && ('\r' == bytes[i - 1])) ? i - 1 : i;
+				this.respond(new String(bytes, start, end - start, StandardCharsets.UTF_8), out);
+				answered++;
+				start = i + 1;
+			}
+			in.position(start);
+			in.compact();
+			this.requests += answered;
+			if (!in.hasRemaining() && !connection.pendingLines) {	// buffer is full without a complete line
+				if (!connection.discarding) {
+					connection.flush();
+					if (out.remaining() < CalculatorServer.LINE_TOO_LONG.length) {
+						return;	// retry when the socket is writable
+					}
+					out.put(CalculatorServer.LINE_TOO_LONG);
+					this.requests++;
+					connection.discarding = true;
+				}
+				in.clear();	// drop the rest of the line up to the next newline
+			}
+		}
+
+		private void respond(final String equation, final ByteBuffer out) {
+			try {
+				if (Calc.NumericMode.INT == CalculatorServer.this.numericMode) {
+					final int result = Calc.compute(equation, CalculatorServer.this.backend);
+					final int start = StreamingCalculator.formatInt(result, this.digits);
+					for (int i=start; i<this.digits.length; i++) {
+						out.put((byte) this.digits[i]);
+					}
+				} else {
+					final byte[] result = Calc.computeToString(equation, CalculatorServer.this.numericMode, CalculatorServer.this.backend).getBytes(StandardCharsets.US_ASCII);
+					out.put(result, 0, Math.min(result.length, CalculatorServer.MAX_RESPONSE_LENGTH - 1));	// huge BigInteger results are truncated
+				}
+			} catch(Exception | StackOverflowError e) {	// one deeply nested equation must not stop the event loop
+				final byte[] message = (StreamingCalculator.ERROR_PREFIX + e.getMessage()).getBytes(StandardCharsets.UTF_8);
+				out.put(message, 0, Math.min(message.length, CalculatorServer.MAX_RESPONSE_LENGTH - 1));
+			}
+			out.put((byte) '\n');
+		}
+	}
+
+	private static final class Connection {
+		/*package*/ final SocketChannel channel;
+		/*package*/ final ByteBuffer in  = ByteBuffer.allocate(CalculatorServer.BUFFER_SIZE);	// heap buffer, lines are decoded from its array
+		/*package*/ final ByteBuffer out = ByteBuffer.allocateDirect(CalculatorServer.BUFFER_SIZE);
+		/*package*/ boolean endOfInput   = false;
+		/*package*/ boolean pendingLines = false;	// complete request lines are buffered but not answered yet
+		/*package*/ boolean discarding   = false;	// skipping the rest of a line that was too long
+
+		/*package*/ Connection(final SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Write buffered responses without blocking. Unwritten bytes stay at the start of the output buffer.
+		 */
+		/*package*/ void flush() throws IOException {
+			if (0 == this.out.position()) {
+				return;
+			}
+			this.out.flip();
+			this.channel.write(this.out);
+			this.out.compact();
+		}
+
+		/*package*/ static void closeQuietly(final SocketChannel channel) {
+			try {
+				channel.close();
+			} catch(IOException e) {
+				// ignore
+			}
+		}
+	}
+}
@@ -0,0 +1,408 @@
+package org.justin.demo.calculator;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Evaluate one equation over many rows like BatchEvaluator, but column at a time instead of row at a time. The parsed
+ * and optimized formula is compiled once into a short program of whole-array operations, ex:
+ * add(mult(a, 10), b) => r0[] = a[] * 10; result[] = r0[] + b[]
+ * Rows are processed in blocks of BLOCK_SIZE, so every intermediate array (register) stays in the L1 cache, and each
+ * operation is a simple counted loop over int arrays that the JIT compiles to SIMD instructions (auto-vectorization)
+ * for add, sub, and mult. There is no per-row dispatch, tree walking, or frame copying.
+ *
+ * Operands of each operation are input columns, registers, or int constants, with separate loops for array-array,
+ * array-constant, and constant-array operations. Let bindings alias the register or column holding their value, and
+ * registers are reused once their values are consumed, so the number of registers is small.
+ *
+ * Results and exceptions are exactly the same as BatchEvaluator: ArithmeticException("/ by zero") if any row divides by zero.
+ * @author justin.cranford
+ */
+public final class ColumnarEvaluator {
+	/*package*/ static final int BLOCK_SIZE = 1024;	// rows per block, 4KB per register
+
+	private static final int ADD_AA  = 0;	// dst[] = a[] op b[]
+	private static final int SUB_AA  = 1;
+	private static final int MULT_AA = 2;
+	private static final int DIV_AA  = 3;
+	private static final int ADD_AC  = 4;	// dst[] = a[] op c
+	private static final int SUB_AC  = 5;
+	private static final int MULT_AC = 6;
+	private static final int DIV_AC  = 7;
+	private static final int SUB_CA  = 8;	// dst[] = c op b[], add and mult constants are moved to the right
+	private static final int DIV_CA  = 9;
+	private static final int FILL    = 10;	// dst[] = c
+
+	private final String[] variables;
+	private final String   equation;
+	private final int[]    code;	// opcode, dst, a, b: a and b are array ids or constants depending on opcode
+	private final int      registers;
+
+	private ColumnarEvaluator(final String[] variables, final String equation, final int[] code, final int registers) {
+		this.variables = variables;
+		this.equation  = equation;
+		this.code      = code;
+		this.registers = registers;
+	}
+
+	/**
+	 * Parse, optimize, and compile equation with free variables. Each variable must be a unique single letter. Throws Exception for parse errors.
+	 */
+	public static ColumnarEvaluator parse(final String equation, final String... variables) throws Exception {
+		if (null == equation) {
+			throw new Exception("null equation");
+		} else if (null == variables) {
+			throw new Exception("null variables");
+		}
+		final Formula formula = Optimizer.optimize(Parser.parse(ExpressionCache.normalize(equation), variables));
+		final Compiler compiler = new Compiler(variables.length, Math.max(formula.getFrameSize(), variables.length));
+		final int[] code = compiler.compile(formula.getExpression());
+		return new ColumnarEvaluator(variables.clone(), formula.toString(), code, compiler.maxRegisters);
+	}
+
+	public String[] getVariables() {
+		return this.variables.clone();
+	}
+
+	/*package*/ int getOperationCount() {
+		return this.code.length / 4;
+	}
+
+	/*package*/ int getRegisterCount() {
+		return this.registers;
+	}
+
+	/**
+	 * Evaluate every row. Columns are in the same order as the variables passed to parse(), and must have the same length.
+	 * Blocks of rows are evaluated in parallel on the common ForkJoinPool. Throws ArithmeticException if any row divides by zero.
+	 */
+	public int[] evaluate(final int[][] columns) {
+		final int rows = this.validate(columns);
+		final int[] results = new int[rows];
+		final BlockTask task = new BlockTask(this, columns, results, 0, rows);
+		if (rows <= BatchEvaluator.CHUNK_SIZE) {
+			task.compute();	// avoid fork/join overhead for small batches
+		} else {
+			ForkJoinPool.commonPool().invoke(task);
+		}
+		return results;
+	}
+
+	/**
+	 * Evaluate every row on the calling thread only.
+	 */
+	public int[] evaluateSequential(final int[][] columns) {
+		final int rows = this.validate(columns);
+		final int[] results = new int[rows];
+		this.evaluateRows(columns, results, 0, rows);
+		return results;
+	}
+
+	private int validate(final int[][] columns) {
+		if (null == columns) {
+			throw new IllegalArgumentException("Null columns");
+		} else if (columns.length != this.variables.length) {
+			throw new IllegalArgumentException("Expected " + this.variables.length + " columns, got " + columns.length);
+		} else if (0 == columns.length) {
+			throw new IllegalArgumentException("Batch requires at least one variable column");
+		}
+		final int rows = columns[0].length;
+		for (int i=1; i<columns.length; i++) {
+			if (columns[i].length != rows) {
+				throw new IllegalArgumentException("Column " + this.variables[i] + " has " + columns[i].length + " rows, expected " + rows);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Run the program over rows [from, to) one block at a time. Array ids are columns 0 to N-1, then results, then
+	 * registers. Columns and results are indexed from the first row of the block, registers from 0.
+	 */
+	private void evaluateRows(final int[][] columns, final int[] results, final int from, final int to) {
+		final int[] code = this.code;
+		final int numColumns = columns.length;
+		final int[][] arrays = Arrays.copyOf(columns, numColumns + 1 + this.registers);
+		arrays[numColumns] = results;
+		for (int i=numColumns+1; i<arrays.length; i++) {
+			arrays[i] = new int[Math.min(to - from, ColumnarEvaluator.BLOCK_SIZE)];
+		}
+		for (int block=from; block<to; block+=ColumnarEvaluator.BLOCK_SIZE) {
+			final int length = Math.min(ColumnarEvaluator.BLOCK_SIZE, to - block);
+			for (int pc=0; pc<code.length; pc+=4) {
+				final int opcode = code[pc];
+				final int dst    = code[pc + 1];
+				final int a      = code[pc + 2];
+				final int b      = code[pc + 3];
+				final int[] d    = arrays[dst];
+				final int dOff   = (dst > numColumns) ? 0 : block;
+				if (opcode <= ColumnarEvaluator.DIV_AA) {
+					ColumnarEvaluator.arrayArray(opcode, d, dOff, arrays[a], (a > numColumns) ? 0 : block, arrays[b], (b > numColumns) ? 0 : block, length);
+				} else if (opcode <= ColumnarEvaluator.DIV_AC) {
+					ColumnarEvaluator.arrayConstant(opcode, d, dOff, arrays[a], (a > numColumns) ? 0 : block, b, length);
+				} else if (opcode <= ColumnarEvaluator.DIV_CA) {
+					ColumnarEvaluator.constantArray(opcode, d, dOff, a, arrays[b], (b > numColumns) ? 0 : block, length);
+				} else {
+					Arrays.fill(d, dOff, dOff + length, a);
+				}
+			}
+		}
+	}
+
+	private static void arrayArray(final int opcode, final int[] d, final int dOff, final int[] a, final int aOff, final int[] b, final int bOff, final int length) {
+		switch(opcode) {
+			case ColumnarEvaluator.ADD_AA : {
+				for (int i=0; i<length; i++) {
+					d[dOff + i] = a[aOff + i] + b[bOff + i];
+				}
+				break;
+			}
+			case ColumnarEvaluator.SUB_AA : {
+				for (int i=0; i<length; i++) {
+					d[dOff + i] = a[aOff + i] - b[bOff + i];
+				}
+				break;
+			}
+			case ColumnarEvaluator.MULT_AA : {
+				for (int i=0; i<length; i++) {
+					d[dOff + i] = a[aOff + i] * b[bOff + i];
+				}
+				break;
+			}
+			default : {
+				ColumnarEvaluator.checkDivisors(b, bOff, length);
+				for (int i=0; i<length; i++) {
+					d[dOff + i] = a[aOff + i] / b[bOff + i];
+				}
+				break;
+			}
+		}
+	}
+
+	private static void arrayConstant(final int opcode, final int[] d, final int dOff, final int[] a, final int aOff, final int c, final int length) {
+		switch(opcode) {
+			case ColumnarEvaluator.ADD_AC : {
+				for (int i=0; i<length; i++) {
+					d[dOff + i] = a[aOff + i] + c;
+				}
+				break;
+			}
+			case ColumnarEvaluator.SUB_AC : {
+				for (int i=0; i<length; i++) {
+					d[dOff + i] = a[aOff + i] - c;
+				}
+				break;
+			}
+			case ColumnarEvaluator.MULT_AC : {
+				for (int i=0; i<length; i++) {
+					d[dOff + i] = a[aOff + i] * c;
+				}
+				break;
+			}
+			default : {
+				if ((0 == c) && (length > 0)) {
+					throw new ArithmeticException("/ by zero");
+				}
+				for (int i=0; i<length; i++) {
+					d[dOff + i] = a[aOff + i] / c;
+				}
+				break;
+			}
+		}
+	}
+
+	private static void constantArray(final int opcode, final int[] d, final int dOff, final int c, final int[] b, final int bOff, final int length) {
+		if (ColumnarEvaluator.SUB_CA == opcode) {
+			for (int i=0; i<length; i++) {
+				d[dOff + i] = c - b[bOff + i];
+			}
+		} else {
+			ColumnarEvaluator.checkDivisors(b, bOff, length);
+			for (int i=0; i<length; i++) {
+				d[dOff + i] = c / b[bOff + i];
+			}
+		}
+	}
+
+	/**
+	 * Explicit check before dividing, so the exception always has a message, and the division loop has no exit.
+	 */
+	private static void checkDivisors(final int[] b, final int bOff, final int length) {
+		int zeros = 0;
+		for (int i=0; i<length; i++) {
+			zeros |= (0 == b[bOff + i]) ? 1 : 0;
+		}
+		if (0 != zeros) {
+			throw new ArithmeticException("/ by zero");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ColumnarEvaluator[equation=" + this.equation + ", operations=" + this.getOperationCount() + ", registers=" + this.registers + "]";
+	}
+
+	/**
+	 * Compiles an optimized expression DAG into whole-array operations. Each operand is an array id or a constant.
+	 * Registers are allocated from a free list: a temporary register is freed when its value is consumed, and a
+	 * register bound by a let is freed when the let body is complete.
+	 */
+	private static final class Compiler {
+		private final int       numColumns;
+		private final int[]     slotOperands;	// frame slot => operand bound to it
+		private final boolean[] slotConstant;
+		private int[]           code          = new int[32];
+		private int             codeLength    = 0;
+		private int[]           freeRegisters = new int[8];
+		private int             numFree       = 0;
+		private int             maxRegisters  = 0;
+		// result of the last compiled subexpression
+		private boolean isConstant;
+		private boolean isTemporary;	// register owned by the consumer, which may reuse or free it
+		private int     operand;	// constant value, or array id
+
+		/*package*/ Compiler(final int numColumns, final int frameSize) {
+			this.numColumns   = numColumns;
+			this.slotOperands = new int[frameSize];
+			this.slotConstant = new boolean[frameSize];
+			for (int slot=0; slot<numColumns; slot++) {
+				this.slotOperands[slot] = slot;	// free variables are bound to the input columns
+			}
+		}
+
+		/*package*/ int[] compile(final Expression expression) {
+			this.compileExpression(expression);
+			final int result = this.numColumns;
+			if (this.isConstant) {
+				this.emit(ColumnarEvaluator.FILL, result, this.operand, 0);
+			} else if (this.isTemporary && (this.codeLength > 0) && (this.code[this.codeLength - 3] == this.operand)) {
+				this.code[this.codeLength - 3] = result;	// last operation writes the results directly
+			} else {
+				this.emit(ColumnarEvaluator.ADD_AC, result, this.operand, 0);	// copy a column or let-bound register
+			}
+			return Arrays.copyOf(this.code, this.codeLength);
+		}
+
+		private void compileExpression(final Expression expression) {
+			if (expression instanceof Expression.Literal) {
+				this.setResult(true, false, ((Expression.Literal) expression).getValue());
+			} else if (expression instanceof Expression.Variable) {
+				final int slot = ((Expression.Variable) expression).getSlot();
+				this.setResult(this.slotConstant[slot], false, this.slotOperands[slot]);
+			} else if (expression instanceof Expression.Binary) {
+				this.compileBinary((Expression.Binary) expression);
+			} else {
+				final Expression.Let let = (Expression.Let) expression;
+				this.compileExpression(let.getValue());
+				final int     slot          = let.getSlot();
+				final boolean bindConstant  = this.isConstant;
+				final boolean bindTemporary = this.isTemporary;
+				final int     bindOperand   = this.operand;
+				this.slotConstant[slot] = bindConstant;
+				this.slotOperands[slot] = bindOperand;
+				this.compileExpression(let.getBody());
+				if (bindTemporary) {	// the let owns the register holding its value
+					if (!this.isTemporary && !this.isConstant && (this.operand == bindOperand)) {
+						this.isTemporary = true;	// body is the variable itself, pass ownership up
+					} else {
+						this.free(bindOperand);
+					}
+				}
+			}
+		}
+
+		private void compileBinary(final Expression.Binary binary) {
+			this.compileExpression(binary.getLeft());
+			final boolean leftConstant  = this.isConstant;
+			final boolean leftTemporary = this.isTemporary;
+			final int     left          = this.operand;
+			this.compileExpression(binary.getRight());
+			final boolean rightConstant  = this.isConstant;
+			final boolean rightTemporary = this.isTemporary;
+			final int     right          = this.operand;
+			final Expression.Operator operator = binary.getOperator();
+			final int dst;
+			if (leftConstant && rightConstant) {	// only div by zero is not folded by the optimizer
+				dst = this.allocate();
+				this.emit(ColumnarEvaluator.FILL, dst, left, 0);
+				this.emit(ColumnarEvaluator.ADD_AC + operator.ordinal(), dst, dst, right);
+			} else if (rightConstant) {
+				dst = leftTemporary ? left : this.allocate();
+				this.emit(ColumnarEvaluator.ADD_AC + operator.ordinal(), dst, left, right);
+			} else if (leftConstant) {
+				dst = rightTemporary ? right : this.allocate();
+				switch(operator) {
+					case ADD  : this.emit(ColumnarEvaluator.ADD_AC,  dst, right, left); break;
+					case MULT : this.emit(ColumnarEvaluator.MULT_AC, dst, right, left); break;
+					case SUB  : this.emit(ColumnarEvaluator.SUB_CA,  dst, left, right); break;
+					default   : this.emit(ColumnarEvaluator.DIV_CA,  dst, left, right); break;
+				}
+			} else {
+				dst = leftTemporary ? left : (rightTemporary ? right : this.allocate());
+				this.emit(ColumnarEvaluator.ADD_AA + operator.ordinal(), dst, left, right);
+				if (leftTemporary && rightTemporary && (left != right)) {
+					this.free(right);
+				}
+			}
+			this.setResult(false, true, dst);
+		}
+
+		private void setResult(final boolean constant, final boolean temporary, final int value) {
+			this.isConstant  = constant;
+			this.isTemporary = temporary;
+			this.operand     = value;
+		}
+
+		private int allocate() {
+			if (this.numFree > 0) {
+				return this.freeRegisters[--this.numFree];
+			}
+			return this.numColumns + 1 + this.maxRegisters++;
+		}
+
+		private void free(final int register) {
+			if (this.numFree == this.freeRegisters.length) {
+				this.freeRegisters = Arrays.copyOf(this.freeRegisters, this.numFree * 2);
+			}
+			this.freeRegisters[this.numFree++] = register;
+		}
+
+		private void emit(final int opcode, final int dst, final int a, final int b) {
+			if (this.codeLength + 4 > this.code.length) {
+				this.code = Arrays.copyOf(this.code, this.code.length * 2);
+			}
+			this.code[this.codeLength++] = opcode;
+			this.code[this.codeLength++] = dst;
+			this.code[this.codeLength++] = a;
+			this.code[this.codeLength++] = b;
+		}
+	}
+
+	private static final class BlockTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final ColumnarEvaluator evaluator;
+		private final int[][] columns;
+		private final int[]   results;
+		private final int     from;
+		private final int     to;
+
+		/*package*/ BlockTask(final ColumnarEvaluator evaluator, final int[][] columns, final int[] results, final int from, final int to) {
+			this.evaluator = evaluator;
+			this.columns   = columns;
+			this.results   = results;
+			this.from      = from;
+			this.to        = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= BatchEvaluator.CHUNK_SIZE) {
+				this.evaluator.evaluateRows(this.columns, this.results, this.from, this.to);
+			} else {
+				final int middle = (this.from + this.to) >>> 1;
+				RecursiveAction.invokeAll(new BlockTask(this.evaluator, this.columns, this.results, this.from, middle), new BlockTask(this.evaluator, this.columns, this.results, middle, this.to));
+			}
+		}
+	}
+}
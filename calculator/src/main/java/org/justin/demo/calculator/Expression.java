@@ -0,0 +1,330 @@
+package org.justin.demo.calculator;
+
+import java.math.BigInteger;
+
+/**
+ * Immutable expression tree built once by the Parser. Node types are literal number, variable reference,
+ * binary operation (add, sub, mult, div), and let binding.
+ *
+ * Variables are resolved by the Parser to lexical slots in a primitive int[] frame. Slot numbers are the let nesting
+ * depth, so sibling lets reuse slots and the frame size is the maximum let depth. Evaluation reads and writes the frame
+ * directly, so there is no boxing and no scope copying.
+ *
+ * Each numeric mode has its own evaluate method and frame type, so the int and long paths never box:
+ * - int:        evaluate(int[]), wraps on overflow
+ * - long:       evaluateLong(long[]), throws ArithmeticException on overflow
+ * - BigInteger: evaluateBigInteger(BigInteger[]), never overflows
+ * - adaptive:   evaluateAdaptive(AdaptiveFrame), long until a subexpression overflows, then BigInteger for that
+ *               subexpression and the operations that consume it
+ * @author justin.cranford
+ */
+public abstract class Expression {
+
+	/*package*/ Expression() {
+		// package-private constructor, only the node types declared below are allowed
+	}
+
+	/**
+	 * Evaluate this node. Frame contains the values of the let bindings visible in the current scope, indexed by slot.
+	 */
+	/*package*/ abstract int evaluate(final int[] frame);
+
+	/*package*/ abstract long evaluateLong(final long[] frame);
+
+	/*package*/ abstract BigInteger evaluateBigInteger(final BigInteger[] frame);
+
+	/**
+	 * Return the value if it fits in a long. Otherwise, store the BigInteger value in frame.overflow and return 0.
+	 */
+	/*package*/ abstract long evaluateAdaptive(final AdaptiveFrame frame);
+
+	public static enum Operator {
+		ADD("add"), SUB("sub"), MULT("mult"), DIV("div");
+
+		private final String operatorName;
+		private Operator(final String inOperatorName) {
+			this.operatorName = inOperatorName;
+		}
+		public String getName() {
+			return this.operatorName;
+		}
+		public int apply(final int left, final int right) {
+			switch(this) {
+				case ADD  : return left + right;
+				case SUB  : return left - right;
+				case MULT : return left * right;
+				default   : return Operator.divide(left, right);
+			}
+		}
+		/**
+		 * Int division with an explicit ArithmeticException("/ by zero"). Shared by the interpreter and compiled code,
+		 * because hot implicit exceptions lose their message (OmitStackTraceInFastThrow).
+		 */
+		public static int divide(final int left, final int right) {
+			if (0 == right) {
+				throw new ArithmeticException("/ by zero");
+			}
+			return left / right;
+		}
+		/**
+		 * Throws ArithmeticException("long overflow") instead of wrapping, and ArithmeticException("/ by zero").
+		 */
+		public long applyLong(final long left, final long right) {
+			switch(this) {
+				case ADD  : return Math.addExact(left, right);
+				case SUB  : return Math.subtractExact(left, right);
+				case MULT : return Math.multiplyExact(left, right);
+				default   : {
+					if (0L == right) {
+						throw new ArithmeticException("/ by zero");
+					} else if ((Long.MIN_VALUE == left) && (-1L == right)) {
+						throw new ArithmeticException("long overflow");	// only division that overflows
+					}
+					return left / right;
+				}
+			}
+		}
+		/**
+		 * Division truncates toward zero like int and long division, and throws the same ArithmeticException("/ by zero").
+		 */
+		public BigInteger applyBigInteger(final BigInteger left, final BigInteger right) {
+			switch(this) {
+				case ADD  : return left.add(right);
+				case SUB  : return left.subtract(right);
+				case MULT : return left.multiply(right);
+				default   : {
+					if (0 == right.signum()) {
+						throw new ArithmeticException("/ by zero");
+					}
+					return left.divide(right);
+				}
+			}
+		}
+	}
+
+	public static final class Literal extends Expression {
+		private final long value;
+		private BigInteger bigValue;	// null until needed if value fits in a long, racy caching is safe because BigInteger is immutable
+		private final boolean fitsLong;
+		/*package*/ Literal(final long value) {
+			this.value    = value;
+			this.bigValue = null;
+			this.fitsLong = true;
+		}
+		/*package*/ Literal(final BigInteger value) {
+			this.value    = value.longValue();
+			this.bigValue = value;
+			this.fitsLong = value.bitLength() < 64;
+		}
+		/**
+		 * Value in int mode. Only valid for literals parsed in int mode.
+		 */
+		public int getValue() {
+			return (int) this.value;
+		}
+		public long getLongValue() {
+			return this.value;
+		}
+		/*package*/ boolean fitsLong() {
+			return this.fitsLong;
+		}
+		public BigInteger getBigIntegerValue() {
+			BigInteger cached = this.bigValue;
+			if (null == cached) {
+				this.bigValue = cached = BigInteger.valueOf(this.value);
+			}
+			return cached;
+		}
+		@Override
+		/*package*/ int evaluate(final int[] frame) {
+			return (int) this.value;
+		}
+		@Override
+		/*package*/ long evaluateLong(final long[] frame) {
+			return this.value;
+		}
+		@Override
+		/*package*/ BigInteger evaluateBigInteger(final BigInteger[] frame) {
+			return this.getBigIntegerValue();
+		}
+		@Override
+		/*package*/ long evaluateAdaptive(final AdaptiveFrame frame) {
+			if (!this.fitsLong) {
+				frame.overflow = this.bigValue;
+			}
+			return this.value;
+		}
+		@Override
+		public String toString() {
+			return this.fitsLong ? Long.toString(this.value) : this.bigValue.toString();
+		}
+	}
+
+	public static final class Variable extends Expression {
+		private final String letter;
+		private final int    slot;
+		/*package*/ Variable(final String letter, final int slot) {
+			this.letter = letter;
+			this.slot   = slot;
+		}
+		public String getLetter() {
+			return this.letter;
+		}
+		public int getSlot() {
+			return this.slot;
+		}
+		@Override
+		/*package*/ int evaluate(final int[] frame) {
+			return frame[this.slot];
+		}
+		@Override
+		/*package*/ long evaluateLong(final long[] frame) {
+			return frame[this.slot];
+		}
+		@Override
+		/*package*/ BigInteger evaluateBigInteger(final BigInteger[] frame) {
+			return frame[this.slot];
+		}
+		@Override
+		/*package*/ long evaluateAdaptive(final AdaptiveFrame frame) {
+			frame.overflow = frame.bigValues[this.slot];	// null if the bound value fits in a long
+			return frame.values[this.slot];
+		}
+		@Override
+		public String toString() {
+			return this.letter;
+		}
+	}
+
+	public static final class Binary extends Expression {
+		private final Operator   operator;
+		private final Expression left;
+		private final Expression right;
+		/*package*/ Binary(final Operator operator, final Expression left, final Expression right) {
+			this.operator = operator;
+			this.left     = left;
+			this.right    = right;
+		}
+		public Operator getOperator() {
+			return this.operator;
+		}
+		public Expression getLeft() {
+			return this.left;
+		}
+		public Expression getRight() {
+			return this.right;
+		}
+		@Override
+		/*package*/ int evaluate(final int[] frame) {
+			final int leftValue = this.left.evaluate(frame);	// evaluate left before right, same order as Calc.compute
+			return this.operator.apply(leftValue, this.right.evaluate(frame));
+		}
+		@Override
+		/*package*/ long evaluateLong(final long[] frame) {
+			final long leftValue = this.left.evaluateLong(frame);
+			return this.operator.applyLong(leftValue, this.right.evaluateLong(frame));
+		}
+		@Override
+		/*package*/ BigInteger evaluateBigInteger(final BigInteger[] frame) {
+			final BigInteger leftValue = this.left.evaluateBigInteger(frame);
+			return this.operator.applyBigInteger(leftValue, this.right.evaluateBigInteger(frame));
+		}
+		@Override
+		/*package*/ long evaluateAdaptive(final AdaptiveFrame frame) {
+			final long       leftValue  = this.left.evaluateAdaptive(frame);
+			final BigInteger leftBig    = frame.takeOverflow();
+			final long       rightValue = this.right.evaluateAdaptive(frame);
+			final BigInteger rightBig   = frame.takeOverflow();
+			if ((null == leftBig) && (null == rightBig)) {
+				switch(this.operator) {	// fast path, no allocation unless this operation overflows
+					case ADD : {
+						final long result = leftValue + rightValue;
+						if (((leftValue ^ result) & (rightValue ^ result)) >= 0) {
+							return result;
+						}
+						break;
+					}
+					case SUB : {
+						final long result = leftValue - rightValue;
+						if (((leftValue ^ rightValue) & (leftValue ^ result)) >= 0) {
+							return result;
+						}
+						break;
+					}
+					case MULT : {
+						final long result = leftValue * rightValue;
+						final boolean small = ((Math.abs(leftValue) | Math.abs(rightValue)) >>> 31) == 0;	// both fit in 31 bits, product cannot overflow
+						if (small || ((0L == rightValue) || ((result / rightValue == leftValue) && ((Long.MIN_VALUE != leftValue) || (-1L != rightValue))))) {
+							return result;	// same overflow check as Math.multiplyExact
+						}
+						break;
+					}
+					default : {
+						if (0L == rightValue) {
+							throw new ArithmeticException("/ by zero");
+						} else if ((Long.MIN_VALUE != leftValue) || (-1L != rightValue)) {
+							return leftValue / rightValue;
+						}
+						break;
+					}
+				}
+			}
+			final BigInteger result = this.operator.applyBigInteger((null == leftBig) ? BigInteger.valueOf(leftValue) : leftBig, (null == rightBig) ? BigInteger.valueOf(rightValue) : rightBig);
+			return frame.narrow(result);	// demote back to long if the result fits
+		}
+		@Override
+		public String toString() {
+			return this.operator.getName() + "(" + this.left + ", " + this.right + ")";
+		}
+	}
+
+	public static final class Let extends Expression {
+		private final String     letter;
+		private final int        slot;
+		private final Expression value;
+		private final Expression body;
+		/*package*/ Let(final String letter, final int slot, final Expression value, final Expression body) {
+			this.letter = letter;
+			this.slot   = slot;
+			this.value  = value;
+			this.body   = body;
+		}
+		public String getLetter() {
+			return this.letter;
+		}
+		public int getSlot() {
+			return this.slot;
+		}
+		public Expression getValue() {
+			return this.value;
+		}
+		public Expression getBody() {
+			return this.body;
+		}
+		@Override
+		/*package*/ int evaluate(final int[] frame) {
+			frame[this.slot] = this.value.evaluate(frame);	// slot is not visible outside the body, so no restore is needed
+			return this.body.evaluate(frame);
+		}
+		@Override
+		/*package*/ long evaluateLong(final long[] frame) {
+			frame[this.slot] = this.value.evaluateLong(frame);
+			return this.body.evaluateLong(frame);
+		}
+		@Override
+		/*package*/ BigInteger evaluateBigInteger(final BigInteger[] frame) {
+			frame[this.slot] = this.value.evaluateBigInteger(frame);
+			return this.body.evaluateBigInteger(frame);
+		}
+		@Override
+		/*package*/ long evaluateAdaptive(final AdaptiveFrame frame) {
+			frame.values[this.slot]    = this.value.evaluateAdaptive(frame);
+			frame.bigValues[this.slot] = frame.takeOverflow();
+			return this.body.evaluateAdaptive(frame);
+		}
+		@Override
+		public String toString() {
+			return "let(" + this.letter + ", " + this.value + ", " + this.body + ")";
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package org.justin.demo.calculator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded, thread-safe LRU cache of parsed expressions keyed by whitespace-normalized equation text.
+ * Repeated equations skip parsing, optimizing, and compiling completely. Hit, miss, and eviction counters are exposed for monitoring.
+ *
+ * ASSUMPTION: Parsing is cheap relative to contention, so parsing happens outside the lock and concurrent misses for
+ * the same equation may parse it more than once. The first parsed result wins.
+ * @author justin.cranford
+ */
+public final class ExpressionCache {
+	public static final int DEFAULT_MAX_SIZE = 1024;
+	/*package*/ static final int DEEP_NESTING_THRESHOLD = 1000;	// deeper int mode equations use PostfixProgram, which does not recurse, deeper wide mode equations are rejected
+
+	private final int              maxSize;
+	private final Calc.Backend     backend;
+	private final boolean          optimize;
+	private final Calc.NumericMode numericMode;
+	private final LinkedHashMap<String,IntExpression> entries;	// access order, eldest entry is least recently used
+	private long hits      = 0;
+	private long misses    = 0;
+	private long evictions = 0;
+
+	public ExpressionCache(final int maxSize) {
+		this(maxSize, Calc.Backend.INTERPRETER);
+	}
+
+	public ExpressionCache(final int maxSize, final Calc.Backend backend) {
+		this(maxSize, backend, true);
+	}
+
+	public ExpressionCache(final int maxSize, final Calc.Backend backend, final boolean optimize) {
+		this(maxSize, backend, optimize, Calc.NumericMode.INT);
+	}
+
+	/**
+	 * Cache of interpreted formulas for a wide numeric mode (LONG, BIG_INTEGER, ADAPTIVE). Literals are parsed with the
+	 * range of the mode, and formulas are not optimized or compiled, because the optimizer and compiler are int only.
+	 */
+	public ExpressionCache(final int maxSize, final Calc.NumericMode numericMode) {
+		this(maxSize, Calc.Backend.INTERPRETER, false, numericMode);
+	}
+
+	private ExpressionCache(final int maxSize, final Calc.Backend backend, final boolean optimize, final Calc.NumericMode numericMode) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Invalid max size. Must be 1 or more.");
+		}
+		this.maxSize     = maxSize;
+		this.backend     = backend;
+		this.optimize    = optimize;
+		this.numericMode = numericMode;
+		this.entries     = new LinkedHashMap<String,IntExpression>(16, 0.75F, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String,IntExpression> eldest) {
+				if (this.size() > ExpressionCache.this.maxSize) {
+					ExpressionCache.this.evictions++;	// ASSUMPTION: Only called from put(), which already holds the lock.
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Return the cached expression for the equation, or parse, optimize, and compile (depending on settings) and cache it on a miss.
+	 * Equations nested deeper than DEEP_NESTING_THRESHOLD are parsed into a PostfixProgram instead in int mode, without
+	 * optimizing or compiling, and are rejected with IllegalArgumentException in wide modes.
+	 * Interpreted int mode formulas with shared subexpressions are wrapped in a MemoizedFormula.
+	 * Parse and compile errors are not cached.
+	 */
+	public IntExpression get(final String equation) throws Exception {
+		final String key = ExpressionCache.normalize(equation);
+		synchronized(this) {
+			final IntExpression cached = this.entries.get(key);
+			if (null != cached) {
+				this.hits++;
+				return cached;
+			}
+			this.misses++;
+		}
+		final IntExpression evaluable = this.parse(key);
+		synchronized(this) {
+			final IntExpression raced = this.entries.get(key);
+			if (null != raced) {
+				return raced;
+			}
+			this.entries.put(key, evaluable);
+		}
+		return evaluable;
+	}
+
+	private IntExpression parse(final String key) throws Exception {
+		final int depth = PostfixProgram.nestingDepth(key);
+		if (depth > ExpressionCache.DEEP_NESTING_THRESHOLD) {	// recursive parse, optimize, compile, or interpret could overflow the thread stack
+			if (Calc.NumericMode.INT != this.numericMode) {
+				throw new IllegalArgumentException("nesting depth " + depth + " exceeds " + ExpressionCache.DEEP_NESTING_THRESHOLD + ", only int mode supports deeper nesting");
+			}
+			if (Log.isDebugEnabled()) {
+				Log.debug("Nesting depth " + depth + " exceeds " + ExpressionCache.DEEP_NESTING_THRESHOLD + ", using PostfixProgram instead of backend " + this.backend + " and optimize " + this.optimize);
+			}
+			return PostfixProgram.parse(key);
+		}
+		Formula parsed = Parser.parse(key, this.numericMode);
+		if (this.optimize) {
+			parsed = Optimizer.optimize(parsed);	// ASSUMPTION: Only int mode caches optimize, see the wide mode constructor.
+		}
+		if (Calc.Backend.COMPILER == this.backend) {
+			return ExpressionCompiler.compile(parsed);	// generated code inlines shared nodes, the JIT can eliminate common subexpressions
+		}
+		return (Calc.NumericMode.INT == this.numericMode) ? MemoizedFormula.memoizeIfShared(parsed) : parsed;
+	}
+
+	/**
+	 * Return the cached formula for a wide numeric mode cache, for evaluateLong(), evaluateBigInteger(), or evaluateAdaptive().
+	 */
+	/*package*/ Formula getFormula(final String equation) throws Exception {
+		if (Calc.NumericMode.INT == this.numericMode) {
+			throw new IllegalStateException("int mode cache entries may be compiled, use get()");
+		}
+		return (Formula) this.get(equation);
+	}
+
+	public synchronized void clear() {
+		this.entries.clear();
+		this.hits      = 0;
+		this.misses    = 0;
+		this.evictions = 0;
+	}
+
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+	public Calc.Backend getBackend() {
+		return this.backend;
+	}
+	public boolean isOptimize() {
+		return this.optimize;
+	}
+	public Calc.NumericMode getNumericMode() {
+		return this.numericMode;
+	}
+	public synchronized int size() {
+		return this.entries.size();
+	}
+	public synchronized long getHits() {
+		return this.hits;
+	}
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ExpressionCache[backend=" + this.backend + ", optimize=" + this.optimize + ", numericMode=" + this.numericMode + ", size=" + this.entries.size() + ", maxSize=" + this.maxSize + ", hits=" + this.hits + ", misses=" + this.misses + ", evictions=" + this.evictions + "]";
+	}
+
+	/**
+	 * Strip whitespace without a regex. Returns the input instance when there is no whitespace to strip.
+	 */
+	/*package*/ static String normalize(final String equation) {
+		final int length = equation.length();
+		int i = 0;
+		while ((i < length) && !Character.isWhitespace(equation.charAt(i))) {
+			i++;
+		}
+		if (i == length) {
+			return equation;
+		}
+		final StringBuilder sb = new StringBuilder(length);
+		sb.append(equation, 0, i);
+		for (; i<length; i++) {
+			final char c = equation.charAt(i);
+			if (!Character.isWhitespace(c)) {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+}
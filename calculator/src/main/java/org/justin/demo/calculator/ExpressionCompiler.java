@@ -0,0 +1,264 @@
+package org.justin.demo.calculator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compile a Formula into a generated JVM class implementing IntExpression. Each let binding frame slot becomes a local
+ * variable slot, and each operator becomes a single JVM instruction (iadd, isub, imul), or a static call for div, so
+ * the JIT can inline the whole formula. No bytecode library is used, the class file is written directly and defined by
+ * a ClassLoader.
+ *
+ * ASSUMPTION: Generated code is straight-line (no branches), so class file version 51 (Java 7) is used and no
+ * StackMapTable attribute is required.
+ * @author justin.cranford
+ */
+/*package*/ final class ExpressionCompiler {
+	private static final String        CLASS_NAME_PREFIX = "org/justin/demo/calculator/CompiledExpression";
+	private static final String        INTERFACE_NAME    = IntExpression.class.getName().replace('.', '/');
+	private static final String        OPERATOR_NAME     = Expression.Operator.class.getName().replace('.', '/');
+	private static final int           MAX_CODE_LENGTH   = 65535;	// JVM limit for a single method
+	private static final AtomicInteger CLASS_COUNTER     = new AtomicInteger();
+
+	// JVM opcodes used by generated code
+	private static final int ICONST_0    = 0x03;
+	private static final int BIPUSH      = 0x10;
+	private static final int SIPUSH      = 0x11;
+	private static final int LDC         = 0x12;
+	private static final int LDC_W       = 0x13;
+	private static final int ILOAD       = 0x15;
+	private static final int ILOAD_0     = 0x1a;
+	private static final int ALOAD_0     = 0x2a;
+	private static final int ISTORE      = 0x36;
+	private static final int ISTORE_0    = 0x3b;
+	private static final int IADD        = 0x60;
+	private static final int ISUB        = 0x64;
+	private static final int IMUL        = 0x68;
+	private static final int IRETURN     = 0xac;
+	private static final int RETURN      = 0xb1;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int INVOKESTATIC  = 0xb8;
+	private static final int WIDE        = 0xc4;
+
+	// constant pool tags
+	private static final int CONSTANT_UTF8        = 1;
+	private static final int CONSTANT_INTEGER     = 3;
+	private static final int CONSTANT_CLASS       = 7;
+	private static final int CONSTANT_METHODREF   = 10;
+	private static final int CONSTANT_NAMEANDTYPE = 12;
+
+	private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream      constantPool      = new DataOutputStream(this.constantPoolBytes);
+	private final HashMap<String,Integer>  utf8Constants    = new HashMap<>();
+	private final HashMap<Integer,Integer> integerConstants = new HashMap<>();
+	private int constantPoolCount = 1;	// index 0 is unused
+
+	private final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+	private final DataOutputStream      code      = new DataOutputStream(this.codeBytes);
+	private int maxStack  = 0;
+	private int divide    = 0;	// methodref constant of Expression.Operator.divide(int, int), added on first use
+
+	private ExpressionCompiler() {
+		// use compile()
+	}
+
+	/**
+	 * Compile the formula into a new class, and return an instance of it. If the formula exceeds the JVM method
+	 * size limit, the formula itself is returned so evaluation falls back to the interpreter.
+	 */
+	/*package*/ static IntExpression compile(final Formula formula) throws Exception {
+		final String className = ExpressionCompiler.CLASS_NAME_PREFIX + ExpressionCompiler.CLASS_COUNTER.incrementAndGet();
+		final byte[] classBytes = new ExpressionCompiler().generateClass(className, formula);
+		if (null == classBytes) {
+			return formula;
+		}
+		final Class<?> compiledClass = new ExpressionClassLoader(ExpressionCompiler.class.getClassLoader()).define(className.replace('/', '.'), classBytes);
+		return (IntExpression) compiledClass.getConstructor().newInstance();
+	}
+
+	private byte[] generateClass(final String className, final Formula formula) throws IOException {
+		this.emitExpression(formula.getExpression(), 0);
+		this.code.writeByte(ExpressionCompiler.IRETURN);
+		if (this.codeBytes.size() > ExpressionCompiler.MAX_CODE_LENGTH) {
+			return null;
+		}
+
+		final int thisClass       = this.classConstant(className);
+		final int superClass      = this.classConstant("java/lang/Object");
+		final int interfaceClass  = this.classConstant(ExpressionCompiler.INTERFACE_NAME);
+		final int objectInit      = this.methodrefConstant(superClass, "<init>", "()V");
+		final int initName        = this.utf8Constant("<init>");
+		final int initDescriptor  = this.utf8Constant("()V");
+		final int evaluateName    = this.utf8Constant("evaluate");
+		final int evaluateDescriptor = this.utf8Constant("()I");
+		final int codeAttribute   = this.utf8Constant("Code");
+
+		final ByteArrayOutputStream classBytes = new ByteArrayOutputStream(64 + this.constantPoolBytes.size() + this.codeBytes.size());
+		final DataOutputStream out = new DataOutputStream(classBytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);	// minor version
+		out.writeShort(51);	// major version (Java 7)
+		out.writeShort(this.constantPoolCount);
+		this.constantPoolBytes.writeTo(out);
+		out.writeShort(0x0001 | 0x0010 | 0x0020);	// ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(1);	// interfaces
+		out.writeShort(interfaceClass);
+		out.writeShort(0);	// fields
+		out.writeShort(2);	// methods
+
+		// public <init>() { super(); }
+		final byte[] initCode = {(byte) ExpressionCompiler.ALOAD_0, (byte) ExpressionCompiler.INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit, (byte) ExpressionCompiler.RETURN};
+		ExpressionCompiler.writeMethod(out, initName, initDescriptor, codeAttribute, 1, 1, initCode);
+
+		// public int evaluate() { ... }, local 0 is "this" and frame slot N is local N+1
+		ExpressionCompiler.writeMethod(out, evaluateName, evaluateDescriptor, codeAttribute, this.maxStack, 1 + formula.getFrameSize(), this.codeBytes.toByteArray());
+
+		out.writeShort(0);	// class attributes
+		return classBytes.toByteArray();
+	}
+
+	private static void writeMethod(final DataOutputStream out, final int name, final int descriptor, final int codeAttribute, final int maxStack, final int maxLocals, final byte[] code) throws IOException {
+		out.writeShort(0x0001);	// ACC_PUBLIC
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1);	// attributes
+		out.writeShort(codeAttribute);
+		out.writeInt(12 + code.length);	// max_stack, max_locals, code_length, code, exception_table_length, attributes_count
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0);	// exception table
+		out.writeShort(0);	// code attributes
+	}
+
+	/**
+	 * Emit code leaving the expression value on top of the operand stack. Depth is the stack size after the value is pushed.
+	 */
+	private void emitExpression(final Expression expression, final int depth) throws IOException {
+		if (this.codeBytes.size() > ExpressionCompiler.MAX_CODE_LENGTH) {
+			return;	// too large, stop emitting and fall back to the interpreter
+		}
+		this.maxStack = Math.max(this.maxStack, depth + 1);
+		if (expression instanceof Expression.Literal) {
+			this.emitConstant(((Expression.Literal) expression).getValue());
+		} else if (expression instanceof Expression.Variable) {
+			this.emitLocal(ExpressionCompiler.ILOAD, ExpressionCompiler.ILOAD_0, 1 + ((Expression.Variable) expression).getSlot());
+		} else if (expression instanceof Expression.Binary) {
+			final Expression.Binary binary = (Expression.Binary) expression;
+			this.emitExpression(binary.getLeft(),  depth);
+			this.emitExpression(binary.getRight(), depth + 1);
+			switch(binary.getOperator()) {
+				case ADD  : this.code.writeByte(ExpressionCompiler.IADD); break;
+				case SUB  : this.code.writeByte(ExpressionCompiler.ISUB); break;
+				case MULT : this.code.writeByte(ExpressionCompiler.IMUL); break;
+				default   : {	// not idiv, so divide by zero throws the same explicit ArithmeticException as the interpreter
+					if (0 == this.divide) {
+						this.divide = this.methodrefConstant(this.classConstant(ExpressionCompiler.OPERATOR_NAME), "divide", "(II)I");
+					}
+					this.code.writeByte(ExpressionCompiler.INVOKESTATIC);
+					this.code.writeShort(this.divide);
+					break;
+				}
+			}
+		} else {
+			final Expression.Let let = (Expression.Let) expression;
+			this.emitExpression(let.getValue(), depth);
+			this.emitLocal(ExpressionCompiler.ISTORE, ExpressionCompiler.ISTORE_0, 1 + let.getSlot());
+			this.emitExpression(let.getBody(), depth);
+		}
+	}
+
+	private void emitConstant(final int value) throws IOException {
+		if ((value >= -1) && (value <= 5)) {
+			this.code.writeByte(ExpressionCompiler.ICONST_0 + value);	// iconst_m1 through iconst_5
+		} else if ((value >= Byte.MIN_VALUE) && (value <= Byte.MAX_VALUE)) {
+			this.code.writeByte(ExpressionCompiler.BIPUSH);
+			this.code.writeByte(value);
+		} else if ((value >= Short.MIN_VALUE) && (value <= Short.MAX_VALUE)) {
+			this.code.writeByte(ExpressionCompiler.SIPUSH);
+			this.code.writeShort(value);
+		} else {
+			final int index = this.integerConstant(value);
+			if (index <= 0xff) {
+				this.code.writeByte(ExpressionCompiler.LDC);
+				this.code.writeByte(index);
+			} else {
+				this.code.writeByte(ExpressionCompiler.LDC_W);
+				this.code.writeShort(index);
+			}
+		}
+	}
+
+	private void emitLocal(final int opcode, final int shortOpcode, final int slot) throws IOException {
+		if (slot <= 3) {
+			this.code.writeByte(shortOpcode + slot);	// iload_n or istore_n
+		} else if (slot <= 0xff) {
+			this.code.writeByte(opcode);
+			this.code.writeByte(slot);
+		} else {
+			this.code.writeByte(ExpressionCompiler.WIDE);
+			this.code.writeByte(opcode);
+			this.code.writeShort(slot);
+		}
+	}
+
+	private int utf8Constant(final String value) throws IOException {
+		final Integer existing = this.utf8Constants.get(value);
+		if (null != existing) {
+			return existing.intValue();
+		}
+		this.constantPool.writeByte(ExpressionCompiler.CONSTANT_UTF8);
+		this.constantPool.writeUTF(value);
+		this.utf8Constants.put(value, Integer.valueOf(this.constantPoolCount));
+		return this.constantPoolCount++;
+	}
+
+	private int integerConstant(final int value) throws IOException {
+		final Integer existing = this.integerConstants.get(Integer.valueOf(value));
+		if (null != existing) {
+			return existing.intValue();
+		}
+		this.constantPool.writeByte(ExpressionCompiler.CONSTANT_INTEGER);
+		this.constantPool.writeInt(value);
+		this.integerConstants.put(Integer.valueOf(value), Integer.valueOf(this.constantPoolCount));
+		return this.constantPoolCount++;
+	}
+
+	private int classConstant(final String internalName) throws IOException {
+		final int name = this.utf8Constant(internalName);
+		this.constantPool.writeByte(ExpressionCompiler.CONSTANT_CLASS);
+		this.constantPool.writeShort(name);
+		return this.constantPoolCount++;
+	}
+
+	private int methodrefConstant(final int ownerClass, final String name, final String descriptor) throws IOException {
+		final int nameIndex       = this.utf8Constant(name);
+		final int descriptorIndex = this.utf8Constant(descriptor);
+		this.constantPool.writeByte(ExpressionCompiler.CONSTANT_NAMEANDTYPE);
+		this.constantPool.writeShort(nameIndex);
+		this.constantPool.writeShort(descriptorIndex);
+		final int nameAndType = this.constantPoolCount++;
+		this.constantPool.writeByte(ExpressionCompiler.CONSTANT_METHODREF);
+		this.constantPool.writeShort(ownerClass);
+		this.constantPool.writeShort(nameAndType);
+		return this.constantPoolCount++;
+	}
+
+	/**
+	 * One class loader per compiled expression, so the generated class can be unloaded once it is evicted from the cache.
+	 */
+	private static final class ExpressionClassLoader extends ClassLoader {
+		/*package*/ ExpressionClassLoader(final ClassLoader parent) {
+			super(parent);
+		}
+		/*package*/ Class<?> define(final String name, final byte[] classBytes) {
+			return this.defineClass(name, classBytes, 0, classBytes.length);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package org.justin.demo.calculator;
+
+/**
+ * Hash-consing table for expression nodes. Nodes are interned bottom-up, so the children of a node being interned are
+ * already canonical, and two nodes are structurally equal exactly when their fields are equal and their children are
+ * the same instances. Equality and hashing are therefore O(1) per node, and identical subtrees become one shared node,
+ * turning the expression tree into a DAG.
+ *
+ * Open addressing with linear probing. Not thread-safe, one interner is used by one Parser or Optimizer run.
+ * @author justin.cranford
+ */
+/*package*/ final class ExpressionInterner {
+	private Expression[] table = new Expression[64];
+	private int[]        hashes = new int[64];
+	private int          size   = 0;
+
+	/**
+	 * Return the canonical node equal to this node, adding it if it is new. Children of the node must be canonical.
+	 */
+	/*package*/ Expression intern(final Expression node) {
+		final int hash = ExpressionInterner.hash(node);
+		final int mask = this.table.length - 1;
+		int i = hash & mask;
+		for (Expression existing; null != (existing = this.table[i]); i = (i + 1) & mask) {
+			if ((hash == this.hashes[i]) && ExpressionInterner.equal(existing, node)) {
+				return existing;
+			}
+		}
+		this.table[i]  = node;
+		this.hashes[i] = hash;
+		if (++this.size * 2 > this.table.length) {
+			this.grow();
+		}
+		return node;
+	}
+
+	/*package*/ int size() {
+		return this.size;
+	}
+
+	private void grow() {
+		final Expression[] oldTable  = this.table;
+		final int[]        oldHashes = this.hashes;
+		this.table  = new Expression[oldTable.length * 2];
+		this.hashes = new int[oldTable.length * 2];
+		final int mask = this.table.length - 1;
+		for (int j=0; j<oldTable.length; j++) {
+			if (null != oldTable[j]) {
+				int i = oldHashes[j] & mask;
+				while (null != this.table[i]) {
+					i = (i + 1) & mask;
+				}
+				this.table[i]  = oldTable[j];
+				this.hashes[i] = oldHashes[j];
+			}
+		}
+	}
+
+	private static int hash(final Expression node) {
+		final int hash;
+		if (node instanceof Expression.Literal) {
+			final Expression.Literal literal = (Expression.Literal) node;
+			hash = Long.hashCode(literal.getLongValue());	// low 64 bits for BigInteger literals
+		} else if (node instanceof Expression.Variable) {
+			final Expression.Variable variable = (Expression.Variable) node;
+			hash = (variable.getLetter().hashCode() * 31 + variable.getSlot()) * 31 + 1;
+		} else if (node instanceof Expression.Binary) {
+			final Expression.Binary binary = (Expression.Binary) node;
+			hash = ((binary.getOperator().ordinal() * 31 + System.identityHashCode(binary.getLeft())) * 31 + System.identityHashCode(binary.getRight())) * 31 + 2;
+		} else {
+			final Expression.Let let = (Expression.Let) node;
+			hash = (((let.getLetter().hashCode() * 31 + let.getSlot()) * 31 + System.identityHashCode(let.getValue())) * 31 + System.identityHashCode(let.getBody())) * 31 + 3;
+		}
+		return hash ^ (hash >>> 16);	// spread high bits, the table index uses low bits
+	}
+
+	private static boolean equal(final Expression existing, final Expression node) {
+		if (existing.getClass() != node.getClass()) {
+			return false;
+		} else if (node instanceof Expression.Literal) {
+			final Expression.Literal a = (Expression.Literal) existing;
+			final Expression.Literal b = (Expression.Literal) node;
+			return (a.getLongValue() == b.getLongValue()) && (a.fitsLong() == b.fitsLong()) && (a.fitsLong() || a.getBigIntegerValue().equals(b.getBigIntegerValue()));
+		} else if (node instanceof Expression.Variable) {
+			final Expression.Variable a = (Expression.Variable) existing;
+			final Expression.Variable b = (Expression.Variable) node;
+			return (a.getSlot() == b.getSlot()) && a.getLetter().equals(b.getLetter());
+		} else if (node instanceof Expression.Binary) {
+			final Expression.Binary a = (Expression.Binary) existing;
+			final Expression.Binary b = (Expression.Binary) node;
+			return (a.getOperator() == b.getOperator()) && (a.getLeft() == b.getLeft()) && (a.getRight() == b.getRight());
+		}
+		final Expression.Let a = (Expression.Let) existing;
+		final Expression.Let b = (Expression.Let) node;
+		return (a.getSlot() == b.getSlot()) && (a.getValue() == b.getValue()) && (a.getBody() == b.getBody()) && a.getLetter().equals(b.getLetter());
+	}
+
+	@Override
+	public String toString() {
+		return "ExpressionInterner[size=" + this.size + ", capacity=" + this.table.length + "]";
+	}
+}
@@ -0,0 +1,68 @@
+package org.justin.demo.calculator;
+
+import java.math.BigInteger;
+
+/**
+ * Parsed equation ready for interpretation: the resolved expression tree plus the number of int[] frame slots its
+ * let bindings need.
+ * @author justin.cranford
+ */
+public final class Formula implements IntExpression {
+	private static final int[]        EMPTY_FRAME      = new int[0];
+	private static final long[]       EMPTY_LONG_FRAME = new long[0];
+	private static final BigInteger[] EMPTY_BIG_FRAME  = new BigInteger[0];
+
+	private final Expression expression;
+	private final int        frameSize;
+
+	/*package*/ Formula(final Expression expression, final int frameSize) {
+		this.expression = expression;
+		this.frameSize  = frameSize;
+	}
+
+	public Expression getExpression() {
+		return this.expression;
+	}
+
+	public int getFrameSize() {
+		return this.frameSize;
+	}
+
+	/**
+	 * Interpret the expression tree with a new frame. No frame is allocated if there are no let bindings.
+	 */
+	@Override
+	public int evaluate() {
+		return this.expression.evaluate((0 == this.frameSize) ? Formula.EMPTY_FRAME : new int[this.frameSize]);
+	}
+
+	/**
+	 * Interpret with long arithmetic. Throws ArithmeticException on overflow. Literals must fit in a long.
+	 */
+	public long evaluateLong() {
+		return this.expression.evaluateLong((0 == this.frameSize) ? Formula.EMPTY_LONG_FRAME : new long[this.frameSize]);
+	}
+
+	/**
+	 * Interpret with BigInteger arithmetic, so results never overflow.
+	 */
+	public BigInteger evaluateBigInteger() {
+		return this.expression.evaluateBigInteger((0 == this.frameSize) ? Formula.EMPTY_BIG_FRAME : new BigInteger[this.frameSize]);
+	}
+
+	/**
+	 * Interpret with long arithmetic, promoting to BigInteger only for subexpressions that overflow. Returns a Long if
+	 * the result fits, else a BigInteger.
+	 */
+	public Number evaluateAdaptive() {
+		final AdaptiveFrame frame = new AdaptiveFrame(this.frameSize);
+		final long value = this.expression.evaluateAdaptive(frame);
+		final BigInteger overflow = frame.takeOverflow();
+		return (null == overflow) ? (Number) Long.valueOf(value) : overflow;
+	}
+
+	@Override
+	public String toString() {
+		return this.expression.toString();
+	}
+}
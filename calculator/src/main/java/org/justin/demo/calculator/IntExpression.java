@@ -0,0 +1,10 @@
+package org.justin.demo.calculator;
+
+/**
+ * Evaluable form of a parsed equation. Implemented by the Formula tree interpreter, and by classes generated at
+ * runtime by the ExpressionCompiler.
+ * @author justin.cranford
+ */
+public interface IntExpression {
+	int evaluate();
+}
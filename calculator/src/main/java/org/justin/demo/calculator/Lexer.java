@@ -0,0 +1,175 @@
+package org.justin.demo.calculator;
+
+import java.math.BigInteger;
+
+/**
+ * Single-pass lexer for calculator equations. Tokens are scanned on demand by the Parser, so no token list or
+ * per-token String is allocated. Token text is exposed as offsets into the original equation.
+ *
+ * Token types:
+ * IDENTIFIER  operation name or single letter variable (ex: add, let, a)
+ * NUMBER      optionally signed integer literal (ex: 25, -25, +25)
+ * LEFT, RIGHT, COMMA, END
+ * @author justin.cranford
+ */
+/*package*/ final class Lexer {
+	/*package*/ static final int IDENTIFIER = 0;
+	/*package*/ static final int NUMBER     = 1;
+	/*package*/ static final int LEFT       = 2;
+	/*package*/ static final int RIGHT      = 3;
+	/*package*/ static final int COMMA      = 4;
+	/*package*/ static final int END        = 5;
+
+	private final String equation;
+	private final int    length;
+	private int position = 0;	// next character to scan
+	private int type     = -1;	// type of current token
+	private int start    = 0;	// inclusive offset of current token
+	private int end      = 0;	// exclusive offset of current token
+
+	/*package*/ Lexer(final String equation) {
+		this.equation = equation;
+		this.length   = equation.length();
+	}
+
+	/**
+	 * Advance to the next token, and return its type.
+	 */
+	/*package*/ int next() throws Exception {
+		this.skipWhitespace();
+		this.start = this.position;
+		if (this.position >= this.length) {
+			this.end = this.position;
+			return this.type = Lexer.END;
+		}
+		final char c = this.equation.charAt(this.position);
+		if ('(' == c) {
+			this.end = ++this.position;
+			return this.type = Lexer.LEFT;
+		} else if (')' == c) {
+			this.end = ++this.position;
+			return this.type = Lexer.RIGHT;
+		} else if (',' == c) {
+			this.end = ++this.position;
+			return this.type = Lexer.COMMA;
+		} else if (('+' == c) || ('-' == c) || Lexer.isDigit(c)) {
+			this.position++;
+			if (!Lexer.isDigit(c)) {
+				this.skipWhitespace();	// sign and digits may be separated by whitespace (ex: "- 25")
+				if ((this.position >= this.length) || !Lexer.isDigit(this.equation.charAt(this.position))) {
+					throw new Exception("unknown expression " + this.equation.substring(this.start));
+				}
+			}
+			while ((this.position < this.length) && Lexer.isDigit(this.equation.charAt(this.position))) {
+				this.position++;
+			}
+			this.end = this.position;
+			return this.type = Lexer.NUMBER;
+		} else if (Lexer.isWordCharacter(c)) {
+			while ((this.position < this.length) && Lexer.isWordCharacter(this.equation.charAt(this.position))) {
+				this.position++;
+			}
+			this.end = this.position;
+			return this.type = Lexer.IDENTIFIER;
+		}
+		throw new Exception("unknown expression " + this.equation.substring(this.start));
+	}
+
+	/*package*/ int type() {
+		return this.type;
+	}
+
+	/*package*/ String text() {
+		return this.equation.substring(this.start, this.end);
+	}
+
+	/*package*/ String remaining() {
+		return this.equation.substring(this.start);
+	}
+
+	/*package*/ boolean isLetter() {
+		return (Lexer.IDENTIFIER == this.type) && (1 == this.end - this.start) && Lexer.isLetter(this.equation.charAt(this.start));
+	}
+
+	/**
+	 * Parse current NUMBER token without allocating a substring. Mirrors Integer.parseInt() overflow semantics.
+	 */
+	/*package*/ int intValue() throws NumberFormatException {
+		int     i        = this.start;
+		boolean negative = false;
+		final char sign = this.equation.charAt(i);
+		if (('+' == sign) || ('-' == sign)) {
+			negative = ('-' == sign);
+			i++;
+			while (!Lexer.isDigit(this.equation.charAt(i))) {
+				i++;	// skip whitespace between sign and digits
+			}
+		}
+		final long limit = negative ? -(long)Integer.MIN_VALUE : Integer.MAX_VALUE;
+		long value = 0;
+		for (; i<this.end; i++) {
+			value = value * 10 + (this.equation.charAt(i) - '0');
+			if (value > limit) {
+				throw new NumberFormatException("For input string: \"" + this.text() + "\"");
+			}
+		}
+		return (int) (negative ? -value : value);
+	}
+
+	/**
+	 * Parse current NUMBER token as a long. Mirrors Long.parseLong() overflow semantics.
+	 */
+	/*package*/ long longValue() throws NumberFormatException {
+		int i = this.digitsStart();
+		final boolean negative = ('-' == this.equation.charAt(this.start));
+		long value = 0;	// accumulate negatively, because Long.MIN_VALUE has no positive counterpart
+		for (; i<this.end; i++) {
+			final int digit = this.equation.charAt(i) - '0';
+			if ((value < Long.MIN_VALUE / 10) || (value * 10 < Long.MIN_VALUE + digit)) {
+				throw new NumberFormatException("For input string: \"" + this.text() + "\"");
+			}
+			value = value * 10 - digit;
+		}
+		if (!negative && (Long.MIN_VALUE == value)) {
+			throw new NumberFormatException("For input string: \"" + this.text() + "\"");
+		}
+		return negative ? value : -value;
+	}
+
+	/**
+	 * Parse current NUMBER token with no size limit.
+	 */
+	/*package*/ BigInteger bigIntegerValue() {
+		final BigInteger value = new BigInteger(this.equation.substring(this.digitsStart(), this.end));
+		return ('-' == this.equation.charAt(this.start)) ? value.negate() : value;
+	}
+
+	/**
+	 * Offset of the first digit of the current NUMBER token, after any sign and whitespace.
+	 */
+	private int digitsStart() {
+		int i = this.start;
+		while (!Lexer.isDigit(this.equation.charAt(i))) {
+			i++;
+		}
+		return i;
+	}
+
+	private void skipWhitespace() {
+		while ((this.position < this.length) && Character.isWhitespace(this.equation.charAt(this.position))) {
+			this.position++;
+		}
+	}
+
+	private static boolean isDigit(final char c) {
+		return (c >= '0') && (c <= '9');
+	}
+
+	/*package*/ static boolean isLetter(final char c) {
+		return ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'));
+	}
+
+	private static boolean isWordCharacter(final char c) {	// same as regex \w
+		return Lexer.isLetter(c) || Lexer.isDigit(c) || ('_' == c);
+	}
+}
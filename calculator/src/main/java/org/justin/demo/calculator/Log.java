@@ -1,12 +1,13 @@
 package org.justin.demo.calculator;
 
-import java.util.logging.FileHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Encapsulate log implementation. Built-in JDK14 logging is used.
+ * Encapsulate log implementation. Built-in JDK14 logging is used, with an AsyncFileHandler so logging threads never
+ * block on file I/O. Callers building messages should check isXxxEnabled() first, so disabled levels cost nothing
+ * (no string concatenation, no LogRecord, no exception capture).
  *  
  * TODO: Wrap JDK14 with SLF14 to further decouple application from logger. That would allow easy
  * injecting of a different log implementation (ex: log4j, SLF4J logback, etc), especially using
@@ -15,14 +16,22 @@ import java.util.logging.Logger;
  */
 public final class Log {
 	private static final Logger ROOT_LOGGER = Logger.getLogger("");	// Not the same as getGlobal(), only blank logger has the default STDOUT handler we want to remove.
+	private static volatile int levelValue = Log.ROOT_LOGGER.getLevel().intValue();	// cached for level guards, updated with ROOT_LOGGER level
 
 	/*package*/ static void setJdk14RootLoggerDefaults(final String logfile) {
 		try {
 			for (Handler handler : Log.ROOT_LOGGER.getHandlers()) {
 				Log.ROOT_LOGGER.removeHandler(handler);
 			}
-			Log.ROOT_LOGGER.addHandler(new FileHandler(logfile));
-			Log.ROOT_LOGGER.setLevel(Level.INFO);
+			final AsyncFileHandler handler = new AsyncFileHandler(logfile);
+			Log.ROOT_LOGGER.addHandler(handler);
+			Runtime.getRuntime().addShutdownHook(new Thread("calculator-log-close") {
+				@Override
+				public void run() {
+					handler.close();	// drain the ring buffer, including errors logged just before System.exit()
+				}
+			});
+			Log.setLevel(Level.INFO);
 		} catch(Throwable t) {
 			System.err.println("Failed to configure JDK14 logging");
 			t.printStackTrace();
@@ -34,7 +43,12 @@ public final class Log {
 	 * TODO: Change from static to non-static reusable for unit testing.
 	 */
 	/*package*/ static void setJdk14RootLoggerLogLevel(final String logLevelStr) {
-		Log.ROOT_LOGGER.setLevel(Log.convertLogLevel(logLevelStr));
+		Log.setLevel(Log.convertLogLevel(logLevelStr));
+	}
+
+	private static void setLevel(final Level level) {
+		Log.ROOT_LOGGER.setLevel(level);
+		Log.levelValue = level.intValue();
 	}
 
 	private static Level convertLogLevel(final String logLevelStr) {
@@ -52,6 +66,16 @@ public final class Log {
 		return log4jLogLevel;
 	}
 
+	public static final boolean isErrorEnabled() {
+		return Log.levelValue <= Level.SEVERE.intValue();
+	}
+	public static final boolean isInfoEnabled() {
+		return Log.levelValue <= Level.INFO.intValue();
+	}
+	public static final boolean isDebugEnabled() {
+		return Log.levelValue <= Level.FINE.intValue();
+	}
+
 	public static final void error(final String message, final Throwable t) {
 		Log.ROOT_LOGGER.log(Level.SEVERE, message, t);
 	}
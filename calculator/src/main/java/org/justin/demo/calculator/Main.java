@@ -1,7 +1,22 @@
 package org.justin.demo.calculator;
 
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
 /**
- * @description Command line calculator. Input from parameter (not STDIN), output to console (STDOUT).
+ * @description Command line calculator. Input from parameter, output to console (STDOUT).
+ * Streaming mode reads newline-delimited formulas from STDIN or a file, and writes one result per line to STDOUT.
+ * Server mode answers newline-delimited formulas over TCP on the loopback address until killed, and load test mode measures a loopback server.
  * @author justin.cranford
  * @see {@link org.justin.demo.calculator.Calc}
  * 
@@ -13,9 +28,24 @@ package org.justin.demo.calculator;
  * let(a, 5, add(a, a))
  * let(a, 5, let(b, mult(a, 10), add(b, a)))
  * let(a, let(b, 10, add(b, b)), let(b, 20, add(a, b)))
+ *
+ * Example streaming input:
+ * java calculator.Main -stream formulas.txt
+ * java calculator.Main -stream - INFO < formulas.txt
+ * java calculator.Main -parallel 8 formulas.txt
+ *
+ * Example server input:
+ * java calculator.Main -server 9000 4
+ * java calculator.Main -loadtest 4 100000 16 formulas.txt
  */
 public final class Main {
-	private static final String LOGFILE = "calculator.log";
+	private static final String LOGFILE       = "calculator.log";
+	private static final String STREAM_OPTION   = "-stream";
+	private static final String PARALLEL_OPTION = "-parallel";
+	private static final String SERVER_OPTION   = "-server";
+	private static final String LOADTEST_OPTION = "-loadtest";
+	private static final String[] LOADTEST_EQUATIONS = {"add(1, 2)", "add(1, mult(2, 3))", "mult(add(2, 2), div(9, 3))", "let(a, 5, add(a, a))", "let(a, 5, let(b, mult(a, 10), add(b, a)))", "let(a, let(b, 10, add(b, b)), let(b, 20, add(a, b)))"};
+	private static final String STDIN_SOURCE  = "-";
 	static {
 		Log.setJdk14RootLoggerDefaults(LOGFILE);
 	}
@@ -25,6 +55,17 @@ public final class Main {
 			Main.handleError(Main.USAGE_ERROR.NULL_PARAMETERS);
 		} else if (0 == parameters.length) {
 			Main.handleError(Main.USAGE_ERROR.EMPTY_PARAMETERS);
+		} else if (Main.STREAM_OPTION.equals(parameters[0])) {
+			Main.stream(parameters, 1, 0);
+		} else if (Main.PARALLEL_OPTION.equals(parameters[0])) {
+			final int numWorkers = Main.parsePositive(parameters, 1, "number of workers");
+			if (numWorkers > 0) {
+				Main.stream(parameters, 2, numWorkers);
+			}
+		} else if (Main.SERVER_OPTION.equals(parameters[0])) {
+			Main.serve(parameters);
+		} else if (Main.LOADTEST_OPTION.equals(parameters[0])) {
+			Main.loadtest(parameters);
 		} else if (parameters.length > 2) {
 			Main.handleError(Main.USAGE_ERROR.TOO_MANY_PARAMETERS);
 		} else {
@@ -37,14 +78,12 @@ public final class Main {
 				if (2 == parameters.length) {
 					Log.setJdk14RootLoggerLogLevel(parameters[1]);
 				}
-				StringBuilder sb = new StringBuilder("Invocation: calculator.Main ");
-				for (String parameter : parameters) {
-					sb.append("\"").append(parameter).append("\" ");
-				}
-				Log.info(sb.substring(0, sb.length()-1));
+				Main.logInvocation(parameters);
 				try {
-					final int result = Calc.compute(equation);
-					Log.info("Result: " + result + ", from Expression: " + equation);
+					final String result = Calc.computeToString(equation, Calc.getDefaultNumericMode(), Calc.getDefaultBackend());
+					if (Log.isInfoEnabled()) {
+						Log.info("Result: " + result + ", from Expression: " + equation);
+					}
 					System.out.println(result);
 				} catch (Exception e) {
 					Main.handleError(Main.USAGE_ERROR.PARSE_ERROR, e.getMessage());
@@ -54,12 +93,167 @@ public final class Main {
 		}
 	}
 
+	/**
+	 * Streaming modes: -stream [file|-] [loglevel], and -parallel <workers> [file|-] [loglevel]. Each input line is
+	 * evaluated through a reused evaluator, and per-line errors are written inline, so one bad formula does not stop the
+	 * stream. Parallel mode evaluates with N worker threads, and still writes results in input order. Throughput is
+	 * reported on STDERR, so it does not mix with results on STDOUT.
+	 */
+	private static void stream(final String[] parameters, final int firstOptionalParameter, final int numWorkers) {
+		if (parameters.length > firstOptionalParameter + 2) {
+			Main.handleError(Main.USAGE_ERROR.TOO_MANY_PARAMETERS);
+			return;
+		}
+		final String source = (parameters.length > firstOptionalParameter) ? parameters[firstOptionalParameter] : Main.STDIN_SOURCE;
+		if (null == source) {
+			Main.handleError(Main.USAGE_ERROR.NULL_PARAMETER);
+			return;
+		}
+		if (parameters.length > firstOptionalParameter + 1) {
+			Log.setJdk14RootLoggerLogLevel(parameters[firstOptionalParameter + 1]);
+		}
+		Main.logInvocation(parameters);
+		final long startNanos = System.nanoTime();
+		final long lines;
+		final long errors;
+		try (final ReadableByteChannel input = Main.STDIN_SOURCE.equals(source) ? Channels.newChannel(System.in) : FileChannel.open(Paths.get(source), StandardOpenOption.READ)) {
+			System.out.flush();
+			if (0 == numWorkers) {
+				final StreamingCalculator calculator = new StreamingCalculator(Calc.getDefaultBackend(), Calc.getDefaultNumericMode());
+				lines  = calculator.process(input, Channels.newChannel(System.out));
+				errors = calculator.getErrors();
+			} else {
+				final ParallelStreamingCalculator calculator = new ParallelStreamingCalculator(Calc.getDefaultBackend(), Calc.getDefaultNumericMode(), numWorkers);
+				lines  = calculator.process(input, Channels.newChannel(System.out));
+				errors = calculator.getErrors();
+			}
+		} catch (IOException | InvalidPathException e) {
+			Main.handleError(Main.USAGE_ERROR.IO_ERROR, e.getMessage());
+			return;
+		}
+		final long elapsedNanos = Math.max(1L, System.nanoTime() - startNanos);
+		final String summary = "Streamed " + lines + " formulas with " + errors + " errors in " + (elapsedNanos / 1000000L) + "ms, " + ((lines * 1000000000L) / elapsedNanos) + " lines/sec";
+		if (Log.isInfoEnabled()) {
+			Log.info(summary);
+		}
+		System.err.println(summary);
+	}
+
+	/**
+	 * Server mode: -server <port> [eventloops] [loglevel]. Answers formulas over TCP on the loopback address until the process
+	 * is killed. The server has no authentication, so it is not exposed to the network.
+	 */
+	private static void serve(final String[] parameters) {
+		if (parameters.length > 4) {
+			Main.handleError(Main.USAGE_ERROR.TOO_MANY_PARAMETERS);
+			return;
+		}
+		final int port = Main.parsePositive(parameters, 1, "port");
+		final int numEventLoops = (parameters.length > 2) ? Main.parsePositive(parameters, 2, "number of event loops") : Runtime.getRuntime().availableProcessors();
+		if ((port <= 0) || (numEventLoops <= 0)) {
+			return;
+		}
+		if (parameters.length > 3) {
+			Log.setJdk14RootLoggerLogLevel(parameters[3]);
+		}
+		Main.logInvocation(parameters);
+		try {
+			final CalculatorServer server = new CalculatorServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), Calc.getDefaultBackend(), Calc.getDefaultNumericMode(), numEventLoops);
+			final String summary = "Listening on port " + server.getPort() + " with " + numEventLoops + " event loops";
+			if (Log.isInfoEnabled()) {
+				Log.info(summary);
+			}
+			System.err.println(summary);
+			server.awaitTermination();
+		} catch (IOException e) {
+			Main.handleError(Main.USAGE_ERROR.IO_ERROR, e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Load test mode: -loadtest <connections> <requests> <pipeline> [file] [loglevel]. Starts a server on a loopback
+	 * ephemeral port, sends the requests per connection with up to pipeline requests in flight, and reports latency
+	 * percentiles and throughput on STDERR. Formulas are read from the file, or a built-in example mix is used.
+	 */
+	private static void loadtest(final String[] parameters) {
+		if (parameters.length > 6) {
+			Main.handleError(Main.USAGE_ERROR.TOO_MANY_PARAMETERS);
+			return;
+		}
+		final int connections   = Main.parsePositive(parameters, 1, "number of connections");
+		final int requests      = (connections > 0) ? Main.parsePositive(parameters, 2, "number of requests") : 0;
+		final int pipelineDepth = (requests > 0)    ? Main.parsePositive(parameters, 3, "pipeline depth") : 0;
+		if (pipelineDepth <= 0) {
+			return;
+		}
+		if (parameters.length > 5) {
+			Log.setJdk14RootLoggerLogLevel(parameters[5]);
+		}
+		Main.logInvocation(parameters);
+		final CalculatorLoadGenerator.Result result;
+		try {
+			String[] equations = Main.LOADTEST_EQUATIONS;
+			if ((parameters.length > 4) && (null != parameters[4])) {
+				final List<String> lines = Files.readAllLines(Paths.get(parameters[4]), StandardCharsets.UTF_8);
+				equations = lines.toArray(new String[lines.size()]);
+			}
+			final int numEventLoops = Math.max(1, Math.min(connections, Runtime.getRuntime().availableProcessors()));
+			try (final CalculatorServer server = new CalculatorServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Calc.getDefaultBackend(), Calc.getDefaultNumericMode(), numEventLoops)) {
+				result = new CalculatorLoadGenerator(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), connections, requests, pipelineDepth, equations).run();
+			}
+		} catch (IOException | IllegalArgumentException e) {	// includes InvalidPathException
+			Main.handleError(Main.USAGE_ERROR.IO_ERROR, e.getMessage());
+			return;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (Log.isInfoEnabled()) {
+			Log.info(result.toString());
+		}
+		System.err.println(result);
+	}
+
+	/**
+	 * Parse a required positive int parameter. Reports the usage error and returns 0 if it is missing or invalid.
+	 */
+	private static int parsePositive(final String[] parameters, final int index, final String name) {
+		if ((parameters.length <= index) || (null == parameters[index])) {
+			Main.handleError(Main.USAGE_ERROR.NULL_PARAMETER);
+			return 0;
+		}
+		int value = 0;
+		try {
+			value = Integer.parseInt(parameters[index]);
+		} catch(NumberFormatException e) {
+			// handled below
+		}
+		if (value <= 0) {
+			Main.handleError(Main.USAGE_ERROR.BAD_PARAMETER, "Invalid " + name + " " + parameters[index]);
+			return 0;
+		}
+		return value;
+	}
+
+	private static void logInvocation(final String[] parameters) {
+		if (!Log.isInfoEnabled()) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder("Invocation: calculator.Main ");
+		for (String parameter : parameters) {
+			sb.append("\"").append(parameter).append("\" ");
+		}
+		Log.info(sb.substring(0, sb.length()-1));
+	}
+
 	private static void handleError(final USAGE_ERROR usageError) {
 		Main.handleError(usageError, null);
 	}
 	private static void handleError(final USAGE_ERROR usageError, final String additionalError) {
 		final String errorMessage = "error: " + usageError.getMessage() + (null != additionalError ? ", "+additionalError : "");
-		final String usageMessage = "usage: java calculator.Main <formula> [loglevel=(ERROR,INFO,DEBUG)]";
+		final String usageMessage = "usage: java calculator.Main <formula> [loglevel=(ERROR,INFO,DEBUG)]" + System.lineSeparator() + "       java calculator.Main -stream [file|-] [loglevel=(ERROR,INFO,DEBUG)]" + System.lineSeparator() + "       java calculator.Main -parallel <workers> [file|-] [loglevel=(ERROR,INFO,DEBUG)]" + System.lineSeparator() + "       java calculator.Main -server <port> [eventloops] [loglevel=(ERROR,INFO,DEBUG)]" + System.lineSeparator() + "       java calculator.Main -loadtest <connections> <requests> <pipeline> [file] [loglevel=(ERROR,INFO,DEBUG)]";
 		Log.error(errorMessage);
 		Log.info(usageMessage);
 		System.err.println(errorMessage);
@@ -73,7 +267,9 @@ public final class Main {
 		TOO_MANY_PARAMETERS	(3, "Too many parameters"),
 		NULL_PARAMETER		(4, "Null parameter"),
 		EMPTY_PARAMETER		(5, "Empty parameter"),
-		PARSE_ERROR			(6, "Parse error");
+		PARSE_ERROR			(6, "Parse error"),
+		IO_ERROR			(7, "I/O error"),
+		BAD_PARAMETER		(8, "Bad parameter");
 
 		private int    errorCode;
 		private String errorMessage;
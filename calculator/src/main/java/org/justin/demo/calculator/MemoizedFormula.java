@@ -0,0 +1,219 @@
+package org.justin.demo.calculator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Interpreter for hash-consed formulas that evaluates each shared subexpression once per variable environment. The
+ * Parser and Optimizer share identical subtrees, so add(mult(x, y), mult(x, y)) has one mult node referenced twice.
+ * The tree interpreter in Formula evaluates that node twice, this evaluates it once and reuses the value.
+ *
+ * The DAG is flattened into arrays indexed by node id, in post-order. Each shared operation node has a memo slot that
+ * holds its last value and the time it was computed. Time is a counter incremented by every let binding store, and
+ * lastWrite records the time each frame slot was last stored. A memo is valid while none of the frame slots the node
+ * reads (its free slots) were stored after it was computed, so a shared node under the same let bindings is reused,
+ * and under different bindings, ex: the value and body of let(a, 1, let(a, 2, ...)), it is recomputed.
+ *
+ * Results and exceptions are exactly the same as Formula.evaluate(). Only int mode is supported.
+ * @author justin.cranford
+ */
+/*package*/ final class MemoizedFormula implements IntExpression {
+	private static final int LITERAL  = 0;
+	private static final int VARIABLE = 1;
+	private static final int LET      = 2;
+	private static final int ADD      = 3;	// binary operations are ADD + Operator.ordinal()
+	private static final Expression.Operator[] OPERATORS = Expression.Operator.values();
+
+	private final Formula formula;
+	private final int[]   kind;
+	private final int[]   first;	// literal value, variable slot, left operand id, or let value id
+	private final int[]   second;	// right operand id, or let body id
+	private final int[]   letSlot;
+	private final int[]   memoIndex;	// node id => memo slot, -1 if the node is not memoized
+	private final int[][] freeSlots;	// memo slot => frame slots read by the node
+	private final int     root;
+
+	private MemoizedFormula(final Formula formula, final Flattener flattener) {
+		final int nodeCount = flattener.nodes.size();
+		this.formula   = formula;
+		this.kind      = new int[nodeCount];
+		this.first     = new int[nodeCount];
+		this.second    = new int[nodeCount];
+		this.letSlot   = new int[nodeCount];
+		this.memoIndex = new int[nodeCount];
+		final List<int[]> memoFreeSlots = new ArrayList<>();
+		for (int id=0; id<nodeCount; id++) {
+			final Expression node = flattener.nodes.get(id);
+			if (node instanceof Expression.Literal) {
+				this.kind[id]  = MemoizedFormula.LITERAL;
+				this.first[id] = ((Expression.Literal) node).getValue();
+			} else if (node instanceof Expression.Variable) {
+				this.kind[id]  = MemoizedFormula.VARIABLE;
+				this.first[id] = ((Expression.Variable) node).getSlot();
+			} else if (node instanceof Expression.Binary) {
+				final Expression.Binary binary = (Expression.Binary) node;
+				this.kind[id]   = MemoizedFormula.ADD + binary.getOperator().ordinal();
+				this.first[id]  = flattener.ids.get(binary.getLeft()).intValue();
+				this.second[id] = flattener.ids.get(binary.getRight()).intValue();
+			} else {
+				final Expression.Let let = (Expression.Let) node;
+				this.kind[id]    = MemoizedFormula.LET;
+				this.first[id]   = flattener.ids.get(let.getValue()).intValue();
+				this.second[id]  = flattener.ids.get(let.getBody()).intValue();
+				this.letSlot[id] = let.getSlot();
+			}
+			if ((flattener.uses[id] > 1) && (this.kind[id] >= MemoizedFormula.LET)) {
+				this.memoIndex[id] = memoFreeSlots.size();
+				memoFreeSlots.add(flattener.freeSlots.get(id).stream().toArray());
+			} else {
+				this.memoIndex[id] = -1;
+			}
+		}
+		this.freeSlots = memoFreeSlots.toArray(new int[memoFreeSlots.size()][]);
+		this.root      = nodeCount - 1;
+	}
+
+	/**
+	 * Return an interpreter that memoizes shared subexpressions, or the formula itself if no operation node is shared.
+	 */
+	/*package*/ static IntExpression memoizeIfShared(final Formula formula) {
+		final Flattener flattener = new Flattener();
+		flattener.add(formula.getExpression());
+		for (int id=0; id<flattener.nodes.size(); id++) {
+			if ((flattener.uses[id] > 1) && !(flattener.nodes.get(id) instanceof Expression.Literal) && !(flattener.nodes.get(id) instanceof Expression.Variable)) {
+				return new MemoizedFormula(formula, flattener);
+			}
+		}
+		return formula;
+	}
+
+	/**
+	 * Evaluate with a new frame and empty memos. Throws ArithmeticException for divide by zero.
+	 */
+	@Override
+	public int evaluate() {
+		return new Evaluation(this).evaluate(this.root);
+	}
+
+	/*package*/ int getNodeCount() {
+		return this.kind.length;
+	}
+
+	/*package*/ int getMemoizedCount() {
+		return this.freeSlots.length;
+	}
+
+	@Override
+	public String toString() {
+		return this.formula.toString();
+	}
+
+	/**
+	 * Mutable state of one evaluation, so concurrent evaluations of a cached MemoizedFormula do not interfere.
+	 */
+	private static final class Evaluation {
+		private final MemoizedFormula program;
+		private final int[] frame;
+		private final int[] lastWrite;	// frame slot => time of its last store
+		private final int[] memoValue;
+		private final int[] memoTime;	// memo slot => time the value was computed, 0 if never
+		private int         time = 1;
+
+		/*package*/ Evaluation(final MemoizedFormula program) {
+			this.program   = program;
+			this.frame     = new int[program.formula.getFrameSize()];
+			this.lastWrite = new int[this.frame.length];
+			this.memoValue = new int[program.freeSlots.length];
+			this.memoTime  = new int[program.freeSlots.length];
+		}
+
+		/*package*/ int evaluate(final int id) {
+			final MemoizedFormula program = this.program;
+			final int memo = program.memoIndex[id];
+			if ((memo >= 0) && this.isValid(memo)) {
+				return this.memoValue[memo];
+			}
+			final int value;
+			switch(program.kind[id]) {
+				case MemoizedFormula.LITERAL  : value = program.first[id];				break;
+				case MemoizedFormula.VARIABLE : value = this.frame[program.first[id]];	break;
+				case MemoizedFormula.LET : {
+					final int slot = program.letSlot[id];
+					this.frame[slot]     = this.evaluate(program.first[id]);
+					this.lastWrite[slot] = ++this.time;
+					value = this.evaluate(program.second[id]);
+					break;
+				}
+				default : {
+					final int leftValue = this.evaluate(program.first[id]);	// evaluate left before right, same order as Formula
+					value = MemoizedFormula.OPERATORS[program.kind[id] - MemoizedFormula.ADD].apply(leftValue, this.evaluate(program.second[id]));
+					break;
+				}
+			}
+			if (memo >= 0) {
+				this.memoValue[memo] = value;
+				this.memoTime[memo]  = this.time;
+			}
+			return value;
+		}
+
+		private boolean isValid(final int memo) {
+			final int computed = this.memoTime[memo];
+			if (0 == computed) {
+				return false;
+			}
+			for (final int slot : this.program.freeSlots[memo]) {
+				if (this.lastWrite[slot] > computed) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Assigns post-order ids to distinct nodes, counts references to each node, and computes the frame slots each node
+	 * reads from outside itself: a variable reads its slot, a let reads what its value reads plus what its body reads
+	 * other than its own slot.
+	 */
+	private static final class Flattener {
+		private final IdentityHashMap<Expression,Integer> ids = new IdentityHashMap<>();
+		private final List<Expression> nodes     = new ArrayList<>();
+		private final List<BitSet>     freeSlots = new ArrayList<>();
+		private int[]                  uses      = new int[16];
+
+		/*package*/ int add(final Expression node) {
+			final Integer existing = this.ids.get(node);
+			if (null != existing) {
+				this.uses[existing.intValue()]++;
+				return existing.intValue();
+			}
+			final BitSet free = new BitSet();
+			if (node instanceof Expression.Variable) {
+				free.set(((Expression.Variable) node).getSlot());
+			} else if (node instanceof Expression.Binary) {
+				final Expression.Binary binary = (Expression.Binary) node;
+				free.or(this.freeSlots.get(this.add(binary.getLeft())));
+				free.or(this.freeSlots.get(this.add(binary.getRight())));
+			} else if (node instanceof Expression.Let) {
+				final Expression.Let let = (Expression.Let) node;
+				free.or(this.freeSlots.get(this.add(let.getValue())));
+				final BitSet body = (BitSet) this.freeSlots.get(this.add(let.getBody())).clone();
+				body.clear(let.getSlot());
+				free.or(body);
+			}
+			final int id = this.nodes.size();
+			this.ids.put(node, Integer.valueOf(id));
+			this.nodes.add(node);
+			this.freeSlots.add(free);
+			if (id == this.uses.length) {
+				this.uses = Arrays.copyOf(this.uses, id * 2);
+			}
+			this.uses[id] = 1;
+			return id;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+package org.justin.demo.calculator;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Optimization pass between the Parser and evaluation. Rewrites a resolved expression tree into an equivalent,
+ * usually smaller, tree:
+ * - Fold operations with two literal operands: mult(add(2, 2), div(9, 3)) => 12
+ * - Inline let variables bound to literals: let(a, 5, add(a, b)) => add(5, b)
+ * - Drop let bindings whose variable is not used: let(a, add(b, 1), b) => b
+ * - Simplify identities: add(x, 0), add(0, x), sub(x, 0), mult(x, 1), mult(1, x), div(x, 1) => x
+ * - Simplify zero products: mult(x, 0), mult(0, x) => 0
+ *
+ * Results are exactly the same as the unoptimized tree. int overflow wraps the same way at fold time as at evaluation
+ * time. Division by zero is never folded, and subtrees that may throw ArithmeticException (any div whose divisor is not
+ * a non-zero literal) are never removed, so mult(div(1, 0), 0) and let(a, div(1, 0), 5) still throw.
+ *
+ * Every returned node is hash-consed, so subtrees that become identical after rewriting are shared like the Parser output.
+ * Facts used by let folding (may throw, free slots) are computed once per interned node as it is returned, bottom-up, so
+ * folding a let does not walk its body again.
+ * @author justin.cranford
+ */
+/*package*/ final class Optimizer {
+	private final Expression.Literal[] slotConstants;	// slot => literal bound by the enclosing let, null if not constant
+	private final ExpressionInterner   interner = new ExpressionInterner();
+	private final IdentityHashMap<Expression,Facts> facts = new IdentityHashMap<>();	// interned node => facts, children before parents
+
+	private Optimizer(final int frameSize) {
+		this.slotConstants = new Expression.Literal[frameSize];
+	}
+
+	/**
+	 * Return an optimized formula. Frame size is unchanged, except it becomes 0 when no variables remain.
+	 */
+	/*package*/ static Formula optimize(final Formula formula) {
+		final Expression optimized = new Optimizer(formula.getFrameSize()).optimize(formula.getExpression());
+		if (optimized == formula.getExpression()) {
+			return formula;
+		}
+		return new Formula(optimized, Optimizer.usesFrame(optimized) ? formula.getFrameSize() : 0);
+	}
+
+	private Expression optimize(final Expression expression) {
+		final Expression optimized;
+		if (expression instanceof Expression.Literal) {
+			optimized = expression;
+		} else if (expression instanceof Expression.Variable) {
+			final Expression.Literal constant = this.slotConstants[((Expression.Variable) expression).getSlot()];
+			optimized = (null == constant) ? expression : constant;
+		} else if (expression instanceof Expression.Binary) {
+			optimized = this.optimizeBinary((Expression.Binary) expression);
+		} else {
+			optimized = this.optimizeLet((Expression.Let) expression);
+		}
+		final Expression interned = this.interner.intern(optimized);	// children were interned by the recursive calls
+		if (!this.facts.containsKey(interned)) {
+			this.facts.put(interned, this.analyze(interned));
+		}
+		return interned;
+	}
+
+	private Expression optimizeBinary(final Expression.Binary binary) {
+		final Expression left  = this.optimize(binary.getLeft());
+		final Expression right = this.optimize(binary.getRight());
+		final Expression.Operator operator = binary.getOperator();
+		final boolean isLeftLiteral  = left  instanceof Expression.Literal;
+		final boolean isRightLiteral = right instanceof Expression.Literal;
+		final int leftValue  = isLeftLiteral  ? ((Expression.Literal) left).getValue()  : 0;
+		final int rightValue = isRightLiteral ? ((Expression.Literal) right).getValue() : 0;
+		if (isLeftLiteral && isRightLiteral && ((Expression.Operator.DIV != operator) || (0 != rightValue))) {
+			return new Expression.Literal(operator.apply(leftValue, rightValue));
+		}
+		switch(operator) {
+			case ADD : {
+				if (isRightLiteral && (0 == rightValue)) {
+					return left;
+				} else if (isLeftLiteral && (0 == leftValue)) {
+					return right;
+				}
+				break;
+			}
+			case SUB : {
+				if (isRightLiteral && (0 == rightValue)) {
+					return left;
+				}
+				break;
+			}
+			case MULT : {
+				if (isRightLiteral && (1 == rightValue)) {
+					return left;
+				} else if (isLeftLiteral && (1 == leftValue)) {
+					return right;
+				} else if (isRightLiteral && (0 == rightValue) && !this.facts.get(left).mayThrow) {
+					return right;
+				} else if (isLeftLiteral && (0 == leftValue) && !this.facts.get(right).mayThrow) {
+					return left;
+				}
+				break;
+			}
+			default : {
+				if (isRightLiteral && (1 == rightValue)) {
+					return left;
+				}
+				break;
+			}
+		}
+		if ((left == binary.getLeft()) && (right == binary.getRight())) {
+			return binary;
+		}
+		return new Expression.Binary(operator, left, right);
+	}
+
+	private Expression optimizeLet(final Expression.Let let) {
+		final Expression value = this.optimize(let.getValue());	// let variable is not in scope for its own value
+		final int slot = let.getSlot();
+		final Expression.Literal shadowed = this.slotConstants[slot];
+		this.slotConstants[slot] = (value instanceof Expression.Literal) ? (Expression.Literal) value : null;
+		final Expression body = this.optimize(let.getBody());
+		this.slotConstants[slot] = shadowed;
+		if ((value instanceof Expression.Literal) || (!this.facts.get(body).references(slot) && !this.facts.get(value).mayThrow)) {
+			return body;	// variable was inlined or is not used, and dropping the value cannot hide an exception
+		} else if ((value == let.getValue()) && (body == let.getBody())) {
+			return let;
+		}
+		return new Expression.Let(let.getLetter(), slot, value, body);
+	}
+
+	/**
+	 * Facts of an interned node, from the facts of its interned children. Children are always analyzed first, because
+	 * optimize() returns every child before its parent.
+	 */
+	private Facts analyze(final Expression expression) {
+		if (expression instanceof Expression.Variable) {
+			return new Facts(false, new int[]{((Expression.Variable) expression).getSlot()});
+		} else if (expression instanceof Expression.Binary) {
+			final Expression.Binary binary = (Expression.Binary) expression;
+			final Facts left  = this.facts.get(binary.getLeft());
+			final Facts right = this.facts.get(binary.getRight());
+			final boolean divMayThrow = (Expression.Operator.DIV == binary.getOperator()) && (!(binary.getRight() instanceof Expression.Literal) || (0 == ((Expression.Literal) binary.getRight()).getValue()));
+			return new Facts(divMayThrow || left.mayThrow || right.mayThrow, Facts.union(left.freeSlots, right.freeSlots));
+		} else if (expression instanceof Expression.Let) {
+			final Expression.Let let = (Expression.Let) expression;
+			final Facts value = this.facts.get(let.getValue());
+			final Facts body  = this.facts.get(let.getBody());
+			int[] bodySlots = body.freeSlots;
+			if (body.references(let.getSlot())) {
+				bodySlots = Arrays.copyOf(bodySlots, bodySlots.length - 1);	// the let slot is the largest free slot of its body
+			}
+			return new Facts(value.mayThrow || body.mayThrow, Facts.union(value.freeSlots, bodySlots));
+		}
+		return Facts.LITERAL;
+	}
+
+	private static boolean usesFrame(final Expression expression) {
+		if (expression instanceof Expression.Binary) {
+			final Expression.Binary binary = (Expression.Binary) expression;
+			return Optimizer.usesFrame(binary.getLeft()) || Optimizer.usesFrame(binary.getRight());
+		}
+		return !(expression instanceof Expression.Literal);
+	}
+
+	/**
+	 * mayThrow: evaluating the node may throw ArithmeticException, i.e. it contains a div by a non-literal or zero.
+	 * freeSlots: sorted slots the node reads but does not bind. Nested lets in a let body only use higher slots, so the
+	 * let slot is the largest slot its body can read.
+	 */
+	private static final class Facts {
+		/*package*/ static final int[] NO_SLOTS = new int[0];
+		/*package*/ static final Facts LITERAL  = new Facts(false, Facts.NO_SLOTS);
+
+		/*package*/ final boolean mayThrow;
+		/*package*/ final int[]   freeSlots;
+
+		/*package*/ Facts(final boolean mayThrow, final int[] freeSlots) {
+			this.mayThrow  = mayThrow;
+			this.freeSlots = freeSlots;
+		}
+
+		/**
+		 * True if the node reads the slot. Only called with the slot of an enclosing let, which is the largest free slot.
+		 */
+		/*package*/ boolean references(final int slot) {
+			return (this.freeSlots.length > 0) && (slot == this.freeSlots[this.freeSlots.length - 1]);
+		}
+
+		/*package*/ static int[] union(final int[] left, final int[] right) {
+			if ((0 == right.length) || (left == right)) {
+				return left;
+			} else if (0 == left.length) {
+				return right;
+			}
+			final int[] merged = new int[left.length + right.length];
+			int i = 0, j = 0, k = 0;
+			while ((i < left.length) && (j < right.length)) {
+				if (left[i] < right[j]) {
+					merged[k++] = left[i++];
+				} else if (left[i] > right[j]) {
+					merged[k++] = right[j++];
+				} else {
+					merged[k++] = left[i++];
+					j++;
+				}
+			}
+			while (i < left.length) {
+				merged[k++] = left[i++];
+			}
+			while (j < right.length) {
+				merged[k++] = right[j++];
+			}
+			return (k == left.length) ? left : ((k == right.length) ? right : Arrays.copyOf(merged, k));
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package org.justin.demo.calculator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Three-stage pipeline version of StreamingCalculator: one reader thread, N evaluator worker threads, and one ordered
+ * writer (the calling thread). Lines are grouped into chunks to amortize queue hand-off.
+ *
+ * The reader puts each chunk on two bounded queues: the work queue consumed by any worker, and the order queue consumed
+ * by the writer. The writer takes chunks from the order queue in input order and waits for each one to be completed,
+ * so output order matches input order even though evaluation happens out of order. The order queue capacity bounds the
+ * number of chunks in flight, and therefore memory.
+ * @author justin.cranford
+ */
+public final class ParallelStreamingCalculator {
+	/*package*/ static final int CHUNK_LINES = 1024;
+
+	private static final Chunk END_OF_INPUT = new Chunk(0);
+
+	private final Calc.Backend     backend;
+	private final Calc.NumericMode numericMode;
+	private final int              numWorkers;
+	private final int              queueCapacity;
+	private volatile long lines  = 0;
+	private volatile long errors = 0;
+	private volatile long elapsedNanos = 0;
+
+	public ParallelStreamingCalculator(final Calc.Backend backend, final int numWorkers) {
+		this(backend, Calc.NumericMode.INT, numWorkers);
+	}
+
+	public ParallelStreamingCalculator(final Calc.Backend backend, final Calc.NumericMode numericMode, final int numWorkers) {
+		if (numWorkers <= 0) {
+			throw new IllegalArgumentException("Invalid number of workers. Must be 1 or more.");
+		}
+		this.backend       = backend;
+		this.numericMode   = numericMode;
+		this.numWorkers    = numWorkers;
+		this.queueCapacity = 4 * numWorkers;
+	}
+
+	/**
+	 * Read all lines from input, evaluate in parallel, and write results to output in input order. Output is flushed
+	 * but neither channel is closed. Returns number of lines processed.
+	 */
+	public long process(final ReadableByteChannel input, final WritableByteChannel output) throws IOException {
+		final BufferedReader reader = new BufferedReader(Channels.newReader(input, StandardCharsets.UTF_8.newDecoder(), StreamingCalculator.BUFFER_SIZE), StreamingCalculator.BUFFER_SIZE);
+		final BufferedWriter writer = new BufferedWriter(Channels.newWriter(output, StandardCharsets.UTF_8.newEncoder(), StreamingCalculator.BUFFER_SIZE), StreamingCalculator.BUFFER_SIZE);
+		this.process(reader, writer);
+		writer.flush();
+		return this.lines;
+	}
+
+	public void process(final BufferedReader reader, final Writer writer) throws IOException {
+		final long startNanos = System.nanoTime();
+		final BlockingQueue<Chunk> workQueue  = new ArrayBlockingQueue<>(this.queueCapacity);
+		final BlockingQueue<Chunk> orderQueue = new ArrayBlockingQueue<>(this.queueCapacity);
+		final Reader readerStage = new Reader(reader, workQueue, orderQueue, this.numWorkers);
+		final Thread readerThread = new Thread(readerStage, "calculator-reader");
+		final Thread[] workerThreads = new Thread[this.numWorkers];
+		for (int i=0; i<this.numWorkers; i++) {
+			workerThreads[i] = new Thread(new Worker(workQueue, this.backend, this.numericMode), "calculator-worker-" + i);
+			workerThreads[i].setDaemon(true);
+		}
+		readerThread.setDaemon(true);
+		readerThread.start();
+		for (final Thread workerThread : workerThreads) {
+			workerThread.start();
+		}
+
+		long numLines  = 0;
+		long numErrors = 0;
+		try {
+			while (true) {
+				final Chunk chunk = orderQueue.take();
+				if (ParallelStreamingCalculator.END_OF_INPUT == chunk) {
+					break;
+				}
+				chunk.done.await();
+				if (null != chunk.failure) {
+					throw new IllegalStateException("Evaluation failed in worker", chunk.failure);
+				}
+				for (int i=0; i<chunk.size; i++) {
+					writer.write(chunk.results[i]);
+					writer.write('\n');
+				}
+				numLines  += chunk.size;
+				numErrors += chunk.errors;
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing results", e);
+		} finally {
+			readerThread.interrupt();	// unblock reader if writing stopped early
+			for (final Thread workerThread : workerThreads) {
+				workerThread.interrupt();	// idle workers are blocked on the work queue
+			}
+		}
+		if (null != readerStage.failure) {
+			throw readerStage.failure;
+		}
+		this.lines  = numLines;
+		this.errors = numErrors;
+		this.elapsedNanos = System.nanoTime() - startNanos;
+	}
+
+	public long getLines() {
+		return this.lines;
+	}
+
+	public long getErrors() {
+		return this.errors;
+	}
+
+	public long getElapsedNanos() {
+		return this.elapsedNanos;
+	}
+
+	public double getLinesPerSecond() {
+		return (0 == this.elapsedNanos) ? 0D : (this.lines * 1000000000D) / this.elapsedNanos;
+	}
+
+	/**
+	 * Chunk of input lines, replaced in place by result lines. Workers count down the latch when results are complete.
+	 */
+	private static final class Chunk {
+		/*package*/ final String[]       results;	// input lines, replaced by result lines
+		/*package*/ final CountDownLatch done = new CountDownLatch(1);
+		/*package*/ int size   = 0;
+		/*package*/ int errors = 0;
+		/*package*/ Throwable failure = null;	// unexpected error (ex: OutOfMemoryError), rethrown by the writer
+		/*package*/ Chunk(final int capacity) {
+			this.results = new String[capacity];
+		}
+	}
+
+	private static final class Reader implements Runnable {
+		private final BufferedReader       reader;
+		private final BlockingQueue<Chunk> workQueue;
+		private final BlockingQueue<Chunk> orderQueue;
+		private final int                  numWorkers;
+		/*package*/ volatile IOException failure = null;
+
+		/*package*/ Reader(final BufferedReader reader, final BlockingQueue<Chunk> workQueue, final BlockingQueue<Chunk> orderQueue, final int numWorkers) {
+			this.reader     = reader;
+			this.workQueue  = workQueue;
+			this.orderQueue = orderQueue;
+			this.numWorkers = numWorkers;
+		}
+
+		@Override
+		public void run() {
+			try {
+				try {
+					Chunk chunk = new Chunk(ParallelStreamingCalculator.CHUNK_LINES);
+					String line;
+					while (null != (line = this.reader.readLine())) {
+						chunk.results[chunk.size++] = line;
+						if (chunk.size == ParallelStreamingCalculator.CHUNK_LINES) {
+							this.orderQueue.put(chunk);	// order queue preserves input order, work queue is drained in any order
+							this.workQueue.put(chunk);
+							chunk = new Chunk(ParallelStreamingCalculator.CHUNK_LINES);
+						}
+					}
+					if (chunk.size > 0) {
+						this.orderQueue.put(chunk);
+						this.workQueue.put(chunk);
+					}
+				} catch(IOException e) {
+					this.failure = e;
+				} finally {
+					this.orderQueue.put(ParallelStreamingCalculator.END_OF_INPUT);
+					for (int i=0; i<this.numWorkers; i++) {
+						this.workQueue.put(ParallelStreamingCalculator.END_OF_INPUT);
+					}
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static final class Worker implements Runnable {
+		private final BlockingQueue<Chunk> workQueue;
+		private final Calc.Backend         backend;
+		private final Calc.NumericMode     numericMode;
+
+		/*package*/ Worker(final BlockingQueue<Chunk> workQueue, final Calc.Backend backend, final Calc.NumericMode numericMode) {
+			this.workQueue   = workQueue;
+			this.backend     = backend;
+			this.numericMode = numericMode;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					final Chunk chunk = this.workQueue.take();
+					if (ParallelStreamingCalculator.END_OF_INPUT == chunk) {
+						return;
+					}
+					final String[] lines = chunk.results;
+					try {
+						for (int i=0; i<chunk.size; i++) {
+							try {
+								lines[i] = Calc.computeToString(lines[i], this.numericMode, this.backend);
+							} catch(Exception | StackOverflowError e) {	// one deeply nested equation must not stop the stream
+								chunk.errors++;
+								lines[i] = StreamingCalculator.ERROR_PREFIX + e.getMessage();
+							}
+						}
+					} catch(Throwable t) {
+						chunk.failure = t;
+					} finally {
+						chunk.done.countDown();	// publishes results and errors to the writer, never leave the writer waiting
+					}
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
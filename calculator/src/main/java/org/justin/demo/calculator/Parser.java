@@ -0,0 +1,168 @@
+package org.justin.demo.calculator;
+
+import java.util.Arrays;
+
+/**
+ * One-pass recursive descent parser. Builds an immutable Expression tree directly from the Lexer token stream,
+ * so each character of the equation is scanned exactly once regardless of nesting depth.
+ *
+ * Variables are resolved while parsing: each let binding is assigned a lexical slot equal to its nesting depth, and
+ * each variable reference is bound to the slot of the innermost enclosing let for that letter. Unknown variables are
+ * reported at parse time.
+ *
+ * Nodes are hash-consed as they are built, so identical subtrees (same operations, literals, and variable slots) are
+ * one shared node, and the result is a DAG: add(mult(x, y), mult(x, y)) has one mult node referenced twice.
+ *
+ * Grammar:
+ * expression := NUMBER | LETTER | operation
+ * operation  := ("add"|"sub"|"mult"|"div") "(" expression "," expression ")"
+ *             | "let" "(" LETTER "," expression "," expression ")"
+ * @author justin.cranford
+ */
+/*package*/ final class Parser {
+	private final Lexer lexer;
+	private final Calc.NumericMode numericMode;	// range of literals
+	private final int[] letterSlots = new int[128];	// letter => slot of innermost enclosing let, -1 if unbound
+	private final ExpressionInterner interner = new ExpressionInterner();	// identical subtrees share one node
+	private int depth    = 0;	// current let nesting depth, next slot to assign
+	private int maxDepth = 0;	// frame size
+
+	private Parser(final String equation, final Calc.NumericMode numericMode) {
+		this.lexer       = new Lexer(equation);
+		this.numericMode = numericMode;
+		Arrays.fill(this.letterSlots, -1);
+	}
+
+	/**
+	 * Parse equation into a resolved expression tree. Throws Exception for empty or malformed equations, and for
+	 * references to unknown variables. Free variables are bound to slots 0 to N-1, in the order given, and let
+	 * bindings are assigned slots after them.
+	 */
+	/*package*/ static Formula parse(final String equation, final String... freeVariables) throws Exception {
+		return Parser.parse(equation, Calc.NumericMode.INT, freeVariables);
+	}
+
+	/**
+	 * Parse with literals limited to the range of the numeric mode: int, long, or unlimited for BIG_INTEGER and ADAPTIVE.
+	 */
+	/*package*/ static Formula parse(final String equation, final Calc.NumericMode numericMode, final String... freeVariables) throws Exception {
+		final Parser parser = new Parser(equation, numericMode);
+		for (final String freeVariable : freeVariables) {
+			if ((null == freeVariable) || (1 != freeVariable.length()) || !Lexer.isLetter(freeVariable.charAt(0))) {
+				throw new Exception("invalid variable " + freeVariable);
+			} else if (parser.letterSlots[freeVariable.charAt(0)] >= 0) {
+				throw new Exception("duplicate variable " + freeVariable);
+			}
+			parser.letterSlots[freeVariable.charAt(0)] = parser.depth++;
+		}
+		parser.maxDepth = parser.depth;
+		if (Lexer.END == parser.lexer.next()) {
+			throw new Exception("empty equation");
+		}
+		final Expression expression = parser.parseExpression();
+		if (Lexer.END != parser.lexer.type()) {
+			throw new Exception("unknown expression " + parser.lexer.remaining());
+		}
+		return new Formula(expression, parser.maxDepth);
+	}
+
+	/**
+	 * Parse expression starting at the current token. On return, the current token is the first token after the expression.
+	 */
+	private Expression parseExpression() throws Exception {
+		final Lexer lexer = this.lexer;
+		switch(lexer.type()) {
+			case(Lexer.NUMBER) : {
+				final Expression literal = this.interner.intern(this.parseLiteral());
+				lexer.next();
+				return literal;
+			}
+			case(Lexer.IDENTIFIER) : {
+				final String  operator = lexer.text();
+				final boolean isLetter = lexer.isLetter();
+				if (Lexer.LEFT != lexer.next()) {
+					if (isLetter) {
+						final int slot = this.letterSlots[operator.charAt(0)];
+						if (slot < 0) {
+							throw new Exception("unknown variable " + operator);
+						}
+						return this.interner.intern(new Expression.Variable(operator, slot));
+					}
+					throw new Exception("unknown expression " + operator);
+				}
+				lexer.next();	// skip "("
+				if (operator.equals("let")) {
+					return this.parseLet();
+				}
+				final Expression.Operator binaryOperator = Parser.toOperator(operator);
+				if (null == binaryOperator) {
+					throw new Exception("unknown operator " + operator);
+				}
+				final Expression left = this.parseExpression();
+				this.expect(Lexer.COMMA, operator);
+				final Expression right = this.parseExpression();
+				this.expect(Lexer.RIGHT, operator);
+				return this.interner.intern(new Expression.Binary(binaryOperator, left, right));
+			}
+			default : {
+				throw new Exception("unknown expression " + lexer.remaining());
+			}
+		}
+	}
+
+	private Expression.Literal parseLiteral() throws NumberFormatException {
+		switch(this.numericMode) {
+			case INT  : return new Expression.Literal(this.lexer.intValue());
+			case LONG : return new Expression.Literal(this.lexer.longValue());
+			default   : return new Expression.Literal(this.lexer.bigIntegerValue());
+		}
+	}
+
+	/**
+	 * Parse "letter, value, body)" after "let(" was consumed.
+	 */
+	private Expression parseLet() throws Exception {
+		final Lexer lexer = this.lexer;
+		if (!lexer.isLetter()) {
+			throw new Exception("unknown variable " + lexer.remaining());
+		}
+		final String letter = lexer.text();
+		lexer.next();
+		this.expect(Lexer.COMMA, "let");
+		final Expression value = this.parseExpression();	// letter is not in scope yet, nested lets in value may reuse the slot
+		this.expect(Lexer.COMMA, "let");
+		final int slot     = this.depth++;
+		final int shadowed = this.letterSlots[letter.charAt(0)];
+		this.letterSlots[letter.charAt(0)] = slot;
+		this.maxDepth = Math.max(this.maxDepth, this.depth);
+		final Expression body = this.parseExpression();
+		this.letterSlots[letter.charAt(0)] = shadowed;
+		this.depth--;
+		this.expect(Lexer.RIGHT, "let");
+		return this.interner.intern(new Expression.Let(letter, slot, value, body));
+	}
+
+	/**
+	 * Verify the current token is the expected separator, and advance past it.
+	 */
+	private void expect(final int expectedType, final String operator) throws Exception {
+		final int actualType = this.lexer.type();
+		if (expectedType != actualType) {
+			if ((Lexer.COMMA == actualType) || (Lexer.RIGHT == actualType)) {
+				throw new Exception("unknown operator " + operator);	// wrong number of operands
+			}
+			throw new Exception("unknown expression " + this.lexer.remaining());
+		}
+		this.lexer.next();
+	}
+
+	/*package*/ static Expression.Operator toOperator(final String operator) {
+		switch(operator) {
+			case("add")  : return Expression.Operator.ADD;
+			case("sub")  : return Expression.Operator.SUB;
+			case("mult") : return Expression.Operator.MULT;
+			case("div")  : return Expression.Operator.DIV;
+			default: return null;
+		}
+	}
+}
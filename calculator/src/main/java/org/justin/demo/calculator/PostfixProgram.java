@@ -0,0 +1,287 @@
+package org.justin.demo.calculator;
+
+import java.util.Arrays;
+
+/**
+ * Equation compiled to a flat postfix instruction array, for formulas nested too deeply for the recursive Parser,
+ * Optimizer, ExpressionCompiler, and tree interpreter. Parsing and evaluation both use explicit stacks on the heap,
+ * so nesting depth is bounded only by heap size, and both run in time linear in the equation length.
+ *
+ * Instructions are ints. PUSH is followed by its literal value, LOAD and STORE are followed by a frame slot:
+ * add(1, let(a, 5, mult(a, a))) => PUSH 1, PUSH 5, STORE 0, LOAD 0, LOAD 0, MULT, ADD
+ *
+ * Parse errors and results are the same as the recursive Parser and interpreter in int mode.
+ * @author justin.cranford
+ */
+/*package*/ final class PostfixProgram implements IntExpression {
+	private static final int PUSH  = 0;
+	private static final int LOAD  = 1;
+	private static final int STORE = 2;
+	private static final int ADD   = 3;
+	private static final int SUB   = 4;
+	private static final int MULT  = 5;
+	private static final int DIV   = 6;
+
+	private final int[] code;
+	private final int   maxStack;
+	private final int   frameSize;
+
+	private PostfixProgram(final int[] code, final int maxStack, final int frameSize) {
+		this.code      = code;
+		this.maxStack  = maxStack;
+		this.frameSize = frameSize;
+	}
+
+	/**
+	 * Run the program with a new operand stack and frame. Throws ArithmeticException for divide by zero.
+	 */
+	@Override
+	public int evaluate() {
+		final int[] code  = this.code;
+		final int[] stack = new int[this.maxStack];
+		final int[] frame = new int[this.frameSize];
+		int top = 0;	// number of values on the stack
+		for (int pc=0; pc<code.length; pc++) {
+			switch(code[pc]) {
+				case PostfixProgram.PUSH  : stack[top++] = code[++pc];				break;
+				case PostfixProgram.LOAD  : stack[top++] = frame[code[++pc]];		break;
+				case PostfixProgram.STORE : frame[code[++pc]] = stack[--top];		break;
+				case PostfixProgram.ADD   : top--; stack[top - 1] += stack[top];	break;
+				case PostfixProgram.SUB   : top--; stack[top - 1] -= stack[top];	break;
+				case PostfixProgram.MULT  : top--; stack[top - 1] *= stack[top];	break;
+				default                   : {
+					if (0 == stack[--top]) {
+						throw new ArithmeticException("/ by zero");	// explicit, same message as Operator.apply
+					}
+					stack[top - 1] /= stack[top];
+					break;
+				}
+			}
+		}
+		return stack[0];
+	}
+
+	/*package*/ int getInstructionCount() {
+		return this.code.length;
+	}
+
+	/*package*/ int getMaxStack() {
+		return this.maxStack;
+	}
+
+	/*package*/ int getFrameSize() {
+		return this.frameSize;
+	}
+
+	@Override
+	public String toString() {
+		return "PostfixProgram[code=" + this.code.length + ", maxStack=" + this.maxStack + ", frameSize=" + this.frameSize + "]";
+	}
+
+	/**
+	 * Maximum parenthesis nesting depth of the equation, in one scan with no allocation. Used to route deep formulas here.
+	 */
+	/*package*/ static int nestingDepth(final String equation) {
+		int depth    = 0;
+		int maxDepth = 0;
+		for (int i=0; i<equation.length(); i++) {
+			final char c = equation.charAt(i);
+			if ('(' == c) {
+				maxDepth = Math.max(maxDepth, ++depth);
+			} else if (')' == c) {
+				depth--;
+			}
+		}
+		return maxDepth;
+	}
+
+	/**
+	 * Parse equation directly into a postfix program. Same grammar and error messages as Parser, but each pending
+	 * operation is an entry on an explicit stack instead of a Java stack frame.
+	 */
+	/*package*/ static PostfixProgram parse(final String equation) throws Exception {
+		return new Builder(equation).parse();
+	}
+
+	/**
+	 * Explicit-stack parser state. Each pending operation uses one entry in the parallel pending* arrays.
+	 */
+	private static final class Builder {
+		private static final int BINARY_LEFT  = 0;	// parsing left operand of a binary operation
+		private static final int BINARY_RIGHT = 1;	// parsing right operand
+		private static final int LET_VALUE    = 2;	// parsing value of a let, letter not in scope yet
+		private static final int LET_BODY     = 3;	// parsing body of a let, letter in scope
+
+		private final Lexer lexer;
+		private final int[] letterSlots = new int[128];	// letter => slot of innermost enclosing let, -1 if unbound
+		private int[]    code = new int[64];
+		private int      codeLength = 0;
+		private int      stackHeight = 0;
+		private int      maxStack    = 0;
+		private int      depth       = 0;	// current let nesting depth, next slot to assign
+		private int      maxDepth    = 0;
+		private int[]    pendingState    = new int[16];
+		private int[]    pendingOpcode   = new int[16];	// binary opcode, or letter of a let
+		private int[]    pendingShadowed = new int[16];	// slot shadowed by a let letter
+		private String[] pendingName     = new String[16];	// operator name for error messages
+		private int      pending         = 0;
+
+		/*package*/ Builder(final String equation) {
+			this.lexer = new Lexer(equation);
+			Arrays.fill(this.letterSlots, -1);
+		}
+
+		/*package*/ PostfixProgram parse() throws Exception {
+			final Lexer lexer = this.lexer;
+			if (Lexer.END == lexer.next()) {
+				throw new Exception("empty equation");
+			}
+			while (true) {
+				this.parseOperandStart();
+				if (this.completeOperands()) {
+					break;
+				}
+			}
+			if (Lexer.END != lexer.type()) {
+				throw new Exception("unknown expression " + lexer.remaining());
+			}
+			return new PostfixProgram(Arrays.copyOf(this.code, this.codeLength), this.maxStack, this.maxDepth);
+		}
+
+		/**
+		 * Consume a literal or variable and emit it, or consume the start of an operation and push it as pending.
+		 */
+		private void parseOperandStart() throws Exception {
+			final Lexer lexer = this.lexer;
+			while (true) {
+				if (Lexer.NUMBER == lexer.type()) {
+					this.emit(PostfixProgram.PUSH, lexer.intValue(), 1);
+					lexer.next();
+					return;
+				} else if (Lexer.IDENTIFIER != lexer.type()) {
+					throw new Exception("unknown expression " + lexer.remaining());
+				}
+				final String  operator = lexer.text();
+				final boolean isLetter = lexer.isLetter();
+				if (Lexer.LEFT != lexer.next()) {
+					if (isLetter) {
+						final int slot = this.letterSlots[operator.charAt(0)];
+						if (slot < 0) {
+							throw new Exception("unknown variable " + operator);
+						}
+						this.emit(PostfixProgram.LOAD, slot, 1);
+						return;
+					}
+					throw new Exception("unknown expression " + operator);
+				}
+				lexer.next();	// skip "("
+				if (operator.equals("let")) {
+					if (!lexer.isLetter()) {
+						throw new Exception("unknown variable " + lexer.remaining());
+					}
+					final char letter = lexer.text().charAt(0);
+					lexer.next();
+					this.expect(Lexer.COMMA, "let");
+					this.push(Builder.LET_VALUE, letter, "let");
+				} else {
+					final Expression.Operator binaryOperator = Parser.toOperator(operator);
+					if (null == binaryOperator) {
+						throw new Exception("unknown operator " + operator);
+					}
+					this.push(Builder.BINARY_LEFT, PostfixProgram.ADD + binaryOperator.ordinal(), operator);
+				}
+				// loop to parse the first operand of the new pending operation
+			}
+		}
+
+		/**
+		 * After an operand was emitted, finish every pending operation it completes. Returns true if the whole
+		 * equation is complete, or false if the next operand must be parsed.
+		 */
+		private boolean completeOperands() throws Exception {
+			while (this.pending > 0) {
+				final int top = this.pending - 1;
+				switch(this.pendingState[top]) {
+					case Builder.BINARY_LEFT : {
+						this.expect(Lexer.COMMA, this.pendingName[top]);
+						this.pendingState[top] = Builder.BINARY_RIGHT;
+						return false;
+					}
+					case Builder.BINARY_RIGHT : {
+						this.expect(Lexer.RIGHT, this.pendingName[top]);
+						this.emit(this.pendingOpcode[top], -1);
+						this.pending--;
+						break;
+					}
+					case Builder.LET_VALUE : {
+						this.expect(Lexer.COMMA, "let");
+						final int slot = this.depth++;
+						final int letter = this.pendingOpcode[top];
+						this.pendingShadowed[top] = this.letterSlots[letter];
+						this.letterSlots[letter] = slot;
+						this.maxDepth = Math.max(this.maxDepth, this.depth);
+						this.emit(PostfixProgram.STORE, slot, -1);
+						this.pendingState[top] = Builder.LET_BODY;
+						return false;
+					}
+					default : {
+						this.letterSlots[this.pendingOpcode[top]] = this.pendingShadowed[top];
+						this.depth--;
+						this.expect(Lexer.RIGHT, "let");
+						this.pending--;
+						break;
+					}
+				}
+			}
+			return true;
+		}
+
+		private void push(final int state, final int opcode, final String name) {
+			if (this.pending == this.pendingState.length) {
+				final int capacity = this.pending * 2;
+				this.pendingState    = Arrays.copyOf(this.pendingState,    capacity);
+				this.pendingOpcode   = Arrays.copyOf(this.pendingOpcode,   capacity);
+				this.pendingShadowed = Arrays.copyOf(this.pendingShadowed, capacity);
+				this.pendingName     = Arrays.copyOf(this.pendingName,     capacity);
+			}
+			this.pendingState[this.pending]  = state;
+			this.pendingOpcode[this.pending] = opcode;
+			this.pendingName[this.pending]   = name;
+			this.pending++;
+		}
+
+		/**
+		 * Same check as Parser.expect(), so errors match the recursive parser.
+		 */
+		private void expect(final int expectedType, final String operator) throws Exception {
+			final int actualType = this.lexer.type();
+			if (expectedType != actualType) {
+				if ((Lexer.COMMA == actualType) || (Lexer.RIGHT == actualType)) {
+					throw new Exception("unknown operator " + operator);	// wrong number of operands
+				}
+				throw new Exception("unknown expression " + this.lexer.remaining());
+			}
+			this.lexer.next();
+		}
+
+		private void emit(final int opcode, final int stackChange) {
+			this.ensureCapacity(1);
+			this.code[this.codeLength++] = opcode;
+			this.stackHeight += stackChange;
+		}
+
+		private void emit(final int opcode, final int operand, final int stackChange) {
+			this.ensureCapacity(2);
+			this.code[this.codeLength++] = opcode;
+			this.code[this.codeLength++] = operand;
+			this.stackHeight += stackChange;
+			this.maxStack = Math.max(this.maxStack, this.stackHeight);
+		}
+
+		private void ensureCapacity(final int extra) {
+			if (this.codeLength + extra > this.code.length) {
+				this.code = Arrays.copyOf(this.code, Math.max(this.code.length * 2, this.codeLength + extra));
+			}
+		}
+	}
+}
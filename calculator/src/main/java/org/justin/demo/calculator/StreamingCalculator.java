@@ -0,0 +1,97 @@
+package org.justin.demo.calculator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Evaluate newline-delimited equations from a channel, and write one result line per input line. Equations are
+ * evaluated through the shared Calc expression cache, so repeated equations are parsed once per process. Errors are
+ * reported inline as "error: message" lines instead of terminating, so output line N always answers input line N.
+ * @author justin.cranford
+ */
+public final class StreamingCalculator {
+	/*package*/ static final int    BUFFER_SIZE  = 1 << 16;
+	/*package*/ static final String ERROR_PREFIX = "error: ";
+
+	private final Calc.Backend     backend;
+	private final Calc.NumericMode numericMode;
+	private long lines  = 0;
+	private long errors = 0;
+
+	public StreamingCalculator(final Calc.Backend backend) {
+		this(backend, Calc.NumericMode.INT);
+	}
+
+	public StreamingCalculator(final Calc.Backend backend, final Calc.NumericMode numericMode) {
+		this.backend     = backend;
+		this.numericMode = numericMode;
+	}
+
+	/**
+	 * Read all lines from input, and write results to output. Output is flushed but neither channel is closed.
+	 * Returns number of lines processed.
+	 */
+	public long process(final ReadableByteChannel input, final WritableByteChannel output) throws IOException {
+		final BufferedReader reader = new BufferedReader(Channels.newReader(input, StandardCharsets.UTF_8.newDecoder(), StreamingCalculator.BUFFER_SIZE), StreamingCalculator.BUFFER_SIZE);
+		final BufferedWriter writer = new BufferedWriter(Channels.newWriter(output, StandardCharsets.UTF_8.newEncoder(), StreamingCalculator.BUFFER_SIZE), StreamingCalculator.BUFFER_SIZE);
+		final long before = this.lines;
+		this.process(reader, writer);
+		writer.flush();
+		return this.lines - before;
+	}
+
+	/**
+	 * Read all lines from reader, and write results to writer. Caller is responsible for buffering and flushing.
+	 */
+	public void process(final BufferedReader reader, final Writer writer) throws IOException {
+		final char[] digits = new char[11];	// "-2147483648" is the longest int
+		String equation;
+		while (null != (equation = reader.readLine())) {
+			this.lines++;
+			try {
+				if (Calc.NumericMode.INT == this.numericMode) {
+					final int result = Calc.compute(equation, this.backend);
+					final int start = StreamingCalculator.formatInt(result, digits);
+					writer.write(digits, start, digits.length - start);
+				} else {
+					writer.write(Calc.computeToString(equation, this.numericMode, this.backend));
+				}
+			} catch(Exception | StackOverflowError e) {	// one deeply nested equation must not stop the stream
+				this.errors++;
+				writer.write(StreamingCalculator.ERROR_PREFIX);
+				writer.write(String.valueOf(e.getMessage()));
+			}
+			writer.write('\n');
+		}
+	}
+
+	public long getLines() {
+		return this.lines;
+	}
+
+	public long getErrors() {
+		return this.errors;
+	}
+
+	/**
+	 * Format int right-aligned into buffer without allocating a String. Returns start offset of first character.
+	 */
+	/*package*/ static int formatInt(final int value, final char[] buffer) {
+		int  position = buffer.length;
+		long remaining = Math.abs((long) value);	// long avoids overflow for Integer.MIN_VALUE
+		do {
+			buffer[--position] = (char) ('0' + (remaining % 10));
+			remaining /= 10;
+		} while (remaining > 0);
+		if (value < 0) {
+			buffer[--position] = '-';
+		}
+		return position;
+	}
+}
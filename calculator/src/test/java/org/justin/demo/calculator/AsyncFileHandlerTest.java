@@ -0,0 +1,88 @@
+package org.justin.demo.calculator;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class AsyncFileHandlerTest {
+
+	@Test
+	public void testConcurrentProducersWrapRingBuffer() throws Exception {
+		final File logfile = File.createTempFile("calculator", ".log");
+		try {
+			final int numThreads = 4;
+			final int recordsPerThread = 5000;	// more records than ring buffer capacity, so producers wrap around
+			final AsyncFileHandler handler = new AsyncFileHandler(logfile.getPath(), 64);
+			handler.setFormatter(new Formatter() {
+				@Override
+				public String format(final LogRecord record) {
+					return record.getMessage() + "\n";
+				}
+			});
+			final Thread[] threads = new Thread[numThreads];
+			for (int t=0; t<numThreads; t++) {
+				final int thread = t;
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						for (int i=0; i<recordsPerThread; i++) {
+							handler.publish(new LogRecord(Level.INFO, thread + ":" + i));
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+			handler.flush();
+			Assert.assertEquals(numThreads * recordsPerThread, Files.readAllLines(logfile.toPath(), StandardCharsets.UTF_8).size());
+			handler.publish(new LogRecord(Level.SEVERE, "last"));
+			handler.close();
+			final List<String> lines = Files.readAllLines(logfile.toPath(), StandardCharsets.UTF_8);
+			Assert.assertEquals(numThreads * recordsPerThread + 1, lines.size());
+			Assert.assertEquals("last", lines.get(lines.size() - 1));
+			final int[] nextPerThread = new int[numThreads];
+			for (int i=0; i<lines.size()-1; i++) {	// records from one thread are written in publish order
+				final String[] parts = lines.get(i).split(":");
+				final int thread = Integer.parseInt(parts[0]);
+				Assert.assertEquals(nextPerThread[thread]++, Integer.parseInt(parts[1]));
+			}
+		} finally {
+			Assert.assertTrue(logfile.delete());
+		}
+	}
+
+	@Test
+	public void testLevelFilter() throws Exception {
+		final File logfile = File.createTempFile("calculator", ".log");
+		try {
+			final AsyncFileHandler handler = new AsyncFileHandler(logfile.getPath());
+			handler.setLevel(Level.INFO);
+			handler.publish(new LogRecord(Level.FINE, "debug"));
+			handler.publish(new LogRecord(Level.INFO, "info"));
+			handler.close();
+			final String content = new String(Files.readAllBytes(logfile.toPath()), StandardCharsets.UTF_8);
+			Assert.assertFalse(content.contains("debug"));
+			Assert.assertTrue(content.contains("info"));
+		} finally {
+			Assert.assertTrue(logfile.delete());
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidCapacity() throws Exception {
+		new AsyncFileHandler("unused.log", 100);
+	}
+}
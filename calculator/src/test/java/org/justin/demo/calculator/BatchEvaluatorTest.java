@@ -0,0 +1,61 @@
+package org.justin.demo.calculator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class BatchEvaluatorTest {
+
+	@Test
+	public void testSmallBatch() throws Exception {
+		Assert.assertArrayEquals(new int[]{14, 25, 36}, BatchEvaluator.parse("add(mult(a, 10), b)", "a", "b").evaluate(new int[][]{{1, 2, 3}, {4, 5, 6}}));
+		Assert.assertArrayEquals(new int[]{21, 42}, Calc.computeBatch("add(a, mult(b, 2))", new String[]{"a", "b"}, new int[][]{{1, 2}, {10, 20}}));
+	}
+
+	@Test
+	public void testLetWithFreeVariables() throws Exception {
+		final BatchEvaluator evaluator = BatchEvaluator.parse("let(c, add(a, b), let(a, mult(c, c), sub(a, b)))", "a", "b");
+		Assert.assertArrayEquals(new int[]{9 - 2, 49 - 4}, evaluator.evaluate(new int[][]{{1, 3}, {2, 4}}));
+	}
+
+	@Test
+	public void testParallelMatchesSequentialAndCompute() throws Exception {
+		final int rows = BatchEvaluator.CHUNK_SIZE * 8 + 3;
+		final int[] a = new int[rows];
+		final int[] b = new int[rows];
+		for (int i=0; i<rows; i++) {
+			a[i] = i - rows / 2;
+			b[i] = (i % 97) + 1;
+		}
+		final String equation = "let(c, div(a, b), add(mult(c, b), sub(a, c)))";
+		final BatchEvaluator evaluator = BatchEvaluator.parse(equation, "a", "b");
+		final int[] parallel = evaluator.evaluate(new int[][]{a, b});
+		Assert.assertArrayEquals(evaluator.evaluateSequential(new int[][]{a, b}), parallel);
+		for (int i=0; i<rows; i+=1009) {
+			Assert.assertEquals(Calc.compute("let(a, " + a[i] + ", let(b, " + b[i] + ", " + equation + "))"), parallel[i]);
+		}
+	}
+
+	@Test(expected=ArithmeticException.class)
+	public void testDivideByZeroRow() throws Exception {
+		BatchEvaluator.parse("div(a, b)", "a", "b").evaluate(new int[][]{{1, 2}, {1, 0}});
+	}
+
+	@Test(expected=Exception.class)
+	public void testUnknownVariable() throws Exception {
+		BatchEvaluator.parse("add(a, c)", "a", "b");
+	}
+
+	@Test(expected=Exception.class)
+	public void testDuplicateVariable() throws Exception {
+		BatchEvaluator.parse("add(a, a)", "a", "a");
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMismatchedColumns() throws Exception {
+		BatchEvaluator.parse("add(a, b)", "a", "b").evaluate(new int[][]{{1, 2}, {1}});
+	}
+}
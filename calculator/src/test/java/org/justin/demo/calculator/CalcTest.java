@@ -113,11 +113,110 @@ public final class CalcTest {
 		Calc.compute("add(1,let(a,1,add(a,b)))");	// add() is valid, sum() is not recognized
 	}
 
+	/**
+	 * Variables are resolved when parsing, so an unknown variable is reported even if evaluation would divide by zero first.
+	 */
+	@Test
+	public void testUnknownVariableReportedBeforeDivideByZero() {
+		for (final Calc.Backend backend : Calc.Backend.values()) {
+			try {
+				Calc.compute("add(div(1,0), b)", backend);
+				Assert.fail("Expected unknown variable");
+			} catch(ArithmeticException e) {
+				Assert.fail("Expected unknown variable, not " + e);
+			} catch(Exception e) {
+				Assert.assertEquals("unknown variable b", e.getMessage());
+			}
+		}
+	}
+
 	@Test(expected=java.lang.ArithmeticException.class )
 	public void testDivideByZero() throws Exception {
 		Calc.compute("div(10,0)");	// add() is valid, sum() is not recognized
 	}
 
+	@Test(expected=Exception.class )
+	public void testTooManyOperands() throws Exception {
+		Calc.compute("add(1,2,3)");
+	}
+
+	@Test(expected=Exception.class )
+	public void testTrailingCharacters() throws Exception {
+		Calc.compute("add(1,2))");
+	}
+
+	@Test(expected=NumberFormatException.class )
+	public void testIntegerLiteralOverflow() throws Exception {
+		Calc.compute("add(2147483648,0)");
+	}
+
+	@Test
+	public void testParserLongEquation() throws Exception {
+		// ASSUMPTION: Parsing is single pass, so a long machine-generated equation is parsed in linear time.
+		final int depth = 1000;
+		final StringBuilder sb = new StringBuilder();
+		for (int i=0; i<depth; i++) {
+			sb.append("add(1, ");
+		}
+		sb.append('0');
+		for (int i=0; i<depth; i++) {
+			sb.append(')');
+		}
+		Assert.assertEquals(depth, Calc.compute(sb.toString()));
+	}
+
+	@Test
+	public void testLetSlots() throws Exception {
+		Assert.assertEquals(4, Calc.compute("let(a, let(a, 2, a), let(b, a, add(a, b)))"));			// value let reuses the slot of the outer let
+		Assert.assertEquals(3, Calc.compute("add(let(a, 1, a), let(b, 2, b))"));						// sibling lets share slot 0
+		Assert.assertEquals(21, Calc.compute("let(a, 1, add(let(a, 10, a), let(b, 10, add(a, b))))"));	// shadowed binding visible again after inner let
+		Assert.assertEquals(1, Parser.parse("let(a, let(b, 1, b), a)").getFrameSize());
+		Assert.assertEquals(2, Parser.parse("let(a, 1, let(b, 1, add(a, b)))").getFrameSize());
+	}
+
+	@Test
+	public void testCompilerBackendMatchesInterpreter() throws Exception {
+		final String[] equations = {
+			"add(1, 2)", "add(1, mult(2, 3))", "mult(add(2, 2), div(9, 3))", "let(a, 5, add(a, a))",
+			"let(a, 5, let(b, mult(a, 10), add(b, a)))", "let(a, let(b, 10, add(b, b)), let(b, 20, add(a, b)))",
+			"let(a, 1, let(a, 2, a))", "sub(-129, 32768)", "mult(" + Integer.MAX_VALUE + ", " + Integer.MIN_VALUE + ")",
+			"let(a,1,let(b,2,let(c,3,let(d,4,let(e,5,add(a,add(b,add(c,add(d,e)))))))))",
+		};
+		for (final String equation : equations) {
+			Assert.assertEquals(equation, Calc.compute(equation, Calc.Backend.INTERPRETER), Calc.compute(equation, Calc.Backend.COMPILER));
+		}
+		Assert.assertFalse(Calc.getCache(Calc.Backend.COMPILER).get("add(1,2)") instanceof Formula);	// generated class, not the tree
+	}
+
+	@Test(expected=java.lang.ArithmeticException.class )
+	public void testCompilerDivideByZero() throws Exception {
+		Calc.compute("div(10,0)", Calc.Backend.COMPILER);
+	}
+
+	@Test
+	public void testCompilerDivideByZeroMessageMatchesInterpreter() throws Exception {
+		for (final String equation : new String[]{"div(10,0)", "let(a, 0, div(10, a))", "add(1, div(mult(2, 3), sub(4, 4)))"}) {
+			for (int i=0; i<10000; i++) {	// hot, so an implicit exception would be a preallocated one without a message
+				Assert.assertEquals(equation, "/ by zero", CalcTest.divideByZeroMessage(equation, Calc.Backend.INTERPRETER));
+				Assert.assertEquals(equation, "/ by zero", CalcTest.divideByZeroMessage(equation, Calc.Backend.COMPILER));
+			}
+		}
+	}
+
+	private static String divideByZeroMessage(final String equation, final Calc.Backend backend) throws Exception {
+		try {
+			Calc.compute(equation, backend);
+		} catch(ArithmeticException e) {
+			return e.getMessage();
+		}
+		throw new AssertionError("Expected ArithmeticException for " + equation);
+	}
+
+	@Test(expected=Exception.class )
+	public void testCompilerMissingVariable() throws Exception {
+		Calc.compute("add(1,let(a,1,add(a,b)))", Calc.Backend.COMPILER);
+	}
+
 	/**
 	 * Tests the two-operand operation, including using 9 unique combinations of injected whitespace or no whitespace around the parsed tokens.
 	 */
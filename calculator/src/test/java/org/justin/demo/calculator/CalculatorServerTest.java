@@ -0,0 +1,90 @@
+package org.justin.demo.calculator;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class CalculatorServerTest {
+
+	@Test
+	public void testPipelinedRequestsAnsweredInOrder() throws Exception {
+		final int numLines = 50000;	// enough pipelined responses to fill socket buffers and exercise backpressure
+		final StringBuilder input = new StringBuilder();
+		for (int i=0; i<numLines; i++) {
+			if (0 == i % 101) {
+				input.append("div(").append(i).append(", 0)\n");
+			} else {
+				input.append("let(a, ").append(i).append(", mult(a, sub(a, ").append(i % 13).append(")))\r\n");
+			}
+		}
+		input.append("add(1, 2)");	// last line without newline is still answered
+		try (final CalculatorServer server = CalculatorServerTest.startServer(2)) {
+			try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+				final OutputStream output = socket.getOutputStream();
+				output.write(input.toString().getBytes(StandardCharsets.UTF_8));	// write everything before reading anything
+				socket.shutdownOutput();
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				for (int i=0; i<numLines; i++) {
+					final String expected = (0 == i % 101) ? StreamingCalculator.ERROR_PREFIX + "/ by zero" : Integer.toString(i * (i - (i % 13)));
+					Assert.assertEquals(expected, reader.readLine());
+				}
+				Assert.assertEquals("3", reader.readLine());
+				Assert.assertNull(reader.readLine());	// server closes after answering everything
+			}
+			Assert.assertEquals(numLines + 1, server.getRequests());
+		}
+	}
+
+	@Test
+	public void testLoadGenerator() throws Exception {
+		try (final CalculatorServer server = CalculatorServerTest.startServer(2)) {
+			final CalculatorLoadGenerator generator = new CalculatorLoadGenerator(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), 3, 2000, 8, "add(1, 2)", "let(a, 5, add(a, a))", "sub(x, 1)");
+			final CalculatorLoadGenerator.Result result = generator.run();
+			Assert.assertEquals(6000, result.getRequests());
+			Assert.assertEquals(3 * 666, result.getErrors());	// every third equation has an unknown variable
+			Assert.assertTrue(result.getLatencyNanos(50D) <= result.getLatencyNanos(99D));
+			Assert.assertTrue(result.getLatencyNanos(99D) <= result.getLatencyNanos(100D));
+			Assert.assertTrue(result.getRequestsPerSecond() > 0D);
+			Assert.assertEquals(6000, server.getRequests());
+		}
+	}
+
+	@Test
+	public void testLineTooLong() throws Exception {
+		try (final CalculatorServer server = CalculatorServerTest.startServer(1)) {
+			try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+				final byte[] request = new byte[CalculatorServer.BUFFER_SIZE + 10];
+				Arrays.fill(request, (byte) '1');
+				final OutputStream output = socket.getOutputStream();
+				output.write(request);
+				output.write("\nadd(1, 2)\n".getBytes(StandardCharsets.UTF_8));	// server skips the rest of the long line, then continues
+				socket.shutdownOutput();
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+				Assert.assertEquals(StreamingCalculator.ERROR_PREFIX + "line too long", reader.readLine());
+				Assert.assertEquals("3", reader.readLine());
+				Assert.assertNull(reader.readLine());
+			}
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidEventLoops() throws Exception {
+		new CalculatorServer(0, Calc.Backend.INTERPRETER, 0);
+	}
+
+	private static CalculatorServer startServer(final int numEventLoops) throws Exception {
+		return new CalculatorServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), Calc.Backend.INTERPRETER, numEventLoops);
+	}
+}
@@ -0,0 +1,106 @@
+package org.justin.demo.calculator;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class ColumnarEvaluatorTest {
+
+	@Test
+	public void testSmallBatch() throws Exception {
+		Assert.assertArrayEquals(new int[]{14, 25, 36}, ColumnarEvaluator.parse("add(mult(a, 10), b)", "a", "b").evaluate(new int[][]{{1, 2, 3}, {4, 5, 6}}));
+		Assert.assertArrayEquals(new int[]{9 - 2, 49 - 4}, ColumnarEvaluator.parse("let(c, add(a, b), let(a, mult(c, c), sub(a, b)))", "a", "b").evaluate(new int[][]{{1, 3}, {2, 4}}));
+		Assert.assertArrayEquals(new int[]{7, 7}, ColumnarEvaluator.parse("add(3, 4)", "a").evaluate(new int[][]{{1, 2}}));	// constant
+		Assert.assertArrayEquals(new int[]{1, 2}, ColumnarEvaluator.parse("let(b, a, b)", "a").evaluate(new int[][]{{1, 2}}));	// column copy
+		Assert.assertArrayEquals(new int[]{-10, 5}, ColumnarEvaluator.parse("sub(10, div(100, a))", "a").evaluate(new int[][]{{5, 20}}));	// constant left operands
+		Assert.assertArrayEquals(new int[0], ColumnarEvaluator.parse("div(a, 0)", "a").evaluate(new int[][]{{}}));	// no rows, nothing to divide
+	}
+
+	@Test
+	public void testRegistersAreReused() throws Exception {
+		final ColumnarEvaluator evaluator = ColumnarEvaluator.parse("add(add(mult(a, b), mult(a, 3)), add(mult(b, b), sub(a, b)))", "a", "b");
+		Assert.assertEquals(7, evaluator.getOperationCount());
+		Assert.assertEquals(3, evaluator.getRegisterCount());	// left sum is held while the right side needs two, the last add writes the results directly
+		Assert.assertArrayEquals(new int[]{2 * 5 + 2 * 3 + 5 * 5 + 2 - 5}, evaluator.evaluate(new int[][]{{2}, {5}}));
+	}
+
+	@Test
+	public void testSameResultsAsRowAtATime() throws Exception {
+		final Random random = new Random(12345L);
+		final int rows = ColumnarEvaluator.BLOCK_SIZE * 3 + 17;	// partial last block
+		final int[][] columns = new int[2][rows];
+		for (int i=0; i<rows; i++) {
+			columns[0][i] = random.nextInt(2001) - 1000;
+			columns[1][i] = (0 == (i % 3)) ? Integer.MAX_VALUE - i : random.nextInt(50) + 1;	// overflow wraps the same way
+		}
+		for (int i=0; i<500; i++) {
+			final String equation = ColumnarEvaluatorTest.randomEquation(random, 5, "ab");
+			final String expected = ColumnarEvaluatorTest.evaluate(BatchEvaluator.parse(equation, "a", "b"), null, columns);
+			final ColumnarEvaluator evaluator = ColumnarEvaluator.parse(equation, "a", "b");
+			Assert.assertEquals(equation, expected, ColumnarEvaluatorTest.evaluate(null, evaluator, columns));
+		}
+	}
+
+	@Test
+	public void testParallelMatchesSequential() throws Exception {
+		final int rows = BatchEvaluator.CHUNK_SIZE * 8 + 3;
+		final int[] a = new int[rows];
+		final int[] b = new int[rows];
+		for (int i=0; i<rows; i++) {
+			a[i] = i - rows / 2;
+			b[i] = (i % 97) + 1;
+		}
+		final String equation = "let(c, div(a, b), add(mult(c, b), sub(a, c)))";
+		final int[] parallel = ColumnarEvaluator.parse(equation, "a", "b").evaluate(new int[][]{a, b});
+		Assert.assertArrayEquals(BatchEvaluator.parse(equation, "a", "b").evaluateSequential(new int[][]{a, b}), parallel);
+	}
+
+	@Test
+	public void testDivideByZeroRow() throws Exception {
+		final int[] divisors = new int[ColumnarEvaluator.BLOCK_SIZE * 2];
+		Arrays.fill(divisors, 1);
+		divisors[divisors.length - 1] = 0;
+		for (final String equation : new String[]{"div(a, b)", "div(7, b)", "div(a, sub(b, b))", "mult(div(1, 0), a)"}) {
+			try {
+				ColumnarEvaluator.parse(equation, "a", "b").evaluate(new int[][]{divisors.clone(), divisors});
+				Assert.fail("Expected ArithmeticException for " + equation);
+			} catch(ArithmeticException e) {
+				Assert.assertEquals("/ by zero", e.getMessage());
+			}
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMismatchedColumns() throws Exception {
+		ColumnarEvaluator.parse("add(a, b)", "a", "b").evaluate(new int[][]{{1, 2}, {1}});
+	}
+
+	private static String randomEquation(final Random random, final int depth, final String letters) {
+		final int choice = random.nextInt((0 == depth) ? 2 : 6);
+		if (0 == choice) {
+			return Integer.toString(random.nextInt(11) - 5);
+		} else if (1 == choice) {
+			return String.valueOf(letters.charAt(random.nextInt(letters.length())));
+		} else if (2 == choice) {
+			final char letter = (char) ('a' + random.nextInt(4));
+			return "let(" + letter + ", " + ColumnarEvaluatorTest.randomEquation(random, depth - 1, letters) + ", " + ColumnarEvaluatorTest.randomEquation(random, depth - 1, letters + letter) + ")";
+		}
+		final String operator = new String[]{"add", "sub", "mult", "div"}[random.nextInt(4)];
+		return operator + "(" + ColumnarEvaluatorTest.randomEquation(random, depth - 1, letters) + ", " + ColumnarEvaluatorTest.randomEquation(random, depth - 1, letters) + ")";
+	}
+
+	private static String evaluate(final BatchEvaluator batch, final ColumnarEvaluator columnar, final int[][] columns) {
+		try {
+			final int[] results = (null == batch) ? columnar.evaluateSequential(columns) : batch.evaluateSequential(columns);
+			return Arrays.toString(results);
+		} catch(ArithmeticException e) {
+			return e.getMessage();
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package org.justin.demo.calculator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class ExpressionCacheTest {
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		final ExpressionCache cache = new ExpressionCache(10);
+		final IntExpression first = cache.get("add(1, 2)");
+		Assert.assertSame(first, cache.get("add(1,2)"));		// whitespace-normalized key
+		Assert.assertSame(first, cache.get(" add ( 1 , 2 ) "));
+		Assert.assertEquals(1, cache.getMisses());
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(0, cache.getEvictions());
+		Assert.assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		final ExpressionCache cache = new ExpressionCache(2);
+		final IntExpression one = cache.get("add(1,1)");
+		cache.get("add(2,2)");
+		Assert.assertSame(one, cache.get("add(1,1)"));	// touch, so add(2,2) becomes least recently used
+		cache.get("add(3,3)");								// evict add(2,2)
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertEquals(2, cache.size());
+		Assert.assertSame(one, cache.get("add(1,1)"));
+		cache.get("add(2,2)");
+		Assert.assertEquals(4, cache.getMisses());
+		Assert.assertEquals(2, cache.getEvictions());
+	}
+
+	@Test
+	public void testParseErrorNotCached() throws Exception {
+		final ExpressionCache cache = new ExpressionCache(2);
+		for (int i=0; i<2; i++) {
+			try {
+				cache.get("sum(1,2)");
+				Assert.fail("Expected parse error");
+			} catch(Exception e) {
+				Assert.assertEquals("unknown operator sum", e.getMessage());
+			}
+		}
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(2, cache.getMisses());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidMaxSize() {
+		new ExpressionCache(0);
+	}
+
+	@Test
+	public void testNormalize() {
+		final String noWhitespace = "let(a,5,add(a,a))";
+		Assert.assertSame(noWhitespace, ExpressionCache.normalize(noWhitespace));
+		Assert.assertEquals(noWhitespace, ExpressionCache.normalize(" let ( a , 5 ,\tadd( a, a ) )\n"));
+	}
+}
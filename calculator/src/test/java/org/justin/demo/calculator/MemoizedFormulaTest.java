@@ -0,0 +1,113 @@
+package org.justin.demo.calculator;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class MemoizedFormulaTest {
+
+	@Test
+	public void testParserSharesIdenticalSubtrees() throws Exception {
+		final Expression.Binary root = (Expression.Binary) Parser.parse("add(mult(add(1, 2), 3), mult(add(1, 2), 3))").getExpression();
+		Assert.assertSame(root.getLeft(), root.getRight());
+		final Expression.Let let = (Expression.Let) Parser.parse("let(a, 5, let(b, 6, add(sub(a, b), sub(a, b))))").getExpression();
+		final Expression.Binary body = (Expression.Binary) ((Expression.Let) let.getBody()).getBody();
+		Assert.assertSame(body.getLeft(), body.getRight());
+		final Expression.Binary shadowed = (Expression.Binary) Parser.parse("add(let(a, 1, a), let(a, 2, a))").getExpression();
+		Assert.assertNotSame(shadowed.getLeft(), shadowed.getRight());	// same text, different literal values
+		Assert.assertSame(((Expression.Let) shadowed.getLeft()).getBody(), ((Expression.Let) shadowed.getRight()).getBody());	// same variable slot
+	}
+
+	@Test
+	public void testOptimizerSharesRewrittenSubtrees() throws Exception {
+		final Formula formula = Optimizer.optimize(Parser.parse("let(a, 7, add(mult(add(a, 0), sub(b, 1)), mult(a, sub(b, 1))))", "b"));
+		final Expression.Binary root = (Expression.Binary) formula.getExpression();
+		Assert.assertSame(root.getLeft(), root.getRight());	// add(a, 0) and a both become 7
+		Assert.assertEquals("add(mult(7, sub(b, 1)), mult(7, sub(b, 1)))", formula.toString());
+	}
+
+	@Test
+	public void testMemoizesSharedNodes() throws Exception {
+		final Formula formula = Parser.parse("let(a, 5, add(mult(a, add(a, 1)), mult(a, add(a, 1))))");
+		final MemoizedFormula memoized = (MemoizedFormula) MemoizedFormula.memoizeIfShared(formula);
+		Assert.assertEquals(7, memoized.getNodeCount());	// 5, a, 1, add(a, 1), mult, add, let
+		Assert.assertEquals(1, memoized.getMemoizedCount());	// only the mult node is shared, leaves are never memoized
+		Assert.assertEquals(60, memoized.evaluate());
+		Assert.assertEquals(60, memoized.evaluate());	// memos are per evaluation
+		final Formula unshared = Parser.parse("add(mult(2, 3), mult(3, 2))");
+		Assert.assertSame(unshared, MemoizedFormula.memoizeIfShared(unshared));
+	}
+
+	@Test
+	public void testRecomputesWhenVariablesChange() throws Exception {
+		Assert.assertEquals(2, MemoizedFormulaTest.evaluate("add(let(a, 1, mult(a, a)), let(a, 1, mult(a, a)))"));	// whole let is shared
+		Assert.assertEquals(5, MemoizedFormulaTest.evaluate("add(let(a, 1, mult(a, a)), let(a, 2, mult(a, a)))"));	// shared mult, different binding
+		Assert.assertEquals(8, MemoizedFormulaTest.evaluate("let(a, 2, add(mult(a, a), let(b, 3, mult(a, a))))"));	// storing b does not invalidate mult(a, a)
+		Assert.assertEquals(18, MemoizedFormulaTest.evaluate("let(a, 3, let(b, add(a, a), let(a, add(a, a), add(add(a, a), b))))"));
+	}
+
+	@Test
+	public void testSameResultsAsTreeInterpreter() throws Exception {
+		final Random random = new Random(12345L);
+		int memoized = 0;
+		for (int i=0; i<3000; i++) {
+			final String[] pool = new String[4];	// reuse subexpressions of variable a, so most equations have shared nodes
+			for (int j=0; j<pool.length; j++) {
+				pool[j] = MemoizedFormulaTest.randomEquation(random, 2, "a", null);
+			}
+			final String equation = MemoizedFormulaTest.randomEquation(random, 5, "", pool);
+			final Formula formula = (0 == (i & 1)) ? Parser.parse(equation) : Optimizer.optimize(Parser.parse(equation));
+			final IntExpression expression = MemoizedFormula.memoizeIfShared(formula);
+			if (expression instanceof MemoizedFormula) {
+				memoized++;
+			}
+			Assert.assertEquals(equation, MemoizedFormulaTest.result(formula), MemoizedFormulaTest.result(expression));
+		}
+		Assert.assertTrue("memoized=" + memoized, memoized > 300);
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		final ExpressionCache cache = new ExpressionCache(16, Calc.Backend.INTERPRETER, false);
+		final IntExpression expression = cache.get("let(x, 9, add(div(x, 3), div(x, 3)))");
+		Assert.assertTrue(expression instanceof MemoizedFormula);
+		Assert.assertEquals(6, expression.evaluate());
+		Assert.assertEquals(6, Calc.compute("let(x, 9, add(div(x, 3), div(x, 3)))", Calc.Backend.COMPILER));
+	}
+
+	private static int evaluate(final String equation) throws Exception {
+		final IntExpression expression = MemoizedFormula.memoizeIfShared(Parser.parse(equation));
+		Assert.assertTrue(equation, expression instanceof MemoizedFormula);
+		return expression.evaluate();
+	}
+
+	private static String randomEquation(final Random random, final int depth, final String letters, final String[] pool) {
+		final int choice = random.nextInt((0 == depth) ? 2 : 7);
+		if (0 == choice) {
+			return Integer.toString(random.nextInt(7) - 3);
+		} else if (1 == choice) {
+			return letters.isEmpty() ? Integer.toString(random.nextInt(100)) : String.valueOf(letters.charAt(random.nextInt(letters.length())));
+		} else if (2 == choice) {
+			final char letter = (char) ('a' + random.nextInt(3));
+			return "let(" + letter + ", " + MemoizedFormulaTest.randomEquation(random, depth - 1, letters, pool) + ", " + MemoizedFormulaTest.randomEquation(random, depth - 1, letters + letter, pool) + ")";
+		} else if ((choice >= 5) && (null != pool)) {
+			final String shared = pool[random.nextInt(pool.length)];
+			return (letters.indexOf('a') >= 0) ? shared : "let(a, " + MemoizedFormulaTest.randomEquation(random, depth - 1, letters, pool) + ", " + shared + ")";
+		}
+		final String operator = new String[]{"add", "sub", "mult", "div"}[random.nextInt(4)];
+		return operator + "(" + MemoizedFormulaTest.randomEquation(random, depth - 1, letters, pool) + ", " + MemoizedFormulaTest.randomEquation(random, depth - 1, letters, pool) + ")";
+	}
+
+	private static String result(final IntExpression expression) {
+		try {
+			return Integer.toString(expression.evaluate());
+		} catch(ArithmeticException e) {
+			return e.getMessage();
+		}
+	}
+}
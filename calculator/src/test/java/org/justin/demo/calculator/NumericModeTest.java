@@ -0,0 +1,105 @@
+package org.justin.demo.calculator;
+
+import java.math.BigInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class NumericModeTest {
+
+	@Test
+	public void testLong() throws Exception {
+		Assert.assertEquals(8000000000L, Calc.computeLong("add(4000000000, 4000000000)"));
+		Assert.assertEquals(4294967296L, Calc.computeLong("let(a, 65536, mult(a, a))"));
+		Assert.assertEquals(Long.MIN_VALUE, Calc.computeLong("sub(-9223372036854775807, 1)"));
+		Assert.assertEquals(Long.MIN_VALUE, Calc.computeLong("-9223372036854775808"));
+		Assert.assertEquals(12, Calc.computeLong("mult(add(2, 2), div(9, 3))"));
+		NumericModeTest.assertLongOverflow("add(9223372036854775807, 1)");
+		NumericModeTest.assertLongOverflow("sub(-9223372036854775808, 1)");
+		NumericModeTest.assertLongOverflow("mult(4294967296, 4294967296)");
+		NumericModeTest.assertLongOverflow("div(-9223372036854775808, -1)");
+		try {
+			Calc.computeLong("div(1, 0)");
+			Assert.fail("Expected ArithmeticException");
+		} catch(ArithmeticException e) {
+			Assert.assertEquals("/ by zero", e.getMessage());
+		}
+		try {
+			Calc.computeLong("add(9223372036854775808, 1)");
+			Assert.fail("Expected NumberFormatException");
+		} catch(NumberFormatException e) {
+			Assert.assertEquals("For input string: \"9223372036854775808\"", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBigInteger() throws Exception {
+		Assert.assertEquals(new BigInteger("18446744073709551616"), Calc.computeBigInteger("mult(4294967296, 4294967296)"));
+		Assert.assertEquals(new BigInteger("100000000000000000000000000000"), Calc.computeBigInteger("let(a, 100000000000000000000, mult(a, 1000000000))"));
+		Assert.assertEquals(BigInteger.valueOf(-3), Calc.computeBigInteger("div(-7, 2)"));	// truncates toward zero, same as int and long
+		Assert.assertEquals(BigInteger.valueOf(40), Calc.computeBigInteger("let(a, let(b, 10, add(b, b)), let(b, 20, add(a, b)))"));
+		try {
+			Calc.computeBigInteger("div(100000000000000000000, sub(1, 1))");
+			Assert.fail("Expected ArithmeticException");
+		} catch(ArithmeticException e) {
+			Assert.assertEquals("/ by zero", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testAdaptive() throws Exception {
+		Assert.assertEquals(Long.valueOf(12), Calc.computeAdaptive("mult(add(2, 2), div(9, 3))"));
+		Assert.assertEquals(new BigInteger("18446744073709551616"), Calc.computeAdaptive("mult(4294967296, 4294967296)"));
+		Assert.assertEquals(Long.valueOf(4294967296L), Calc.computeAdaptive("div(mult(4294967296, 4294967296), 4294967296)"));	// demoted back to long
+		Assert.assertEquals(new BigInteger("9223372036854775808"), Calc.computeAdaptive("div(-9223372036854775808, -1)"));
+		Assert.assertEquals(Long.valueOf(1), Calc.computeAdaptive("let(a, mult(9223372036854775807, 2), sub(a, sub(a, 1)))"));
+		Assert.assertEquals(Long.valueOf(-9223372036854775807L), Calc.computeAdaptive("sub(1, 9223372036854775808)"));
+	}
+
+	@Test
+	public void testAdaptiveMatchesBigInteger() throws Exception {
+		final String[] operands = {"0", "1", "-1", "3", "2147483648", "-4294967296", "3037000499", "3037000500", "-3037000500", "4611686018427387904", "9223372036854775807", "-9223372036854775808", "99999999999999999999"};
+		for (final String operator : new String[]{"add", "sub", "mult", "div"}) {
+			for (final String left : operands) {
+				for (final String right : operands) {
+					final String equation = "let(a, " + left + ", " + operator + "(a, mult(" + right + ", 1)))";
+					String expected;
+					try {
+						expected = Calc.computeBigInteger(equation).toString();
+					} catch(ArithmeticException e) {
+						expected = e.getMessage();
+					}
+					String actual;
+					try {
+						actual = Calc.computeAdaptive(equation).toString();
+					} catch(ArithmeticException e) {
+						actual = e.getMessage();
+					}
+					Assert.assertEquals(equation, expected, actual);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testComputeToString() throws Exception {
+		final String equation = "add(2147483647, 1)";
+		Assert.assertEquals("-2147483648", Calc.computeToString(equation, Calc.NumericMode.INT, Calc.Backend.INTERPRETER));	// int wraps, unchanged
+		Assert.assertEquals("2147483648", Calc.computeToString(equation, Calc.NumericMode.LONG, Calc.Backend.INTERPRETER));
+		Assert.assertEquals("2147483648", Calc.computeToString(equation, Calc.NumericMode.BIG_INTEGER, Calc.Backend.INTERPRETER));
+		Assert.assertEquals("2147483648", Calc.computeToString(equation, Calc.NumericMode.ADAPTIVE, Calc.Backend.COMPILER));
+	}
+
+	private static void assertLongOverflow(final String equation) throws Exception {
+		try {
+			Calc.computeLong(equation);
+			Assert.fail("Expected ArithmeticException for " + equation);
+		} catch(ArithmeticException e) {
+			Assert.assertEquals("long overflow", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.justin.demo.calculator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class OptimizerTest {
+
+	@Test
+	public void testConstantFolding() throws Exception {
+		OptimizerTest.assertOptimized("12", 0, "mult(add(2, 2), div(9, 3))");
+		OptimizerTest.assertOptimized("55", 0, "let(a, 5, let(b, mult(a, 10), add(b, a)))");
+		OptimizerTest.assertOptimized("40", 0, "let(a, let(b, 10, add(b, b)), let(b, 20, add(a, b)))");
+		OptimizerTest.assertOptimized("-2147483648", 0, "add(2147483647, 1)");	// wraps, same as evaluation
+		OptimizerTest.assertOptimized("-2147483648", 0, "div(-2147483648, -1)");
+	}
+
+	@Test
+	public void testIdentities() throws Exception {
+		OptimizerTest.assertOptimized("a", 1, "add(a, 0)", "a");
+		OptimizerTest.assertOptimized("a", 1, "add(0, a)", "a");
+		OptimizerTest.assertOptimized("a", 1, "sub(a, 0)", "a");
+		OptimizerTest.assertOptimized("a", 1, "mult(a, 1)", "a");
+		OptimizerTest.assertOptimized("a", 1, "mult(1, a)", "a");
+		OptimizerTest.assertOptimized("a", 1, "div(a, 1)", "a");
+		OptimizerTest.assertOptimized("0", 0, "mult(a, 0)", "a");
+		OptimizerTest.assertOptimized("0", 0, "mult(0, div(a, 3))", "a");
+		OptimizerTest.assertOptimized("sub(0, a)", 1, "sub(0, a)", "a");
+		OptimizerTest.assertOptimized("add(a, b)", 2, "add(mult(a, sub(2, 1)), add(b, mult(a, 0)))", "a", "b");
+	}
+
+	@Test
+	public void testLetInliningAndDeadBindings() throws Exception {
+		OptimizerTest.assertOptimized("add(a, 5)", 2, "let(b, 5, add(a, b))", "a");
+		OptimizerTest.assertOptimized("a", 2, "let(b, add(a, 1), a)", "a");
+		OptimizerTest.assertOptimized("let(b, add(a, 1), mult(b, b))", 2, "let(b, add(a, 1), mult(b, b))", "a");
+		OptimizerTest.assertOptimized("let(b, add(a, 1), add(b, 3))", 3, "let(b, add(a, 1), let(c, 3, add(b, c)))", "a");
+		OptimizerTest.assertOptimized("12", 0, "let(a, 7, add(a, 5))", "a");	// let shadows free variable, then folds
+	}
+
+	@Test
+	public void testDivideByZeroIsPreserved() throws Exception {
+		OptimizerTest.assertOptimized("div(1, 0)", 0, "div(1, 0)");
+		OptimizerTest.assertOptimized("mult(div(1, 0), 0)", 0, "mult(div(1, 0), 0)");
+		OptimizerTest.assertOptimized("mult(0, div(a, a))", 1, "mult(0, div(a, a))", "a");
+		OptimizerTest.assertOptimized("let(b, div(a, a), 5)", 2, "let(b, div(a, a), 5)", "a");
+		OptimizerTest.assertOptimized("div(a, sub(a, a))", 1, "div(a, sub(a, a))", "a");
+		for (final String equation : new String[]{"div(1, 0)", "mult(div(1, 0), 0)", "let(a, div(1, sub(2, 2)), 5)", "mult(0, let(a, 0, div(5, a)))"}) {
+			try {
+				Optimizer.optimize(Parser.parse(equation)).evaluate();
+				Assert.fail("Expected ArithmeticException for " + equation);
+			} catch(ArithmeticException e) {
+				Assert.assertEquals("/ by zero", e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testSameResultsAsUnoptimized() throws Exception {
+		final String[] equations = {
+			"add(mult(a, 0), sub(b, 0))",
+			"let(c, mult(a, b), let(d, 0, add(c, d)))",
+			"let(c, div(a, b), mult(c, 0))",
+			"div(mult(a, 1), add(b, 0))",
+			"let(c, 1, let(d, mult(c, a), let(c, add(d, b), sub(c, d))))",
+			"mult(add(a, 2147483647), 1)",
+		};
+		final int[] values = {0, 1, -1, 2, 7, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		for (final String equation : equations) {
+			final Formula formula   = Parser.parse(equation, "a", "b");
+			final Formula optimized = Optimizer.optimize(formula);
+			for (final int a : values) {
+				for (final int b : values) {
+					Assert.assertEquals(equation, OptimizerTest.evaluate(formula, a, b), OptimizerTest.evaluate(optimized, a, b));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLongLetChainDropsShadowedBindings() throws Exception {
+		final int depth = 900;	// below ExpressionCache.DEEP_NESTING_THRESHOLD, so the recursive optimizer is used
+		final StringBuilder sb = new StringBuilder();
+		for (int i=0; i<depth; i++) {
+			sb.append((0 == i) ? "let(c, div(a, b), " : "let(c, add(a, " + i + "), ");	// div(a, b) may throw, so it is kept
+		}
+		sb.append('c');
+		for (int i=0; i<depth; i++) {
+			sb.append(')');
+		}
+		final Formula formula   = Parser.parse(sb.toString(), "a", "b");
+		final Formula optimized = Optimizer.optimize(formula);
+		Assert.assertEquals("let(c, div(a, b), let(c, add(a, " + (depth - 1) + "), c))", optimized.toString());
+		Assert.assertEquals(Integer.toString(5 + depth - 1), OptimizerTest.evaluate(optimized, 5, 1));
+		Assert.assertEquals("/ by zero", OptimizerTest.evaluate(optimized, 5, 0));
+		Assert.assertEquals(OptimizerTest.evaluate(formula, 5, 1), OptimizerTest.evaluate(optimized, 5, 1));
+	}
+
+	@Test
+	public void testCacheOptimizationSetting() throws Exception {
+		Assert.assertEquals("12", new ExpressionCache(10).get("mult(add(2, 2), div(9, 3))").toString());
+		Assert.assertEquals("mult(add(2, 2), div(9, 3))", new ExpressionCache(10, Calc.Backend.INTERPRETER, false).get("mult(add(2, 2), div(9, 3))").toString());
+		Assert.assertEquals(20, new ExpressionCache(10, Calc.Backend.COMPILER).get("let(a, 5, let(b, add(a, 5), mult(b, 2)))").evaluate());
+	}
+
+	private static void assertOptimized(final String expected, final int expectedFrameSize, final String equation, final String... freeVariables) throws Exception {
+		final Formula optimized = Optimizer.optimize(Parser.parse(equation, freeVariables));
+		Assert.assertEquals(expected, optimized.toString());
+		Assert.assertEquals(expectedFrameSize, optimized.getFrameSize());
+	}
+
+	/**
+	 * Evaluate with free variables a and b in slots 0 and 1. Returns the exception message if evaluation throws.
+	 */
+	private static String evaluate(final Formula formula, final int a, final int b) {
+		final int[] frame = new int[Math.max(2, formula.getFrameSize())];
+		frame[0] = a;
+		frame[1] = b;
+		try {
+			return Integer.toString(formula.getExpression().evaluate(frame));
+		} catch(ArithmeticException e) {
+			return e.getMessage();
+		}
+	}
+}
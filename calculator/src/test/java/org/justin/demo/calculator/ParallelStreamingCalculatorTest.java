@@ -0,0 +1,57 @@
+package org.justin.demo.calculator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class ParallelStreamingCalculatorTest {
+
+	@Test
+	public void testOrderedOutputMatchesSequential() throws Exception {
+		final int numLines = ParallelStreamingCalculator.CHUNK_LINES * 20 + 17;	// many chunks plus a partial chunk
+		final StringBuilder input = new StringBuilder();
+		for (int i=0; i<numLines; i++) {
+			if (0 == i % 101) {
+				input.append("div(").append(i).append(", 0)\n");	// inline error
+			} else {
+				input.append("let(a, ").append(i).append(", mult(a, sub(a, ").append(i % 13).append(")))\n");
+			}
+		}
+		final String expected = ParallelStreamingCalculatorTest.process(new StreamingCalculator(Calc.Backend.INTERPRETER), input.toString());
+		for (final int numWorkers : new int[]{1, 3, 8}) {
+			final ParallelStreamingCalculator calculator = new ParallelStreamingCalculator(Calc.Backend.INTERPRETER, numWorkers);
+			final ByteArrayOutputStream output = new ByteArrayOutputStream();
+			Assert.assertEquals(numLines, calculator.process(Channels.newChannel(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8))), Channels.newChannel(output)));
+			Assert.assertEquals(expected, new String(output.toByteArray(), StandardCharsets.UTF_8));
+			Assert.assertEquals((numLines + 100) / 101, calculator.getErrors());
+			Assert.assertTrue(calculator.getLinesPerSecond() > 0D);
+		}
+	}
+
+	@Test
+	public void testEmptyInput() throws Exception {
+		final ParallelStreamingCalculator calculator = new ParallelStreamingCalculator(Calc.Backend.INTERPRETER, 2);
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		Assert.assertEquals(0, calculator.process(Channels.newChannel(new ByteArrayInputStream(new byte[0])), Channels.newChannel(output)));
+		Assert.assertEquals(0, output.size());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidWorkers() {
+		new ParallelStreamingCalculator(Calc.Backend.INTERPRETER, 0);
+	}
+
+	private static String process(final StreamingCalculator calculator, final String input) throws Exception {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		calculator.process(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), Channels.newChannel(output));
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
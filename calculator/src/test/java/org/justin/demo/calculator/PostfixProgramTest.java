@@ -0,0 +1,122 @@
+package org.justin.demo.calculator;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class PostfixProgramTest {
+	private static final int DEPTH = 100000;
+
+	@Test
+	public void testDeepNestedOperations() throws Exception {
+		final StringBuilder sb = new StringBuilder();
+		for (int i=0; i<PostfixProgramTest.DEPTH; i++) {
+			sb.append("add(1, ");
+		}
+		sb.append('0');
+		for (int i=0; i<PostfixProgramTest.DEPTH; i++) {
+			sb.append(')');
+		}
+		final String equation = sb.toString();
+		Assert.assertEquals(PostfixProgramTest.DEPTH, PostfixProgram.parse(equation).evaluate());
+		for (final Calc.Backend backend : Calc.Backend.values()) {
+			Assert.assertEquals(PostfixProgramTest.DEPTH, Calc.compute(equation, backend));
+		}
+	}
+
+	@Test
+	public void testDeepLeftNestedOperations() throws Exception {
+		final StringBuilder sb = new StringBuilder();
+		for (int i=0; i<PostfixProgramTest.DEPTH; i++) {
+			sb.append("sub(");
+		}
+		sb.append('0');
+		for (int i=0; i<PostfixProgramTest.DEPTH; i++) {
+			sb.append(", 2)");
+		}
+		final PostfixProgram program = PostfixProgram.parse(sb.toString());
+		Assert.assertEquals(-2 * PostfixProgramTest.DEPTH, program.evaluate());
+		Assert.assertEquals(2, program.getMaxStack());	// left nesting never has more than two pending operands
+	}
+
+	@Test
+	public void testDeepNestedLets() throws Exception {
+		final StringBuilder sb = new StringBuilder();
+		for (int i=0; i<PostfixProgramTest.DEPTH; i++) {
+			sb.append((0 == i) ? "let(a, 1, " : "let(a, add(a, 1), ");
+		}
+		sb.append('a');
+		for (int i=0; i<PostfixProgramTest.DEPTH; i++) {
+			sb.append(')');
+		}
+		final PostfixProgram program = PostfixProgram.parse(sb.toString());
+		Assert.assertEquals(PostfixProgramTest.DEPTH, program.evaluate());
+		Assert.assertEquals(PostfixProgramTest.DEPTH, program.getFrameSize());
+		Assert.assertEquals(PostfixProgramTest.DEPTH, Calc.compute(sb.toString()));
+	}
+
+	@Test
+	public void testSameResultsAsRecursive() throws Exception {
+		final Random random = new Random(12345L);
+		for (int i=0; i<2000; i++) {
+			final String equation = PostfixProgramTest.randomEquation(random, 6, "");
+			Assert.assertEquals(equation, PostfixProgramTest.evaluate(Parser.parse(equation)), PostfixProgramTest.evaluate(PostfixProgram.parse(equation)));
+		}
+		Assert.assertEquals(40, PostfixProgram.parse("let(a, let(b, 10, add(b, b)), let(b, 20, add(a, b)))").evaluate());
+	}
+
+	@Test
+	public void testSameErrorsAsRecursive() {
+		final String[] equations = {"", "  ", "sum(1, 2)", "add(1)", "add(1, 2, 3)", "add(1, b)", "let(1, 2, 3)", "let(a, 1)", "add(1, 2))", "add(1, 2", "a", "add", "add(1, 2147483648)", "let(a, a, 1)", "add(1, - )", "let(a, 1, add(a, 2)) b"};
+		for (final String equation : equations) {
+			Assert.assertEquals(equation, PostfixProgramTest.parseError(true, equation), PostfixProgramTest.parseError(false, equation));
+		}
+	}
+
+	@Test
+	public void testNestingDepth() {
+		Assert.assertEquals(0, PostfixProgram.nestingDepth("5"));
+		Assert.assertEquals(2, PostfixProgram.nestingDepth("add(1, mult(2, 3))"));
+		Assert.assertEquals(2, PostfixProgram.nestingDepth("add(mult(1, 2), mult(2, 3))"));
+	}
+
+	private static String randomEquation(final Random random, final int depth, final String letters) {
+		final int choice = random.nextInt((0 == depth) ? 2 : 6);
+		if (0 == choice) {
+			return Integer.toString(random.nextInt(21) - 10);
+		} else if (1 == choice) {
+			return letters.isEmpty() ? Integer.toString(random.nextInt(1000)) : String.valueOf(letters.charAt(random.nextInt(letters.length())));
+		} else if (2 == choice) {
+			final char letter = (char) ('a' + random.nextInt(3));
+			return "let(" + letter + ", " + PostfixProgramTest.randomEquation(random, depth - 1, letters) + ", " + PostfixProgramTest.randomEquation(random, depth - 1, letters + letter) + ")";
+		}
+		final String operator = new String[]{"add", "sub", "mult", "div"}[choice - 3 + random.nextInt(2)];
+		return operator + "(" + PostfixProgramTest.randomEquation(random, depth - 1, letters) + ", " + PostfixProgramTest.randomEquation(random, depth - 1, letters) + ")";
+	}
+
+	private static String evaluate(final IntExpression expression) {
+		try {
+			return Integer.toString(expression.evaluate());
+		} catch(ArithmeticException e) {
+			return e.getMessage();
+		}
+	}
+
+	private static String parseError(final boolean recursive, final String equation) {
+		try {
+			if (recursive) {
+				Parser.parse(equation);
+			} else {
+				PostfixProgram.parse(equation);
+			}
+			return "no error";
+		} catch(Exception e) {
+			return e.getClass().getName() + ": " + e.getMessage();
+		}
+	}
+}
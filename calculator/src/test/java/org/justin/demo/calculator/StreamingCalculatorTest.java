@@ -0,0 +1,86 @@
+package org.justin.demo.calculator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author justin.cranford
+ */
+@SuppressWarnings("static-method")
+public final class StreamingCalculatorTest {
+
+	@Test
+	public void testResultsAndInlineErrors() throws Exception {
+		final String input = "add(1, 2)\nsum(1,2)\r\n\nlet(a, 5, add(a, a))\ndiv(1,0)\nmult(-2147483648, 1)";
+		final String expected = "3\nerror: unknown operator sum\nerror: empty equation\n10\nerror: / by zero\n-2147483648\n";
+		for (final Calc.Backend backend : Calc.Backend.values()) {
+			final StreamingCalculator calculator = new StreamingCalculator(backend);
+			Assert.assertEquals(expected, StreamingCalculatorTest.process(calculator, input));
+			Assert.assertEquals(6, calculator.getLines());
+			Assert.assertEquals(3, calculator.getErrors());
+		}
+	}
+
+	@Test
+	public void testNumericModes() throws Exception {
+		final String input = "add(2147483647, 1)\nmult(9223372036854775807, 2)\ndiv(1, 0)";
+		Assert.assertEquals("-2147483648\n-2\nerror: / by zero\n", StreamingCalculatorTest.process(new StreamingCalculator(Calc.Backend.INTERPRETER, Calc.NumericMode.INT), input.replace("9223372036854775807", "2147483647")));
+		Assert.assertEquals("2147483648\nerror: long overflow\nerror: / by zero\n", StreamingCalculatorTest.process(new StreamingCalculator(Calc.Backend.INTERPRETER, Calc.NumericMode.LONG), input));
+		Assert.assertEquals("2147483648\n18446744073709551614\nerror: / by zero\n", StreamingCalculatorTest.process(new StreamingCalculator(Calc.Backend.INTERPRETER, Calc.NumericMode.ADAPTIVE), input));
+	}
+
+	@Test
+	public void testDeepNestingIsPerLineError() throws Exception {
+		final int depth = ExpressionCache.DEEP_NESTING_THRESHOLD + 1;
+		final StringBuilder deep = new StringBuilder();
+		for (int i=0; i<depth; i++) {
+			deep.append("add(1, ");
+		}
+		deep.append('0');
+		for (int i=0; i<depth; i++) {
+			deep.append(')');
+		}
+		final String input = "add(1, 2)\n" + deep + "\nmult(2, 3)";
+		Assert.assertEquals("3\n" + depth + "\n6\n", StreamingCalculatorTest.process(new StreamingCalculator(Calc.Backend.COMPILER, Calc.NumericMode.INT), input));
+		for (final Calc.NumericMode numericMode : new Calc.NumericMode[]{Calc.NumericMode.LONG, Calc.NumericMode.BIG_INTEGER, Calc.NumericMode.ADAPTIVE}) {
+			final StreamingCalculator calculator = new StreamingCalculator(Calc.Backend.INTERPRETER, numericMode);
+			final String expected = "3\nerror: nesting depth " + depth + " exceeds " + ExpressionCache.DEEP_NESTING_THRESHOLD + ", only int mode supports deeper nesting\n6\n";
+			Assert.assertEquals(expected, StreamingCalculatorTest.process(calculator, input));
+			Assert.assertEquals(1, calculator.getErrors());
+		}
+	}
+
+	@Test
+	public void testManyLines() throws Exception {
+		final int numLines = 100000;
+		final StringBuilder input    = new StringBuilder();
+		final StringBuilder expected = new StringBuilder();
+		for (int i=0; i<numLines; i++) {
+			input.append("let(a, ").append(i).append(", sub(a, ").append(i % 7).append("))\n");
+			expected.append(i - (i % 7)).append('\n');
+		}
+		final StreamingCalculator calculator = new StreamingCalculator(Calc.Backend.INTERPRETER);
+		Assert.assertEquals(expected.toString(), StreamingCalculatorTest.process(calculator, input.toString()));
+		Assert.assertEquals(numLines, calculator.getLines());
+	}
+
+	@Test
+	public void testFormatInt() {
+		final char[] buffer = new char[11];
+		for (final int value : new int[]{0, 7, -7, 10, -10, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+			final int start = StreamingCalculator.formatInt(value, buffer);
+			Assert.assertEquals(Integer.toString(value), new String(buffer, start, buffer.length - start));
+		}
+	}
+
+	private static String process(final StreamingCalculator calculator, final String input) throws Exception {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		calculator.process(Channels.newChannel(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))), Channels.newChannel(output));
+		return new String(output.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,66 @@
+package org.justin.fibonacci;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time per BigInteger Fibonacci number, for positions 10^2 to 10^7, to show how each engine scales with n:
+ * - doubling:           fast doubling, largest multiplications in parallel on the common pool
+ * - doublingSequential: fast doubling on the calling thread only
+ * - recursion:          fast doubling as recursion on n/2, calling thread only
+ * Export a scaling curve with: -rf csv -rff big.csv
+ *
+ * java -jar fibonacci-jmh/target/benchmarks.jar BigBenchmark -prof gc
+ * @author justin.cranford
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class BigBenchmark {
+	@Param({"100", "1000", "10000", "100000", "1000000", "10000000"})
+	public int position;
+
+	@Benchmark
+	public BigInteger doubling() {
+		return FibonacciBigCalculator.computeUsingDoubling(this.position);
+	}
+
+	@Benchmark
+	public BigInteger doublingSequential() {
+		return FibonacciBigCalculator.computeUsingDoubling(this.position, ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+	}
+
+	@Benchmark
+	public BigInteger recursion() {
+		return FibonacciBigCalculator.computeUsingRecursion(this.position);
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.include(BigBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
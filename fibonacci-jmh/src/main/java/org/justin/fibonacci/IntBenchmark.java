@@ -0,0 +1,63 @@
+package org.justin.fibonacci;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of each FibonacciIntCalculator method, from small positions up to 46, the largest that fits an int:
+ * - loop:      O(n) additions
+ * - recursion: O(n) additions, one stack frame each
+ * - lookup:    one array read
+ *
+ * java -jar fibonacci-jmh/target/benchmarks.jar IntBenchmark -prof gc
+ * @author justin.cranford
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class IntBenchmark {
+	@Param({"1", "10", "20", "30", "46"})
+	public int position;
+
+	@Benchmark
+	public int loop() {
+		return FibonacciIntCalculator.computeUsingLoop(this.position);
+	}
+
+	@Benchmark
+	public int recursion() {
+		return FibonacciIntCalculator.computeUsingRecursion(this.position);
+	}
+
+	@Benchmark
+	public int lookup() {
+		return FibonacciIntCalculator.computeFibonacciNumberUsingLookup(this.position);
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.include(IntBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
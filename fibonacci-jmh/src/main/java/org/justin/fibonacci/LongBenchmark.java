@@ -0,0 +1,69 @@
+package org.justin.fibonacci;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of each FibonacciLongCalculator method, from small positions up to 92, the largest that fits a long:
+ * - loop:             O(n) additions
+ * - recursion:        O(n) additions, one stack frame each
+ * - halvingRecursion: O(log n) multiplications, one stack frame per bit of the position
+ * - lookup:           one array read
+ *
+ * java -jar fibonacci-jmh/target/benchmarks.jar LongBenchmark -prof gc
+ * @author justin.cranford
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class LongBenchmark {
+	@Param({"1", "10", "46", "70", "92"})
+	public int position;
+
+	@Benchmark
+	public long loop() {
+		return FibonacciLongCalculator.computeUsingLoop(this.position);
+	}
+
+	@Benchmark
+	public long recursion() {
+		return FibonacciLongCalculator.computeUsingRecursion(this.position);
+	}
+
+	@Benchmark
+	public long halvingRecursion() {
+		return FibonacciLongCalculator.computeUsingHalvingRecursion(this.position);
+	}
+
+	@Benchmark
+	public long lookup() {
+		return FibonacciLongCalculator.computeFibonacciNumberUsingLookup(this.position);
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.include(LongBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
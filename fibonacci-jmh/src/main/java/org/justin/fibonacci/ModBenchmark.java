@@ -0,0 +1,63 @@
+package org.justin.fibonacci;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of FibonacciModCalculator for positions up to 10^18, for each modulus size:
+ * - 1000:                Pisano table lookup
+ * - 1000000007:          fast doubling, products fit a long
+ * - 9223372036854775807: fast doubling, 128-bit products reduced one bit at a time
+ * - modulo:              computeModulo(), the table when the modulus is small enough
+ * - doubling:            fast doubling for every modulus, to compare against the table
+ *
+ * java -jar fibonacci-jmh/target/benchmarks.jar ModBenchmark -prof gc
+ * @author justin.cranford
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Measurement(iterations=5, time=1, timeUnit=TimeUnit.SECONDS)
+@Fork(1)
+public class ModBenchmark {
+	@Param({"1000", "1000000000", "1000000000000000000"})
+	public long position;
+
+	@Param({"1000", "1000000007", "9223372036854775807"})
+	public long modulus;
+
+	@Benchmark
+	public long modulo() {
+		return FibonacciModCalculator.computeModulo(this.position, this.modulus);
+	}
+
+	@Benchmark
+	public long doubling() {
+		return FibonacciModCalculator.computeUsingDoubling(this.position, this.modulus);
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.include(ModBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
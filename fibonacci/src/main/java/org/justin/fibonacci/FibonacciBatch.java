@@ -0,0 +1,78 @@
+package org.justin.fibonacci;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Answer a batch of BigInteger Fibonacci positions with one sweep, instead of computing each position on its own.
+ * Positions are sorted and deduplicated, then the sweep keeps the pair {F(k), F(k+1)} and moves it to each next distinct
+ * position t, with gap d = t - k:
+ * - d <= MAX_LINEAR_STEPS: d additions, for dense positions
+ * - d <= k:                jump with F(k+d) = F(k)*F(d+1) + F(k-1)*F(d), where F(d) is at most half the size of F(t)
+ * - otherwise:             fast doubling from scratch, for sparse positions where the previous pair does not help
+ * Results are returned in request order, and duplicate positions share the same BigInteger.
+ * Throw IllegalArgumentException for bad parameters.
+ * @author justin.cranford
+ */
+public class FibonacciBatch {
+	/*package*/ static final int MAX_LINEAR_STEPS = 32;	// ASSUMPTION: Below about 32 steps, additions cost less than the four multiplications of a jump.
+
+	public static BigInteger[] compute(final int[] positions) throws IllegalArgumentException {
+		return FibonacciBatch.compute(positions, ForkJoinPool.commonPool());
+	}
+
+	public static BigInteger[] compute(final int[] positions, final ForkJoinPool pool) throws IllegalArgumentException {
+		if (null == positions) {
+			throw new IllegalArgumentException("Null positions");
+		} else if (null == pool) {
+			throw new IllegalArgumentException("Null pool");
+		}
+		for (final int position : positions) {
+			if (position <= 0) {
+				throw new IllegalArgumentException("Invalid Fibonacci position " + position + ". Must be 1 or more.");
+			}
+		}
+		final int[]        sorted   = FibonacciBatch.sortDistinct(positions);
+		final BigInteger[] computed = new BigInteger[sorted.length];
+		BigInteger[] pair = {BigInteger.ZERO, BigInteger.ONE};	// {F(k), F(k+1)}, starting at k=0
+		int k = 0;
+		for (int i=0; i<sorted.length; i++) {
+			final int target = sorted[i];
+			final int d      = target - k;
+			if (d <= FibonacciBatch.MAX_LINEAR_STEPS) {
+				BigInteger a = pair[0];
+				BigInteger b = pair[1];
+				for (int step=0; step<d; step++) {
+					final BigInteger sum = a.add(b);
+					a = b;
+					b = sum;
+				}
+				pair = new BigInteger[]{a, b};
+			} else if (d <= k) {
+				pair = FibonacciBigCalculator.advancePair(pair, d, pool, FibonacciBigCalculator.PARALLEL_THRESHOLD_BITS);
+			} else {
+				pair = FibonacciBigCalculator.computePairUsingDoubling(target, pool, FibonacciBigCalculator.PARALLEL_THRESHOLD_BITS);
+			}
+			k = target;
+			computed[i] = pair[0];
+		}
+		final BigInteger[] results = new BigInteger[positions.length];
+		for (int i=0; i<positions.length; i++) {
+			results[i] = computed[Arrays.binarySearch(sorted, positions[i])];
+		}
+		return results;
+	}
+
+	private static int[] sortDistinct(final int[] positions) {
+		final int[] sorted = positions.clone();
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i=0; i<sorted.length; i++) {
+			if ((0 == i) || (sorted[i] != sorted[distinct - 1])) {
+				sorted[distinct++] = sorted[i];
+			}
+		}
+		return Arrays.copyOf(sorted, distinct);
+	}
+}
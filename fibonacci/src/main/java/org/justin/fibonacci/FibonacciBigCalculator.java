@@ -0,0 +1,145 @@
+package org.justin.fibonacci;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compute Fibonacci numbers of any size with BigInteger using fast doubling, in O(log n) steps instead of O(n) additions.
+ * Each step doubles the position k using the identities:
+ * F(2k)   = F(k) * (2*F(k+1) - F(k))
+ * F(2k+1) = F(k)^2 + F(k+1)^2
+ * Bits of the position are processed from most to least significant, and a set bit advances one more position.
+ *
+ * The three multiplications in each step are independent. When operands are larger than PARALLEL_THRESHOLD_BITS, two
+ * of them run on a ForkJoinPool while the calling thread computes the third. Small steps stay on the calling thread,
+ * because task overhead would exceed the multiplication time.
+ * Throw IllegalArgumentException for bad parameters. There is no overflow.
+ * ASSUMPTION: Initial values are 1 and 1, same as FibonacciIntCalculator.
+ * @author justin.cranford
+ */
+public class FibonacciBigCalculator {
+	/*package*/ static final int PARALLEL_THRESHOLD_BITS = 1 << 16;	// ASSUMPTION: Below about 64K bits, a multiplication takes less time than fork/join handoff.
+
+	public static BigInteger computeUsingDoubling(final int fibonacciNumber) throws IllegalArgumentException {
+		return FibonacciBigCalculator.computeUsingDoubling(fibonacciNumber, ForkJoinPool.commonPool(), FibonacciBigCalculator.PARALLEL_THRESHOLD_BITS);
+	}
+
+	public static BigInteger computeUsingDoubling(final int fibonacciNumber, final ForkJoinPool pool) throws IllegalArgumentException {
+		return FibonacciBigCalculator.computeUsingDoubling(fibonacciNumber, pool, FibonacciBigCalculator.PARALLEL_THRESHOLD_BITS);
+	}
+
+	/*package*/ static BigInteger computeUsingDoubling(final int fibonacciNumber, final ForkJoinPool pool, final int parallelThresholdBits) throws IllegalArgumentException {
+		if (fibonacciNumber <= 0) {
+			throw new IllegalArgumentException("Invalid Fibonacci position. Must be 1 or more.");
+		} else if (null == pool) {
+			throw new IllegalArgumentException("Null pool");
+		} else if (fibonacciNumber <= 2) {
+			return BigInteger.ONE;
+		}
+		final BigInteger[] pair = FibonacciBigCalculator.doubling(fibonacciNumber, 1, pool, parallelThresholdBits);
+		final BigInteger a = pair[0];
+		final BigInteger b = pair[1];
+		// last step only needs F(n), not F(n+1), which skips one of the three largest multiplications
+		if (0 == (fibonacciNumber & 1)) {
+			return a.multiply(b.shiftLeft(1).subtract(a));
+		} else if (b.bitLength() > parallelThresholdBits) {
+			final ForkJoinTask<BigInteger> aSquared = pool.submit(() -> a.multiply(a));
+			final BigInteger bSquared = b.multiply(b);
+			return aSquared.join().add(bSquared);
+		}
+		return a.multiply(a).add(b.multiply(b));
+	}
+
+	/**
+	 * Same identities as computeUsingDoubling(), but written as divide and conquer recursion on n/2 on the calling thread.
+	 * The depth is O(log n), at most 31 frames, so there is no StackOverflowError for any int position.
+	 */
+	public static BigInteger computeUsingRecursion(final int fibonacciNumber) throws IllegalArgumentException {
+		if (fibonacciNumber <= 0) {
+			throw new IllegalArgumentException("Invalid Fibonacci position. Must be 1 or more.");
+		} else if (fibonacciNumber <= 2) {
+			return BigInteger.ONE;
+		}
+		final BigInteger[] pair = FibonacciBigCalculator.computeRecursionHelper(fibonacciNumber >>> 1);
+		final BigInteger a = pair[0];
+		final BigInteger b = pair[1];
+		if (0 == (fibonacciNumber & 1)) {
+			return a.multiply(b.shiftLeft(1).subtract(a));	// last step only needs F(n), not F(n+1)
+		}
+		return a.multiply(a).add(b.multiply(b));
+	}
+
+	/**
+	 * Return {F(n), F(n+1)}, recursing on n/2.
+	 */
+	private static BigInteger[] computeRecursionHelper(final int n) {
+		if (0 == n) {
+			return new BigInteger[]{BigInteger.ZERO, BigInteger.ONE};
+		}
+		final BigInteger[] pair        = FibonacciBigCalculator.computeRecursionHelper(n >>> 1);
+		final BigInteger   a           = pair[0];
+		final BigInteger   b           = pair[1];
+		final BigInteger   twoK        = a.multiply(b.shiftLeft(1).subtract(a));
+		final BigInteger   twoKPlusOne = a.multiply(a).add(b.multiply(b));
+		if (0 == (n & 1)) {
+			pair[0] = twoK;	// k => 2k
+			pair[1] = twoKPlusOne;
+		} else {
+			pair[0] = twoKPlusOne;	// k => 2k+1
+			pair[1] = twoK.add(twoKPlusOne);
+		}
+		return pair;
+	}
+
+	/**
+	 * Return {F(n), F(n+1)} for n >= 0, with the same parallel multiplication as computeUsingDoubling().
+	 */
+	/*package*/ static BigInteger[] computePairUsingDoubling(final int n, final ForkJoinPool pool, final int parallelThresholdBits) {
+		return FibonacciBigCalculator.doubling(n, 0, pool, parallelThresholdBits);
+	}
+
+	/**
+	 * Return {F(k+d), F(k+d+1)} from pair = {F(k), F(k+1)}, using F(k+d) = F(k)*F(d+1) + F(k-1)*F(d).
+	 * Cheaper than computePairUsingDoubling(k+d) when d is much smaller than k, because F(d) has only about 0.694d bits.
+	 */
+	/*package*/ static BigInteger[] advancePair(final BigInteger[] pair, final int d, final ForkJoinPool pool, final int parallelThresholdBits) {
+		final BigInteger[] fd  = FibonacciBigCalculator.computePairUsingDoubling(d, pool, parallelThresholdBits);
+		final BigInteger   fk  = pair[0];
+		final BigInteger   fk1 = pair[1];
+		final BigInteger   fn  = fk.multiply(fd[1]).add(fk1.subtract(fk).multiply(fd[0]));	// F(k+d) = F(k)F(d+1) + F(k-1)F(d)
+		final BigInteger   fn1 = fk1.multiply(fd[1]).add(fk.multiply(fd[0]));	// F(k+d+1) = F(k+1)F(d+1) + F(k)F(d)
+		return new BigInteger[]{fn, fn1};
+	}
+
+	/**
+	 * Apply one doubling step per bit of n, from the most significant bit down to lowestBit, and return {F(k), F(k+1)} for k = n >>> lowestBit.
+	 */
+	private static BigInteger[] doubling(final int n, final int lowestBit, final ForkJoinPool pool, final int parallelThresholdBits) {
+		BigInteger a = BigInteger.ZERO;	// F(k), starting at k=0
+		BigInteger b = BigInteger.ONE;	// F(k+1)
+		for (int bit=31-Integer.numberOfLeadingZeros(n); bit>=lowestBit; bit--) {
+			final BigInteger twoK;
+			final BigInteger twoKPlusOne;
+			if (b.bitLength() > parallelThresholdBits) {
+				final BigInteger finalA = a;
+				final BigInteger finalB = b;
+				final ForkJoinTask<BigInteger> aSquared = pool.submit(() -> finalA.multiply(finalA));
+				final ForkJoinTask<BigInteger> bSquared = pool.submit(() -> finalB.multiply(finalB));
+				twoK        = a.multiply(b.shiftLeft(1).subtract(a));
+				twoKPlusOne = aSquared.join().add(bSquared.join());
+			} else {
+				twoK        = a.multiply(b.shiftLeft(1).subtract(a));
+				twoKPlusOne = a.multiply(a).add(b.multiply(b));
+			}
+			if (0 == ((n >>> bit) & 1)) {
+				a = twoK;	// k => 2k
+				b = twoKPlusOne;
+			} else {
+				a = twoKPlusOne;	// k => 2k+1
+				b = twoK.add(twoKPlusOne);
+			}
+		}
+		return new BigInteger[]{a, b};
+	}
+}
@@ -0,0 +1,222 @@
+package org.justin.fibonacci;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Thread-safe cache of BigInteger Fibonacci numbers for services that ask for the same large positions repeatedly.
+ * - Each entry is the pair {F(k), F(k+1)}, so a hit for k also answers k+1, and any entry can seed nearby positions.
+ * - Memory is bounded by a byte budget. Entries are charged their BigInteger magnitude sizes, and least recently used
+ *   entries are evicted until the total fits. An entry larger than the whole budget is returned but not cached.
+ * - Concurrent misses for the same position share one in-flight computation, the other threads wait for its result.
+ * - A miss seeds from the nearest cached pair instead of starting from F(1), F(2):
+ *   from a lower pair k, F(k+d) = F(k)*F(d+1) + F(k-1)*F(d), which needs only the much smaller F(d) when d is small;
+ *   from a higher pair k within MAX_BACKWARD_STEPS, step down with F(k-1) = F(k+1) - F(k).
+ *   Otherwise the pair is computed with FibonacciBigCalculator fast doubling.
+ * Throw IllegalArgumentException for bad parameters.
+ * @author justin.cranford
+ */
+public class FibonacciCache {
+	/*package*/ static final int MAX_BACKWARD_STEPS   = 64;	// each step is one subtraction of the full size
+	private static final long    ENTRY_OVERHEAD_BYTES = 128;	// ASSUMPTION: Map entry, pair array, and two BigInteger headers.
+
+	private final long         maxBytes;
+	private final ForkJoinPool pool;
+	private final LinkedHashMap<Integer,BigInteger[]> entries = new LinkedHashMap<>(16, 0.75F, true);	// access order, eldest entry is least recently used
+	private final TreeMap<Integer,BigInteger[]>       byPosition = new TreeMap<>();	// same entries, for nearest seed lookup
+	private final Map<Integer,CompletableFuture<BigInteger[]>> inFlight = new HashMap<>();
+	private long bytes         = 0;
+	private long hits          = 0;
+	private long misses        = 0;
+	private long inFlightWaits = 0;
+	private long seeded        = 0;
+	private long evictions     = 0;
+
+	public FibonacciCache(final long maxBytes) throws IllegalArgumentException {
+		this(maxBytes, ForkJoinPool.commonPool());
+	}
+
+	public FibonacciCache(final long maxBytes, final ForkJoinPool pool) throws IllegalArgumentException {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("Invalid max bytes. Must be 1 or more.");
+		} else if (null == pool) {
+			throw new IllegalArgumentException("Null pool");
+		}
+		this.maxBytes = maxBytes;
+		this.pool     = pool;
+	}
+
+	public BigInteger get(final int fibonacciNumber) throws IllegalArgumentException {
+		if (fibonacciNumber <= 0) {
+			throw new IllegalArgumentException("Invalid Fibonacci position. Must be 1 or more.");
+		}
+		final Integer key = Integer.valueOf(fibonacciNumber);
+		final CompletableFuture<BigInteger[]> future;
+		final Map.Entry<Integer,BigInteger[]> lower;
+		final Map.Entry<Integer,BigInteger[]> higher;
+		final boolean owner;	// true if this thread computes the pair, false if it waits for another thread
+		synchronized(this) {
+			final BigInteger[] cached = this.entries.get(key);
+			if (null != cached) {
+				this.hits++;
+				return cached[0];
+			}
+			final BigInteger[] previous = this.entries.get(Integer.valueOf(fibonacciNumber - 1));
+			if (null != previous) {
+				this.hits++;
+				return previous[1];
+			}
+			final CompletableFuture<BigInteger[]> running = this.inFlight.get(key);
+			if (null != running) {
+				this.inFlightWaits++;
+				future = running;
+				lower  = null;
+				higher = null;
+				owner  = false;
+			} else {
+				this.misses++;
+				future = new CompletableFuture<>();
+				this.inFlight.put(key, future);
+				lower  = this.byPosition.floorEntry(key);
+				higher = this.byPosition.ceilingEntry(key);
+				owner  = true;
+			}
+		}
+		if (!owner) {
+			return FibonacciCache.await(future)[0];	// another thread is computing this position
+		}
+		try {
+			final BigInteger[] pair = this.computePair(fibonacciNumber, lower, higher);
+			future.complete(pair);
+			synchronized(this) {
+				this.inFlight.remove(key);
+				this.put(key, pair);
+			}
+			return pair[0];
+		} catch(RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			synchronized(this) {
+				this.inFlight.remove(key);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Compute {F(n), F(n+1)} from the nearest cached pair, or from scratch if no cached pair is close enough.
+	 */
+	private BigInteger[] computePair(final int n, final Map.Entry<Integer,BigInteger[]> lower, final Map.Entry<Integer,BigInteger[]> higher) {
+		if ((null != higher) && (higher.getKey().intValue() - n <= FibonacciCache.MAX_BACKWARD_STEPS)) {
+			BigInteger a = higher.getValue()[0];
+			BigInteger b = higher.getValue()[1];
+			for (int k=higher.getKey().intValue(); k>n; k--) {
+				final BigInteger previous = b.subtract(a);	// F(k-1) = F(k+1) - F(k)
+				b = a;
+				a = previous;
+			}
+			this.countSeeded();
+			return new BigInteger[]{a, b};
+		} else if ((null != lower) && (n - lower.getKey().intValue() <= lower.getKey().intValue())) {	// d <= k, so F(d) has at most half the bits of F(n)
+			final BigInteger[] pair = FibonacciBigCalculator.advancePair(lower.getValue(), n - lower.getKey().intValue(), this.pool, FibonacciBigCalculator.PARALLEL_THRESHOLD_BITS);
+			this.countSeeded();
+			return pair;
+		}
+		return FibonacciBigCalculator.computePairUsingDoubling(n, this.pool, FibonacciBigCalculator.PARALLEL_THRESHOLD_BITS);
+	}
+
+	private synchronized void countSeeded() {
+		this.seeded++;
+	}
+
+	/**
+	 * Add the pair and evict least recently used entries until the total fits the budget. Caller must hold the lock.
+	 */
+	private void put(final Integer key, final BigInteger[] pair) {
+		final long cost = FibonacciCache.cost(pair);
+		if (cost > this.maxBytes) {
+			return;	// larger than the whole budget, caching it would evict everything else
+		}
+		final BigInteger[] replaced = this.entries.put(key, pair);
+		this.byPosition.put(key, pair);
+		this.bytes += cost - ((null == replaced) ? 0 : FibonacciCache.cost(replaced));
+		for (final Iterator<Map.Entry<Integer,BigInteger[]>> iterator=this.entries.entrySet().iterator(); (this.bytes > this.maxBytes) && iterator.hasNext(); ) {
+			final Map.Entry<Integer,BigInteger[]> eldest = iterator.next();
+			iterator.remove();
+			this.byPosition.remove(eldest.getKey());
+			this.bytes -= FibonacciCache.cost(eldest.getValue());
+			this.evictions++;
+		}
+	}
+
+	private static long cost(final BigInteger[] pair) {
+		return FibonacciCache.ENTRY_OVERHEAD_BYTES + ((pair[0].bitLength() + pair[1].bitLength()) >>> 3);
+	}
+
+	private static BigInteger[] await(final CompletableFuture<BigInteger[]> future) {
+		try {
+			return future.join();
+		} catch(CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();	// same exception the computing thread threw
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	public synchronized void clear() {
+		this.entries.clear();
+		this.byPosition.clear();
+		this.bytes         = 0;
+		this.hits          = 0;
+		this.misses        = 0;
+		this.inFlightWaits = 0;
+		this.seeded        = 0;
+		this.evictions     = 0;
+	}
+
+	public long getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+
+	public synchronized int getSize() {
+		return this.entries.size();
+	}
+
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	public synchronized long getInFlightWaits() {
+		return this.inFlightWaits;
+	}
+
+	public synchronized long getSeeded() {
+		return this.seeded;
+	}
+
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "FibonacciCache[size=" + this.entries.size() + ", bytes=" + this.bytes + ", maxBytes=" + this.maxBytes + ", hits=" + this.hits + ", misses=" + this.misses + ", inFlightWaits=" + this.inFlightWaits + ", seeded=" + this.seeded + ", evictions=" + this.evictions + "]";
+	}
+}
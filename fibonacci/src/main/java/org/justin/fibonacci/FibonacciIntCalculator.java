@@ -2,7 +2,7 @@ package org.justin.fibonacci;
 
 /**
  * Implement methods for computing Fibonacci numbers with a 32-bit int using a loop, recursion, and lookup methods.
- * Throw ArithmeticException if there is overflow. Throw IllegalArgumentException for bad parameters.
+ * Throw ArithmeticException if there is overflow, detected by Math.addExact. Throw IllegalArgumentException for bad parameters.
  * ASSUMPTION: Initial values are 1 and 1. Expected max Fibonacci number that can be computed via 32-bit int without overflow is 46.
  * @author justin.cranford
  */
@@ -25,7 +25,7 @@ public class FibonacciIntCalculator {
 		} else if (finobacciNumber <= 2) {
 			return 1;
 		} else if (finobacciNumber > MAX_POSITION_USING_INT) {
-			throw new ArithmeticException("Integer overflow");
+			throw new ArithmeticException("integer overflow");	// same message as Math.addExact in loop and recursion
 		}
 		return FibonacciIntCalculator.FIRST_46_FIBONACCI_NUMBERS[finobacciNumber];
 	}
@@ -38,10 +38,8 @@ public class FibonacciIntCalculator {
 		}
 		int first=FibonacciIntCalculator.FIRST_46_FIBONACCI_NUMBERS[1], second=FibonacciIntCalculator.FIRST_46_FIBONACCI_NUMBERS[2], sum=-1, remaining=finobacciNumber;
 		while (true) {
-			sum = first+second;
-			if (sum < 0) {
-				throw new ArithmeticException("Integer overflow");
-			} else if (remaining == 3) {
+			sum = Math.addExact(first, second);	// throws ArithmeticException("integer overflow")
+			if (remaining == 3) {
 				return sum;
 			}
 			first=second;
@@ -60,10 +58,8 @@ public class FibonacciIntCalculator {
 	}
 
 	private static int computeRecursionHelper(final int first, final int second, final int remaining) throws ArithmeticException {
-		final int sum = first + second;
-		if (sum < 0) {
-			throw new ArithmeticException("Integer overflow");
-		} else if (remaining == 3) {
+		final int sum = Math.addExact(first, second);
+		if (remaining == 3) {
 			return sum;
 		}
 		return FibonacciIntCalculator.computeRecursionHelper(second, sum, remaining-1);
@@ -0,0 +1,195 @@
+package org.justin.fibonacci;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Load generator for FibonacciServer. Opens N connections, each on its own thread, and sends batches of random positions
+ * from 1 to maxPosition with up to pipelineDepth batches in flight per connection. Latency of each batch is measured
+ * from the time it is written to the time its response line is read. Positions are seeded, so runs are repeatable.
+ *
+ * Example:
+ * new FibonacciLoadGenerator(new InetSocketAddress("localhost", 9000), 4, 1000, 100, 10000, 4).run() => queries/sec, p50, p99
+ * @author justin.cranford
+ */
+public final class FibonacciLoadGenerator {
+	private final InetSocketAddress address;
+	private final int               connections;
+	private final int               batchesPerConnection;
+	private final int               batchSize;
+	private final int               maxPosition;
+	private final int               pipelineDepth;
+
+	public FibonacciLoadGenerator(final InetSocketAddress address, final int connections, final int batchesPerConnection, final int batchSize, final int maxPosition, final int pipelineDepth) {
+		if (null == address) {
+			throw new IllegalArgumentException("Null address");
+		} else if (connections <= 0) {
+			throw new IllegalArgumentException("Invalid number of connections. Must be 1 or more.");
+		} else if (batchesPerConnection <= 0) {
+			throw new IllegalArgumentException("Invalid number of batches. Must be 1 or more.");
+		} else if (batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid batch size. Must be 1 or more.");
+		} else if ((maxPosition <= 0) || (maxPosition > FibonacciServer.MAX_POSITION)) {
+			throw new IllegalArgumentException("Invalid max position. Must be 1 to " + FibonacciServer.MAX_POSITION + ".");
+		} else if (pipelineDepth <= 0) {
+			throw new IllegalArgumentException("Invalid pipeline depth. Must be 1 or more.");
+		}
+		this.address              = address;
+		this.connections          = connections;
+		this.batchesPerConnection = batchesPerConnection;
+		this.batchSize            = batchSize;
+		this.maxPosition          = maxPosition;
+		this.pipelineDepth        = pipelineDepth;
+	}
+
+	/**
+	 * Run every connection to completion, and return the combined batch latency distribution and throughput.
+	 */
+	public Result run() throws IOException, InterruptedException {
+		final ConnectionLoad[] loads   = new ConnectionLoad[this.connections];
+		final Thread[]         threads = new Thread[this.connections];
+		for (int i=0; i<this.connections; i++) {
+			loads[i]   = new ConnectionLoad(i);
+			threads[i] = new Thread(loads[i], "fibonacci-load-" + i);
+		}
+		final long startNanos = System.nanoTime();
+		for (final Thread thread : threads) {
+			thread.start();
+		}
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+		final long elapsedNanos = System.nanoTime() - startNanos;
+		final long[] latencies = new long[this.connections * this.batchesPerConnection];
+		long errors = 0;
+		for (int i=0; i<this.connections; i++) {
+			if (null != loads[i].failure) {
+				throw loads[i].failure;
+			}
+			System.arraycopy(loads[i].latencies, 0, latencies, i * this.batchesPerConnection, this.batchesPerConnection);
+			errors += loads[i].errors;
+		}
+		Arrays.sort(latencies);
+		return new Result(latencies, (long) latencies.length * this.batchSize, errors, elapsedNanos);
+	}
+
+	private final class ConnectionLoad implements Runnable {
+		private final Random random;
+		/*package*/ final long[] latencies = new long[FibonacciLoadGenerator.this.batchesPerConnection];
+		/*package*/ long errors = 0;
+		/*package*/ IOException failure = null;
+
+		/*package*/ ConnectionLoad(final int connection) {
+			this.random = new Random(connection);
+		}
+
+		@Override
+		public void run() {
+			final FibonacciLoadGenerator generator = FibonacciLoadGenerator.this;
+			final int total = generator.batchesPerConnection;
+			final long[] sendNanos = new long[generator.pipelineDepth];	// ring of in-flight batch send times
+			final StringBuilder batch = new StringBuilder();
+			try (final Socket socket = new Socket()) {
+				socket.setTcpNoDelay(true);
+				socket.connect(generator.address);
+				final OutputStream   output = new BufferedOutputStream(socket.getOutputStream(), FibonacciServer.BUFFER_SIZE);
+				final BufferedReader input  = new BufferedReader(new InputStreamReader(new BufferedInputStream(socket.getInputStream(), FibonacciServer.BUFFER_SIZE), StandardCharsets.US_ASCII));
+				int sent     = 0;
+				int received = 0;
+				while (received < total) {
+					while ((sent < total) && (sent - received < generator.pipelineDepth)) {
+						batch.setLength(0);
+						for (int i=0; i<generator.batchSize; i++) {
+							batch.append((i > 0) ? " " : "").append(1 + this.random.nextInt(generator.maxPosition));
+						}
+						output.write(batch.append('\n').toString().getBytes(StandardCharsets.US_ASCII));
+						sendNanos[sent % generator.pipelineDepth] = System.nanoTime();
+						sent++;
+					}
+					if (!input.ready()) {
+						output.flush();	// flush only before blocking, so a full window goes out in one write
+					}
+					final String response = input.readLine();
+					if (null == response) {
+						throw new IOException("Server closed connection after " + received + " of " + total + " responses");
+					}
+					this.latencies[received] = System.nanoTime() - sendNanos[received % generator.pipelineDepth];
+					if (response.startsWith(FibonacciServer.ERROR_PREFIX) || (FibonacciLoadGenerator.countValues(response) != generator.batchSize)) {
+						this.errors++;
+					}
+					received++;
+				}
+			} catch(IOException e) {
+				this.failure = e;
+			}
+		}
+	}
+
+	private static int countValues(final String response) {
+		int values = response.isEmpty() ? 0 : 1;
+		for (int i=0; i<response.length(); i++) {
+			if (' ' == response.charAt(i)) {
+				values++;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Sorted batch latencies in nanoseconds, plus query and error counts and wall clock time for the whole run.
+	 */
+	public static final class Result {
+		private final long[] latencies;
+		private final long   queries;
+		private final long   errors;
+		private final long   elapsedNanos;
+
+		/*package*/ Result(final long[] sortedLatencies, final long queries, final long errors, final long elapsedNanos) {
+			this.latencies    = sortedLatencies;
+			this.queries      = queries;
+			this.errors       = errors;
+			this.elapsedNanos = Math.max(1L, elapsedNanos);
+		}
+
+		public long getBatches() {
+			return this.latencies.length;
+		}
+		public long getQueries() {
+			return this.queries;
+		}
+		public long getErrors() {
+			return this.errors;
+		}
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+		public double getQueriesPerSecond() {
+			return (this.queries * 1000000000D) / this.elapsedNanos;
+		}
+
+		/**
+		 * Batch latency at the percentile (0 to 100) in nanoseconds, using the nearest-rank method.
+		 */
+		public long getLatencyNanos(final double percentile) {
+			if ((percentile < 0D) || (percentile > 100D)) {
+				throw new IllegalArgumentException("Invalid percentile. Must be 0 to 100.");
+			}
+			final int rank = (int) Math.ceil((percentile / 100D) * this.latencies.length);
+			return this.latencies[Math.max(0, rank - 1)];
+		}
+
+		@Override
+		public String toString() {
+			return "Sent " + this.latencies.length + " batches of " + this.queries + " queries with " + this.errors + " errors in " + (this.elapsedNanos / 1000000L) + "ms, " + (long) this.getQueriesPerSecond() + " queries/sec, batch p50=" + (this.getLatencyNanos(50D) / 1000L) + "us, p99=" + (this.getLatencyNanos(99D) / 1000L) + "us, max=" + (this.latencies[this.latencies.length - 1] / 1000L) + "us";
+		}
+	}
+}
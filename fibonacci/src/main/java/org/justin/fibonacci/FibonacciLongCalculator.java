@@ -0,0 +1,108 @@
+package org.justin.fibonacci;
+
+/**
+ * Implement methods for computing Fibonacci numbers with a 64-bit long using a loop, recursion, and lookup methods.
+ * Linear recursion uses one stack frame per position, halving recursion uses one stack frame per bit of the position.
+ * Throw ArithmeticException if there is overflow, detected by Math.addExact. Throw IllegalArgumentException for bad parameters.
+ * ASSUMPTION: Initial values are 1 and 1. Expected max Fibonacci number that can be computed via 64-bit long without overflow is 92.
+ * @author justin.cranford
+ */
+public class FibonacciLongCalculator {
+	/*package*/ static final int MAX_POSITION_USING_LONG = 92;	// ASSUMPTION: Largest Fibonacci number that can be computed via 64-bit long without overflow is 92.
+
+	// Pad first array element so the array index lines up with the Fibonacci position.
+	/*package*/ static final long[] FIRST_92_FIBONACCI_NUMBERS = new long[FibonacciLongCalculator.MAX_POSITION_USING_LONG + 1];
+
+	static {
+		FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[0] = Long.MIN_VALUE;
+		FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[1] = 1L;
+		FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[2] = 1L;
+		for (int position=3; position<=FibonacciLongCalculator.MAX_POSITION_USING_LONG; position++) {
+			FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position] = Math.addExact(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position-1], FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position-2]);
+		}
+	}
+
+	public static long computeFibonacciNumberUsingLookup(final int fibonacciNumber) throws ArithmeticException, IllegalArgumentException {
+		if (fibonacciNumber <= 0) {
+			throw new IllegalArgumentException("Invalid Fibonacci position. Must be 1 or more.");
+		} else if (fibonacciNumber > FibonacciLongCalculator.MAX_POSITION_USING_LONG) {
+			throw new ArithmeticException("long overflow");
+		}
+		return FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[fibonacciNumber];
+	}
+
+	public static long computeUsingLoop(final int fibonacciNumber) throws ArithmeticException, IllegalArgumentException {
+		if (fibonacciNumber <= 0) {
+			throw new IllegalArgumentException("Invalid Fibonacci position. Must be 1 or more.");
+		} else if (fibonacciNumber <= 2) {
+			return 1L;
+		}
+		long first=1L, second=1L;
+		for (int remaining=fibonacciNumber; remaining>2; remaining--) {
+			final long sum = Math.addExact(first, second);	// throws ArithmeticException("long overflow")
+			first=second;
+			second=sum;
+		}
+		return second;
+	}
+
+	public static long computeUsingRecursion(final int fibonacciNumber) throws ArithmeticException, IllegalArgumentException {
+		if (fibonacciNumber <= 0) {
+			throw new IllegalArgumentException("Invalid Fibonacci position. Must be 1 or more.");
+		} else if (fibonacciNumber <= 2) {
+			return 1L;
+		}
+		return FibonacciLongCalculator.computeRecursionHelper(1L, 1L, fibonacciNumber);
+	}
+
+	private static long computeRecursionHelper(final long first, final long second, final int remaining) throws ArithmeticException {
+		final long sum = Math.addExact(first, second);
+		if (remaining == 3) {
+			return sum;
+		}
+		return FibonacciLongCalculator.computeRecursionHelper(second, sum, remaining-1);
+	}
+
+	/**
+	 * Divide and conquer recursion on n/2 with the fast doubling identities, so the depth is O(log n) instead of one frame per position.
+	 * F(2k)   = F(k) * (2*F(k+1) - F(k))
+	 * F(2k+1) = F(k)^2 + F(k+1)^2
+	 */
+	public static long computeUsingHalvingRecursion(final int fibonacciNumber) throws ArithmeticException, IllegalArgumentException {
+		if (fibonacciNumber <= 0) {
+			throw new IllegalArgumentException("Invalid Fibonacci position. Must be 1 or more.");
+		} else if (fibonacciNumber <= 2) {
+			return 1L;
+		}
+		final long[] pair = new long[2];
+		FibonacciLongCalculator.computeHalvingRecursionHelper(fibonacciNumber >>> 1, pair);
+		// last step only needs F(n), not F(n+1), which would overflow at n=92
+		if (0 == (fibonacciNumber & 1)) {
+			return Math.multiplyExact(pair[0], Math.subtractExact(Math.multiplyExact(pair[1], 2L), pair[0]));	// throws ArithmeticException("long overflow")
+		}
+		return Math.addExact(Math.multiplyExact(pair[0], pair[0]), Math.multiplyExact(pair[1], pair[1]));
+	}
+
+	/**
+	 * Set pair to {F(n), F(n+1)}, recursing on n/2.
+	 */
+	private static void computeHalvingRecursionHelper(final int n, final long[] pair) throws ArithmeticException {
+		if (0 == n) {
+			pair[0] = 0L;
+			pair[1] = 1L;
+			return;
+		}
+		FibonacciLongCalculator.computeHalvingRecursionHelper(n >>> 1, pair);
+		final long a           = pair[0];
+		final long b           = pair[1];
+		final long twoK        = Math.multiplyExact(a, Math.subtractExact(Math.multiplyExact(b, 2L), a));
+		final long twoKPlusOne = Math.addExact(Math.multiplyExact(a, a), Math.multiplyExact(b, b));
+		if (0 == (n & 1)) {
+			pair[0] = twoK;	// k => 2k
+			pair[1] = twoKPlusOne;
+		} else {
+			pair[0] = twoKPlusOne;	// k => 2k+1
+			pair[1] = Math.addExact(twoK, twoKPlusOne);
+		}
+	}
+}
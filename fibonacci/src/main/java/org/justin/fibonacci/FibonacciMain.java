@@ -1,18 +1,47 @@
 package org.justin.fibonacci;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
 /**
- * Compute Fibonacci numbers with a 32-bit int using either a loop or recursion.
- * Throw ArithmeticException if there is overflow. Throw IllegalArgumentException for bad parameters.
- * ASSUMPTION: Initial values are 1 and 1. Expected max Fibonacci number that can be computed via 32-bit int without overflow is 46.
+ * Compute Fibonacci numbers with a 32-bit int or 64-bit long using either a loop, recursion, or lookup, or with BigInteger using fast doubling or recursion.
+ * Recursion is linear for int, and halves the position for long and big, so the stack depth is O(log n).
+ * Throw ArithmeticException if there is int or long overflow. Throw IllegalArgumentException for bad parameters.
+ * Default method is loop. Default type is int, except doubling is only supported for type big. Type big supports doubling and recursion.
+ * Range mode writes F(from) to F(to) with BigInteger, one per line, to a file or standard output: -range <from> <to> [file]
+ * Server mode answers batches of positions over TCP on the loopback address until killed: -server <port> [threads]
+ * Load test mode measures a loopback server: -loadtest <connections> <batches> <batchSize> <maxPosition> [pipeline]
+ * ASSUMPTION: Initial values are 1 and 1. Expected max Fibonacci number that can be computed without overflow is 46 via 32-bit int, and 92 via 64-bit long.
  * @author justin.cranford
  */
 public class FibonacciMain {
+	private static final String USAGE          = "Expect: <position> (loop|recursion|lookup|doubling) (int|long|big)";
+	private static final String RANGE_USAGE    = "Expect: -range <from> <to> [file]";
+	private static final String SERVER_USAGE   = "Expect: -server <port> [threads]";
+	private static final String LOADTEST_USAGE = "Expect: -loadtest <connections> <batches> <batchSize> <maxPosition> [pipeline]";
+
 	public static void main(String[] args) throws ArithmeticException, IllegalArgumentException {
 		final int numArgs = args.length;
-		if (numArgs < 1) {
-			throw new IllegalArgumentException("Missing parameter for Fibonacci position. Expect: <position> (loop|recursion|lookup)");
-		} else if (numArgs > 2) {
-			throw new IllegalArgumentException("Too many parameters. Expect: <position> (loop|recursion|lookup)");
+		if ((numArgs >= 1) && "-range".equals(args[0])) {
+			FibonacciMain.writeRange(args);
+			return;
+		} else if ((numArgs >= 1) && "-server".equals(args[0])) {
+			FibonacciMain.server(args);
+			return;
+		} else if ((numArgs >= 1) && "-loadtest".equals(args[0])) {
+			FibonacciMain.loadtest(args);
+			return;
+		} else if (numArgs < 1) {
+			throw new IllegalArgumentException("Missing parameter for Fibonacci position. " + FibonacciMain.USAGE);
+		} else if (numArgs > 3) {
+			throw new IllegalArgumentException("Too many parameters. " + FibonacciMain.USAGE);
 		}
 		int position;
 		try {
@@ -20,18 +49,134 @@ public class FibonacciMain {
 		} catch(NumberFormatException nfe) {
 			throw new IllegalArgumentException("Invalid number parameter for Fibonacci position", nfe);
 		}
-		if (numArgs == 1) {
-			System.out.println(FibonacciIntCalculator.computeUsingLoop(position));
-		} else if (args[1] == null) {
-			throw new IllegalArgumentException("Null compute method. Expect: <position> (loop|recursion|lookup)");
-		} else if (args[1].equalsIgnoreCase("loop")) {
-			System.out.println(FibonacciIntCalculator.computeUsingLoop(position));
-		} else if (args[1].equalsIgnoreCase("recursion")) {
-			System.out.println(FibonacciIntCalculator.computeUsingRecursion(position));
-		} else if (args[1].equalsIgnoreCase("lookup")) {
-			System.out.println(FibonacciIntCalculator.computeFibonacciNumberUsingLookup(position));
+		final String method = (numArgs == 1) ? "loop" : args[1];
+		if (method == null) {
+			throw new IllegalArgumentException("Null compute method. " + FibonacciMain.USAGE);
+		}
+		final String type = (numArgs == 3) ? args[2] : (method.equalsIgnoreCase("doubling") ? "big" : "int");
+		if (type == null) {
+			throw new IllegalArgumentException("Null number type. " + FibonacciMain.USAGE);
+		} else if (type.equalsIgnoreCase("int")) {
+			System.out.println(FibonacciMain.computeInt(position, method));
+		} else if (type.equalsIgnoreCase("long")) {
+			System.out.println(FibonacciMain.computeLong(position, method));
+		} else if (type.equalsIgnoreCase("big")) {
+			if (method.equalsIgnoreCase("doubling")) {
+				System.out.println(FibonacciBigCalculator.computeUsingDoubling(position));	// no overflow
+			} else if (method.equalsIgnoreCase("recursion")) {
+				System.out.println(FibonacciBigCalculator.computeUsingRecursion(position));	// no overflow
+			} else {
+				throw new IllegalArgumentException("Invalid compute method for type big. Expect: <position> (doubling|recursion) big");
+			}
 		} else {
-			throw new IllegalArgumentException("Invalid compute method. Expect: <position> (loop|recursion|lookup)");
+			throw new IllegalArgumentException("Invalid number type. " + FibonacciMain.USAGE);
+		}
+	}
+
+	/**
+	 * Write the range through one channel, a FileChannel for a file, or a channel over System.out. Throw UncheckedIOException for write errors.
+	 */
+	private static void writeRange(final String[] args) throws IllegalArgumentException {
+		if ((args.length < 3) || (args.length > 4)) {
+			throw new IllegalArgumentException("Invalid number of range parameters. " + FibonacciMain.RANGE_USAGE);
+		}
+		final int from;
+		final int to;
+		try {
+			from = Integer.parseInt(args[1]);
+			to   = Integer.parseInt(args[2]);
+		} catch(NumberFormatException nfe) {
+			throw new IllegalArgumentException("Invalid number parameter for Fibonacci range. " + FibonacciMain.RANGE_USAGE, nfe);
+		}
+		try {
+			if (args.length == 3) {
+				final WritableByteChannel channel = Channels.newChannel(System.out);	// not closed, System.out stays open
+				FibonacciRange.write(from, to, channel);
+				System.out.flush();
+			} else if (args[3] == null) {
+				throw new IllegalArgumentException("Null file. " + FibonacciMain.RANGE_USAGE);
+			} else {
+				try (final FileChannel channel = FileChannel.open(Paths.get(args[3]), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+					FibonacciRange.write(from, to, channel);
+				}
+			}
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Answer batches on the loopback address until the process is killed. The server has no authentication, so it is not exposed to the network.
+	 */
+	private static void server(final String[] args) throws IllegalArgumentException {
+		if ((args.length < 2) || (args.length > 3)) {
+			throw new IllegalArgumentException("Invalid number of server parameters. " + FibonacciMain.SERVER_USAGE);
+		}
+		final int port    = FibonacciMain.parseInt(args[1], FibonacciMain.SERVER_USAGE);
+		final int threads = (args.length == 3) ? FibonacciMain.parseInt(args[2], FibonacciMain.SERVER_USAGE) : Runtime.getRuntime().availableProcessors();
+		try {
+			final FibonacciServer server = new FibonacciServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads);
+			System.out.println("Listening on port " + server.getPort() + " with " + threads + " threads");
+			server.awaitTermination();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Start a server on a loopback port with one thread per connection, run the load generator against it, and print the result.
+	 */
+	private static void loadtest(final String[] args) throws IllegalArgumentException {
+		if ((args.length < 5) || (args.length > 6)) {
+			throw new IllegalArgumentException("Invalid number of load test parameters. " + FibonacciMain.LOADTEST_USAGE);
+		}
+		final int connections = FibonacciMain.parseInt(args[1], FibonacciMain.LOADTEST_USAGE);
+		final int batches     = FibonacciMain.parseInt(args[2], FibonacciMain.LOADTEST_USAGE);
+		final int batchSize   = FibonacciMain.parseInt(args[3], FibonacciMain.LOADTEST_USAGE);
+		final int maxPosition = FibonacciMain.parseInt(args[4], FibonacciMain.LOADTEST_USAGE);
+		final int pipeline    = (args.length == 6) ? FibonacciMain.parseInt(args[5], FibonacciMain.LOADTEST_USAGE) : 1;
+		if (connections <= 0) {
+			throw new IllegalArgumentException("Invalid number of connections. Must be 1 or more.");
+		}
+		try (final FibonacciServer server = new FibonacciServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), connections)) {
+			System.out.println(new FibonacciLoadGenerator(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), connections, batches, batchSize, maxPosition, pipeline).run());
+			System.out.println("Server answered " + server.getBatches() + " batches with " + server.getSweeps() + " sweeps");
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static int parseInt(final String value, final String usage) throws IllegalArgumentException {
+		try {
+			return Integer.parseInt(value);
+		} catch(NumberFormatException nfe) {
+			throw new IllegalArgumentException("Invalid number parameter " + value + ". " + usage, nfe);
+		}
+	}
+
+	private static int computeInt(final int position, final String method) throws ArithmeticException, IllegalArgumentException {
+		if (method.equalsIgnoreCase("loop")) {
+			return FibonacciIntCalculator.computeUsingLoop(position);
+		} else if (method.equalsIgnoreCase("recursion")) {
+			return FibonacciIntCalculator.computeUsingRecursion(position);
+		} else if (method.equalsIgnoreCase("lookup")) {
+			return FibonacciIntCalculator.computeFibonacciNumberUsingLookup(position);
+		}
+		throw new IllegalArgumentException("Invalid compute method for type int. " + FibonacciMain.USAGE);
+	}
+
+	private static long computeLong(final int position, final String method) throws ArithmeticException, IllegalArgumentException {
+		if (method.equalsIgnoreCase("loop")) {
+			return FibonacciLongCalculator.computeUsingLoop(position);
+		} else if (method.equalsIgnoreCase("recursion")) {
+			return FibonacciLongCalculator.computeUsingHalvingRecursion(position);
+		} else if (method.equalsIgnoreCase("lookup")) {
+			return FibonacciLongCalculator.computeFibonacciNumberUsingLookup(position);
 		}
+		throw new IllegalArgumentException("Invalid compute method for type long. " + FibonacciMain.USAGE);
 	}
-}
\ No newline at end of file
+}
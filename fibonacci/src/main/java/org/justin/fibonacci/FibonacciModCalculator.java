@@ -0,0 +1,178 @@
+package org.justin.fibonacci;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compute F(n) mod m with 64-bit long arithmetic, for positions up to Long.MAX_VALUE and any modulus from 1 to Long.MAX_VALUE.
+ * The full BigInteger value of F(n) is never computed, so the cost is O(log n) modular steps instead of O(n) bits.
+ * - Fast doubling, same identities as FibonacciBigCalculator, with every product reduced mod m.
+ * - Products that can exceed 64 bits use a 128-bit multiply, high half from multiplyHigh() and low half from a*b,
+ *   reduced one bit at a time. Java 8 has no Math.multiplyHigh, so multiplyHigh() is the same Hacker's Delight algorithm.
+ * - Moduli up to MAX_PISANO_MODULUS use a cached table of one Pisano period, F(n) mod m repeats with period pi(m) <= 6m,
+ *   so F(n) mod m = table[n mod pi(m)].
+ * - The batch method answers many (n, m) queries in parallel on a ForkJoinPool.
+ * Throw IllegalArgumentException for bad parameters. There is no overflow.
+ * ASSUMPTION: Initial values are 1 and 1, same as FibonacciIntCalculator.
+ * @author justin.cranford
+ */
+public class FibonacciModCalculator {
+	/*package*/ static final long MAX_PISANO_MODULUS = 1L << 10;	// ASSUMPTION: Each table is at most 6m ints, so a table is cheaper than doubling only for small m.
+	/*package*/ static final int  BATCH_THRESHOLD    = 1 << 10;	// queries per task, below this a task runs sequentially
+	private static final long     MAX_DIRECT_MODULUS = 3037000499L;	// floor(sqrt(Long.MAX_VALUE)), (m-1)^2 fits a long
+
+	private static final ConcurrentHashMap<Long,int[]> PISANO_TABLES = new ConcurrentHashMap<>();
+
+	public static long computeModulo(final long fibonacciNumber, final long modulus) throws IllegalArgumentException {
+		if (fibonacciNumber <= 0) {
+			throw new IllegalArgumentException("Invalid Fibonacci position. Must be 1 or more.");
+		} else if (modulus <= 0) {
+			throw new IllegalArgumentException("Invalid modulus. Must be 1 or more.");
+		} else if (modulus <= FibonacciModCalculator.MAX_PISANO_MODULUS) {
+			final int[] table = FibonacciModCalculator.PISANO_TABLES.computeIfAbsent(Long.valueOf(modulus), m -> FibonacciModCalculator.pisanoTable((int) m.longValue()));
+			return table[(int) (fibonacciNumber % table.length)];
+		}
+		return FibonacciModCalculator.computeUsingDoubling(fibonacciNumber, modulus);
+	}
+
+	/**
+	 * Return F(positions[i]) mod moduli[i] for every i, using the common pool.
+	 */
+	public static long[] computeModulo(final long[] positions, final long[] moduli) throws IllegalArgumentException {
+		return FibonacciModCalculator.computeModulo(positions, moduli, ForkJoinPool.commonPool());
+	}
+
+	public static long[] computeModulo(final long[] positions, final long[] moduli, final ForkJoinPool pool) throws IllegalArgumentException {
+		if ((null == positions) || (null == moduli)) {
+			throw new IllegalArgumentException("Null positions or moduli");
+		} else if (positions.length != moduli.length) {
+			throw new IllegalArgumentException("Mismatched lengths. Positions " + positions.length + ", moduli " + moduli.length + ".");
+		} else if (null == pool) {
+			throw new IllegalArgumentException("Null pool");
+		}
+		final long[] results = new long[positions.length];
+		if (positions.length <= FibonacciModCalculator.BATCH_THRESHOLD) {
+			new BatchTask(positions, moduli, results, 0, positions.length).compute();	// too small to fork, skip the handoff
+		} else {
+			pool.invoke(new BatchTask(positions, moduli, results, 0, positions.length));
+		}
+		return results;
+	}
+
+	/**
+	 * Fast doubling from the most significant bit of n, without the Pisano table.
+	 */
+	/*package*/ static long computeUsingDoubling(final long n, final long m) {
+		long a = 0;	// F(k) mod m, starting at k=0
+		long b = 1 % m;	// F(k+1) mod m
+		for (int bit=63-Long.numberOfLeadingZeros(n); bit>=0; bit--) {
+			final long twoK        = FibonacciModCalculator.multiplyMod(a, FibonacciModCalculator.subtractMod(FibonacciModCalculator.addMod(b, b, m), a, m), m);	// F(2k) = F(k)(2F(k+1) - F(k))
+			final long twoKPlusOne = FibonacciModCalculator.addMod(FibonacciModCalculator.multiplyMod(a, a, m), FibonacciModCalculator.multiplyMod(b, b, m), m);	// F(2k+1) = F(k)^2 + F(k+1)^2
+			if (0 == ((n >>> bit) & 1)) {
+				a = twoK;	// k => 2k
+				b = twoKPlusOne;
+			} else {
+				a = twoKPlusOne;	// k => 2k+1
+				b = FibonacciModCalculator.addMod(twoK, twoKPlusOne, m);
+			}
+		}
+		return a;
+	}
+
+	/**
+	 * Return F(0) to F(pi(m)-1) mod m. The period ends when the pair (0, 1) repeats.
+	 */
+	private static int[] pisanoTable(final int m) {
+		final int[] values = new int[6 * m + 1];	// pi(m) <= 6m
+		int a = 0;
+		int b = 1 % m;
+		int period = 0;
+		do {
+			values[period++] = a;
+			final int next = (a + b) % m;
+			a = b;
+			b = next;
+		} while ((a != 0) || (b != 1 % m));
+		final int[] table = new int[period];
+		System.arraycopy(values, 0, table, 0, period);
+		return table;
+	}
+
+	/*package*/ static long addMod(final long a, final long b, final long m) {
+		final long sum = a + b;	// a, b < m <= 2^63-1, so the unsigned sum fits 64 bits
+		return (Long.compareUnsigned(sum, m) >= 0) ? sum - m : sum;
+	}
+
+	/*package*/ static long subtractMod(final long a, final long b, final long m) {
+		final long difference = a - b;
+		return (difference < 0) ? difference + m : difference;
+	}
+
+	/**
+	 * Return a*b mod m for 0 <= a, b < m.
+	 */
+	/*package*/ static long multiplyMod(final long a, final long b, final long m) {
+		if (m <= FibonacciModCalculator.MAX_DIRECT_MODULUS) {
+			return (a * b) % m;
+		}
+		long remainder = FibonacciModCalculator.multiplyHigh(a, b);	// high < m/2, because a*b < m*m < m*2^63
+		final long low = a * b;
+		for (int bit=63; bit>=0; bit--) {
+			remainder = (remainder << 1) | ((low >>> bit) & 1);	// remainder < m < 2^63, so the shift fits 64 unsigned bits
+			if (Long.compareUnsigned(remainder, m) >= 0) {
+				remainder -= m;
+			}
+		}
+		return remainder;
+	}
+
+	/**
+	 * Return the high 64 bits of the 128-bit product x*y. Same as Math.multiplyHigh in Java 9.
+	 */
+	/*package*/ static long multiplyHigh(final long x, final long y) {
+		final long x1 = x >> 32;
+		final long x2 = x & 0xFFFFFFFFL;
+		final long y1 = y >> 32;
+		final long y2 = y & 0xFFFFFFFFL;
+		final long z2 = x2 * y2;
+		final long t  = x1 * y2 + (z2 >>> 32);
+		long       z1 = t & 0xFFFFFFFFL;
+		final long z0 = t >> 32;
+		z1 += x2 * y1;
+		return x1 * y1 + z0 + (z1 >> 32);
+	}
+
+	/**
+	 * Split the batch in half until it is at most BATCH_THRESHOLD queries, then answer them sequentially.
+	 */
+	private static final class BatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final long[] positions;
+		private final long[] moduli;
+		private final long[] results;
+		private final int    start;
+		private final int    end;
+
+		/*package*/ BatchTask(final long[] positions, final long[] moduli, final long[] results, final int start, final int end) {
+			this.positions = positions;
+			this.moduli    = moduli;
+			this.results   = results;
+			this.start     = start;
+			this.end       = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.end - this.start > FibonacciModCalculator.BATCH_THRESHOLD) {
+				final int middle = (this.start + this.end) >>> 1;
+				ForkJoinTask.invokeAll(new BatchTask(this.positions, this.moduli, this.results, this.start, middle), new BatchTask(this.positions, this.moduli, this.results, middle, this.end));
+				return;
+			}
+			for (int i=this.start; i<this.end; i++) {
+				this.results[i] = FibonacciModCalculator.computeModulo(this.positions[i], this.moduli[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package org.justin.fibonacci;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Consecutive BigInteger Fibonacci numbers F(from) to F(to), inclusive. The starting pair {F(from), F(from+1)} is
+ * computed once with FibonacciBigCalculator fast doubling, then each following number is one addition, so a range of
+ * length L costs one O(log from) seed plus L additions instead of L independent computations.
+ * - iterator() and stream() are lazy, numbers are computed as they are consumed.
+ * - fill() computes into a caller-supplied array.
+ * - write() writes one decimal number per line to a channel through one reusable ByteBuffer, copying digits directly
+ *   from BigInteger.toString() without building a String per line.
+ * Throw IllegalArgumentException for bad parameters.
+ * @author justin.cranford
+ */
+public class FibonacciRange {
+	/*package*/ static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	public static Iterator<BigInteger> iterator(final int from, final int to) throws IllegalArgumentException {
+		FibonacciRange.validate(from, to);
+		return new RangeIterator(from, to);
+	}
+
+	public static Stream<BigInteger> stream(final int from, final int to) throws IllegalArgumentException {
+		FibonacciRange.validate(from, to);
+		final int characteristics = Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+		return StreamSupport.stream(Spliterators.spliterator(new RangeIterator(from, to), (long) to - from + 1, characteristics), false);	// sequential, each number depends on the previous two
+	}
+
+	/**
+	 * Fill buffer[offset] to buffer[offset+length-1] with F(from) to F(from+length-1).
+	 */
+	public static void fill(final int from, final BigInteger[] buffer, final int offset, final int length) throws IllegalArgumentException {
+		if (null == buffer) {
+			throw new IllegalArgumentException("Null buffer");
+		} else if ((offset < 0) || (length < 0) || (offset > buffer.length - length)) {
+			throw new IllegalArgumentException("Invalid offset or length for buffer of length " + buffer.length);
+		} else if (0 == length) {
+			return;
+		}
+		FibonacciRange.validate(from, from + (length - 1));
+		final RangeIterator iterator = new RangeIterator(from, from + (length - 1));
+		for (int i=offset; i<offset+length; i++) {
+			buffer[i] = iterator.next();
+		}
+	}
+
+	/**
+	 * Write F(from) to F(to), one decimal number per line, and return the number of bytes written. The channel is not closed.
+	 */
+	public static long write(final int from, final int to, final WritableByteChannel channel) throws IllegalArgumentException, IOException {
+		if (null == channel) {
+			throw new IllegalArgumentException("Null channel");
+		}
+		final RangeIterator iterator = new RangeIterator(FibonacciRange.validate(from, to), to);
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(FibonacciRange.WRITE_BUFFER_SIZE);
+		long bytes = 0;
+		while (iterator.hasNext()) {
+			final String digits = iterator.next().toString();
+			final int length = digits.length();
+			for (int i=0; i<length; i++) {
+				if (!buffer.hasRemaining()) {
+					bytes += FibonacciRange.flush(buffer, channel);
+				}
+				buffer.put((byte) digits.charAt(i));	// ASCII digits and minus sign only
+			}
+			if (!buffer.hasRemaining()) {
+				bytes += FibonacciRange.flush(buffer, channel);
+			}
+			buffer.put((byte) '\n');
+		}
+		return bytes + FibonacciRange.flush(buffer, channel);
+	}
+
+	private static int flush(final ByteBuffer buffer, final WritableByteChannel channel) throws IOException {
+		buffer.flip();
+		final int length = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+		return length;
+	}
+
+	private static int validate(final int from, final int to) throws IllegalArgumentException {
+		if (from <= 0) {
+			throw new IllegalArgumentException("Invalid Fibonacci position. Must be 1 or more.");
+		} else if (to < from) {
+			throw new IllegalArgumentException("Invalid Fibonacci range. End must be greater than or equal to start.");
+		} else if (to == Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid Fibonacci range. End must be less than " + Integer.MAX_VALUE + ".");	// next pair would overflow the position
+		}
+		return from;
+	}
+
+	/**
+	 * Seeds lazily on the first next(), so creating an iterator or stream that is never consumed costs nothing.
+	 */
+	private static final class RangeIterator implements Iterator<BigInteger> {
+		private final int  from;
+		private final int  to;
+		private int        next;	// position returned by the next call to next()
+		private BigInteger current;	// F(next)
+		private BigInteger following;	// F(next+1)
+
+		/*package*/ RangeIterator(final int from, final int to) {
+			this.from = from;
+			this.to   = to;
+			this.next = from;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next <= this.to;
+		}
+
+		@Override
+		public BigInteger next() {
+			if (this.next > this.to) {
+				throw new NoSuchElementException();
+			} else if (null == this.current) {
+				final BigInteger[] pair = FibonacciBigCalculator.computePairUsingDoubling(this.from, ForkJoinPool.commonPool(), FibonacciBigCalculator.PARALLEL_THRESHOLD_BITS);
+				this.current   = pair[0];
+				this.following = pair[1];
+			}
+			final BigInteger result = this.current;
+			if (this.next++ < this.to) {	// skip the addition after the last number
+				final BigInteger sum = this.current.add(this.following);
+				this.current   = this.following;
+				this.following = sum;
+			}
+			return result;
+		}
+	}
+}
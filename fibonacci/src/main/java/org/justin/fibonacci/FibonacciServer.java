@@ -0,0 +1,296 @@
+package org.justin.fibonacci;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived Fibonacci batch server. Each request line is a batch of positions separated by spaces or commas, and each
+ * response line is F(position) for every position of the batch, separated by spaces, in request order. A batch with an
+ * invalid position is answered with "error: message".
+ *
+ * Each connection is served by one pool thread. Complete request lines that arrive in the same read are coalesced, up
+ * to MAX_COALESCED_LINES, and all of their positions are answered by one FibonacciBatch sweep, so a client that
+ * pipelines batches shares work across them, not only within them. A trailing partial line waits for the next read.
+ * @author justin.cranford
+ */
+public final class FibonacciServer implements AutoCloseable {
+	/*package*/ static final String ERROR_PREFIX        = "error: ";
+	/*package*/ static final int    MAX_POSITION        = 1000000;	// ASSUMPTION: F(10^6) is about 209K digits, larger responses would dominate the socket.
+	/*package*/ static final int    MAX_COALESCED_LINES = 64;
+	/*package*/ static final int    BUFFER_SIZE         = 1 << 16;
+	/*package*/ static final int    MAX_LINE_LENGTH     = 1 << 20;	// longer lines are answered with an error and skipped
+
+	private final ServerSocket    serverSocket;
+	private final ExecutorService connectionPool;
+	private final Thread          acceptor;
+	private final Set<Socket>     sockets = ConcurrentHashMap.newKeySet();
+	private final AtomicLong      batches = new AtomicLong();
+	private final AtomicLong      queries = new AtomicLong();
+	private final AtomicLong      sweeps  = new AtomicLong();
+	private volatile boolean      running = true;
+
+	/**
+	 * Bind to the address (port 0 for any free port), and start the acceptor thread. At most numThreads connections are served at once.
+	 */
+	public FibonacciServer(final InetSocketAddress address, final int numThreads) throws IOException {
+		if (numThreads <= 0) {
+			throw new IllegalArgumentException("Invalid number of threads. Must be 1 or more.");
+		}
+		this.serverSocket = new ServerSocket();
+		try {
+			this.serverSocket.setReuseAddress(true);
+			this.serverSocket.bind(address, 1024);
+		} catch(IOException e) {
+			this.serverSocket.close();
+			throw e;
+		}
+		final AtomicInteger threadNumber = new AtomicInteger();
+		this.connectionPool = Executors.newFixedThreadPool(numThreads, runnable -> new Thread(runnable, "fibonacci-server-" + threadNumber.getAndIncrement()));
+		this.acceptor       = new Thread(this::accept, "fibonacci-server-acceptor");
+		this.acceptor.start();
+	}
+
+	public int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Total batches (request lines) answered, including errors.
+	 */
+	public long getBatches() {
+		return this.batches.get();
+	}
+
+	/**
+	 * Total positions answered.
+	 */
+	public long getQueries() {
+		return this.queries.get();
+	}
+
+	/**
+	 * Total FibonacciBatch sweeps, less than getBatches() when pipelined batches were coalesced.
+	 */
+	public long getSweeps() {
+		return this.sweeps.get();
+	}
+
+	/**
+	 * Block until the server is closed.
+	 */
+	public void awaitTermination() throws InterruptedException {
+		this.acceptor.join();
+		this.connectionPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Stop accepting, close every connection, and wait for the threads to exit. If interrupted while waiting, stop waiting
+	 * and restore the interrupt flag for the caller.
+	 */
+	@Override
+	public void close() {
+		this.running = false;
+		FibonacciServer.closeQuietly(this.serverSocket);	// unblocks accept()
+		for (final Socket socket : this.sockets) {
+			FibonacciServer.closeQuietly(socket);	// unblocks read()
+		}
+		this.connectionPool.shutdown();
+		try {
+			this.acceptor.join();
+			this.connectionPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void accept() {
+		while (this.running) {
+			final Socket socket;
+			try {
+				socket = this.serverSocket.accept();
+			} catch(IOException e) {
+				if (this.serverSocket.isClosed()) {
+					break;	// closed by close()
+				}
+				System.err.println("Failed to accept connection: " + e.getMessage());
+				continue;
+			}
+			try {
+				socket.setTcpNoDelay(true);
+				this.sockets.add(socket);
+				if (!this.running) {
+					throw new SocketException("Server closed");	// close() may have missed this socket
+				}
+				this.connectionPool.execute(() -> this.serve(socket));
+			} catch(IOException | RuntimeException e) {	// RejectedExecutionException after close()
+				this.sockets.remove(socket);
+				FibonacciServer.closeQuietly(socket);
+			}
+		}
+		this.connectionPool.shutdown();
+	}
+
+	/**
+	 * Read whatever bytes are available, answer every complete line in them, and keep the trailing partial line for the
+	 * next read. Only complete lines are coalesced, so a batch is never held back waiting for the rest of a later line.
+	 */
+	private void serve(final Socket socket) {
+		try {
+			final InputStream  input  = socket.getInputStream();
+			final Writer       writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), FibonacciServer.BUFFER_SIZE);
+			final List<String> lines  = new ArrayList<>();
+			byte[]  buffer     = new byte[FibonacciServer.BUFFER_SIZE];
+			int     length     = 0;	// buffered bytes, a partial line after each pass
+			boolean discarding = false;	// skipping the rest of a line that was too long
+			while (this.running) {
+				if (length == buffer.length) {	// full buffer without a newline
+					if (buffer.length < FibonacciServer.MAX_LINE_LENGTH) {
+						buffer = Arrays.copyOf(buffer, buffer.length << 1);
+					} else {
+						if (!discarding) {
+							writer.write(FibonacciServer.ERROR_PREFIX + "line too long\n");
+							writer.flush();
+							this.batches.incrementAndGet();
+							discarding = true;
+						}
+						length = 0;
+					}
+				}
+				final int read = input.read(buffer, length, buffer.length - length);
+				if (read < 0) {
+					if ((length > 0) && !discarding) {
+						lines.add(new String(buffer, 0, length, StandardCharsets.US_ASCII));	// answer the last line even if the client did not terminate it
+						this.answer(lines, writer);
+						writer.flush();
+					}
+					break;
+				}
+				int start = 0;
+				for (int i=length; i<length+read; i++) {	// earlier bytes are a partial line, without a newline
+					if ('\n' != buffer[i]) {
+						continue;
+					} else if (discarding) {
+						discarding = false;	// end of the line that was too long, next line is a new batch
+					} else {
+						lines.add(new String(buffer, start, i - start, StandardCharsets.US_ASCII));
+						if (FibonacciServer.MAX_COALESCED_LINES == lines.size()) {
+							this.answer(lines, writer);
+							lines.clear();
+						}
+					}
+					start = i + 1;
+				}
+				length += read;
+				if (!lines.isEmpty()) {
+					this.answer(lines, writer);
+					lines.clear();
+				}
+				writer.flush();
+				System.arraycopy(buffer, start, buffer, 0, length - start);
+				length -= start;
+			}
+		} catch(SocketException e) {
+			// closed by the client or by close()
+		} catch(IOException e) {
+			if (this.running) {
+				System.err.println("Connection failed: " + e.getMessage());
+			}
+		} finally {
+			this.sockets.remove(socket);
+			FibonacciServer.closeQuietly(socket);
+		}
+	}
+
+	/**
+	 * Parse every line, compute all valid positions in one sweep, and write one response line per request line.
+	 */
+	private void answer(final List<String> lines, final Writer writer) throws IOException {
+		final int[][]  requests = new int[lines.size()][];
+		final String[] errors   = new String[lines.size()];
+		int total = 0;
+		for (int i=0; i<requests.length; i++) {
+			try {
+				requests[i] = FibonacciServer.parse(lines.get(i));
+				total += requests[i].length;
+			} catch(IllegalArgumentException e) {
+				errors[i] = e.getMessage();
+			}
+		}
+		final int[] positions = new int[total];
+		int offset = 0;
+		for (final int[] request : requests) {
+			if (null != request) {
+				System.arraycopy(request, 0, positions, offset, request.length);
+				offset += request.length;
+			}
+		}
+		final BigInteger[] results = FibonacciBatch.compute(positions);
+		offset = 0;
+		for (int i=0; i<requests.length; i++) {
+			if (null == requests[i]) {
+				writer.write(FibonacciServer.ERROR_PREFIX + errors[i]);
+			} else {
+				for (int j=0; j<requests[i].length; j++) {
+					if (j > 0) {
+						writer.write(' ');
+					}
+					writer.write(results[offset++].toString());
+				}
+			}
+			writer.write('\n');
+		}
+		this.batches.addAndGet(requests.length);
+		this.queries.addAndGet(total);
+		this.sweeps.incrementAndGet();
+	}
+
+	/**
+	 * Parse one batch. Throw IllegalArgumentException for an invalid or out of range position.
+	 */
+	/*package*/ static int[] parse(final String line) throws IllegalArgumentException {
+		final String trimmed = line.trim();
+		if (trimmed.isEmpty()) {
+			return new int[0];
+		}
+		final String[] tokens    = trimmed.split("[\\s,]+");
+		final int[]    positions = new int[tokens.length];
+		for (int i=0; i<tokens.length; i++) {
+			try {
+				positions[i] = Integer.parseInt(tokens[i]);
+			} catch(NumberFormatException nfe) {
+				throw new IllegalArgumentException("Invalid number parameter for Fibonacci position: " + tokens[i], nfe);
+			}
+			if ((positions[i] <= 0) || (positions[i] > FibonacciServer.MAX_POSITION)) {
+				throw new IllegalArgumentException("Invalid Fibonacci position " + positions[i] + ". Must be 1 to " + FibonacciServer.MAX_POSITION + ".");
+			}
+		}
+		return positions;
+	}
+
+	private static void closeQuietly(final AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch(Exception e) {
+			// ignore
+		}
+	}
+}
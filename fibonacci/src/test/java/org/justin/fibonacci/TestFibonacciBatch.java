@@ -0,0 +1,48 @@
+package org.justin.fibonacci;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+@SuppressWarnings("static-method")
+public class TestFibonacciBatch {
+	private static final int BATCH_SIZE   = 2000;
+	private static final int MAX_POSITION = 100000;
+
+	@Test
+	public void testResultsInRequestOrder() throws Exception {
+		final int[] positions = {100, 1, 5000, 100, 2, 3, 4999, 60, 90, 2000000, 1000, 1033, 1, 1100};	// duplicates, dense, sparse, and jumps
+		final BigInteger[] results = FibonacciBatch.compute(positions);
+		Assert.assertEquals(positions.length, results.length);
+		for (int i=0; i<positions.length; i++) {
+			Assert.assertEquals(Integer.toString(positions[i]), FibonacciBigCalculator.computeUsingDoubling(positions[i]), results[i]);
+		}
+		Assert.assertSame(results[0], results[3]);	// duplicates share one result
+		Assert.assertEquals(0, FibonacciBatch.compute(new int[0]).length);
+	}
+
+	@Test
+	public void testRandomBatchMatchesIndividual() throws Exception {
+		final Random random = new Random(1);
+		final int[] positions = new int[TestFibonacciBatch.BATCH_SIZE];
+		for (int i=0; i<positions.length; i++) {
+			positions[i] = 1 + random.nextInt(TestFibonacciBatch.MAX_POSITION);
+		}
+		final BigInteger[] results = FibonacciBatch.compute(positions);
+		for (int i=0; i<positions.length; i++) {
+			Assert.assertEquals(FibonacciBigCalculator.computeUsingDoubling(positions[i]), results[i]);
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidParameterZero() {
+		FibonacciBatch.compute(new int[]{5, 0, 7});
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testNullPositions() {
+		FibonacciBatch.compute(null);
+	}
+}
@@ -0,0 +1,78 @@
+package org.justin.fibonacci;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+@SuppressWarnings("static-method")
+public class TestFibonacciBigCalculator {
+	private static final int LARGE_POSITION = 2000000;	// F(n) has about 0.694n bits, so the largest steps run in parallel
+
+	@Test
+	public void testFibonacciDoublingValuesMatchInt() throws Exception {
+		for (int position=1; position<=FibonacciIntCalculator.FIRST_46_FIBONACCI_NUMBERS.length-1; position++) {
+			Assert.assertEquals(BigInteger.valueOf(FibonacciIntCalculator.FIRST_46_FIBONACCI_NUMBERS[position]), FibonacciBigCalculator.computeUsingDoubling(position));
+		}
+	}
+
+	@Test
+	public void testFibonacciDoublingValuesMatchAddition() throws Exception {
+		BigInteger first = BigInteger.ONE, second = BigInteger.ONE;
+		for (int position=3; position<=5000; position++) {
+			final BigInteger sum = first.add(second);
+			first  = second;
+			second = sum;
+			if ((position < 300) || (0 == (position % 97))) {
+				Assert.assertEquals(sum, FibonacciBigCalculator.computeUsingDoubling(position));
+			}
+		}
+		Assert.assertEquals(new BigInteger("354224848179261915075"), FibonacciBigCalculator.computeUsingDoubling(100));
+	}
+
+	@Test
+	public void testFibonacciDoublingParallelMatchesSequential() throws Exception {
+		final BigInteger sequential = FibonacciBigCalculator.computeUsingDoubling(TestFibonacciBigCalculator.LARGE_POSITION, ForkJoinPool.commonPool(), Integer.MAX_VALUE);
+		final BigInteger parallel   = FibonacciBigCalculator.computeUsingDoubling(TestFibonacciBigCalculator.LARGE_POSITION);
+		Assert.assertEquals(sequential, parallel);
+		Assert.assertEquals(1388, sequential.bitLength() / 1000);	// log2(golden ratio) * 2000000 = 1388484 bits
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			final BigInteger previous    = FibonacciBigCalculator.computeUsingDoubling(TestFibonacciBigCalculator.LARGE_POSITION - 1, pool, 1);	// every step parallel
+			final BigInteger prePrevious = FibonacciBigCalculator.computeUsingDoubling(TestFibonacciBigCalculator.LARGE_POSITION - 2, pool, 1);
+			Assert.assertEquals(sequential, previous.add(prePrevious));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testFibonacciRecursionMatchesDoubling() throws Exception {
+		for (int position=1; position<=2000; position++) {
+			Assert.assertEquals(FibonacciBigCalculator.computeUsingDoubling(position), FibonacciBigCalculator.computeUsingRecursion(position));
+		}
+		final BigInteger large = FibonacciBigCalculator.computeUsingRecursion(TestFibonacciBigCalculator.LARGE_POSITION);	// linear recursion would need 2000000 frames
+		Assert.assertEquals(FibonacciBigCalculator.computeUsingDoubling(TestFibonacciBigCalculator.LARGE_POSITION, ForkJoinPool.commonPool(), Integer.MAX_VALUE), large);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFibonacciRecursionInvalidParameterZero() {
+		FibonacciBigCalculator.computeUsingRecursion(0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFibonacciDoublingInvalidParameterNegative() {
+		FibonacciBigCalculator.computeUsingDoubling(-1);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFibonacciDoublingInvalidParameterZero() {
+		FibonacciBigCalculator.computeUsingDoubling(0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFibonacciDoublingNullPool() {
+		FibonacciBigCalculator.computeUsingDoubling(10, null);
+	}
+}
@@ -0,0 +1,100 @@
+package org.justin.fibonacci;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+@SuppressWarnings("static-method")
+public class TestFibonacciCache {
+	private static final int LARGE_POSITION = 1000000;
+
+	@Test
+	public void testValuesMatchDoubling() throws Exception {
+		final FibonacciCache cache = new FibonacciCache(1L << 24);
+		final int[] positions = {1, 2, 3, 46, 47, 92, 93, 1000, 999, 1001, 950, 1500, 2000, 1990, 4100, 4000, 3999, 20000, 10001, 30000, 29937};
+		for (final int position : positions) {
+			Assert.assertEquals(Integer.toString(position), FibonacciBigCalculator.computeUsingDoubling(position), cache.get(position));
+		}
+		Assert.assertTrue(cache.toString(), cache.getSeeded() >= 8);
+		Assert.assertTrue(cache.toString(), cache.getHits() >= 2);	// 2 after 1, 1000 after 999
+		Assert.assertEquals(positions.length, cache.getHits() + cache.getMisses());
+	}
+
+	@Test
+	public void testNeighborIsSeededFromCachedPair() throws Exception {
+		final FibonacciCache cache = new FibonacciCache(1L << 24);
+		final BigInteger large  = cache.get(TestFibonacciCache.LARGE_POSITION);
+		final BigInteger seeded = cache.get(TestFibonacciCache.LARGE_POSITION + 1000);
+		Assert.assertSame(large, cache.get(TestFibonacciCache.LARGE_POSITION));
+		Assert.assertEquals(FibonacciBigCalculator.computeUsingDoubling(TestFibonacciCache.LARGE_POSITION + 1000), seeded);
+		Assert.assertEquals(1, cache.getSeeded());
+		Assert.assertEquals(FibonacciBigCalculator.computeUsingDoubling(TestFibonacciCache.LARGE_POSITION - 10), cache.get(TestFibonacciCache.LARGE_POSITION - 10));	// backward steps
+		Assert.assertEquals(2, cache.getSeeded());
+	}
+
+	@Test
+	public void testConcurrentMissesShareOneComputation() throws Exception {
+		final FibonacciCache cache = new FibonacciCache(1L << 24);
+		final int threads = 16;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<BigInteger>> results = new ArrayList<>();
+			for (int i=0; i<threads; i++) {
+				results.add(executor.submit(new Callable<BigInteger>() {
+					@Override
+					public BigInteger call() throws Exception {
+						start.await();
+						return cache.get(TestFibonacciCache.LARGE_POSITION);
+					}
+				}));
+			}
+			start.countDown();
+			final BigInteger expected = results.get(0).get();
+			for (final Future<BigInteger> result : results) {
+				Assert.assertSame(expected, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertEquals(cache.toString(), 1, cache.getMisses());
+		Assert.assertEquals(cache.toString(), 15, cache.getHits() + cache.getInFlightWaits());
+	}
+
+	@Test
+	public void testMemoryBudgetEvictsLeastRecentlyUsed() throws Exception {
+		final FibonacciCache cache = new FibonacciCache(10000);	// each pair near 20000 is about 3KB
+		for (int position=20000; position<=30000; position+=1000) {
+			cache.get(position);
+			Assert.assertTrue(cache.toString(), cache.getBytes() <= cache.getMaxBytes());
+		}
+		Assert.assertTrue(cache.toString(), cache.getEvictions() > 0);
+		Assert.assertTrue(cache.toString(), cache.getSize() < 11);
+		final long misses = cache.getMisses();
+		cache.get(30000);	// most recent, still cached
+		Assert.assertEquals(misses, cache.getMisses());
+		cache.get(20000);	// least recent, evicted
+		Assert.assertEquals(misses + 1, cache.getMisses());
+		final FibonacciCache tiny = new FibonacciCache(1);
+		Assert.assertEquals(FibonacciBigCalculator.computeUsingDoubling(100), tiny.get(100));	// too large to cache, still computed
+		Assert.assertEquals(0, tiny.getSize());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidParameterZero() {
+		new FibonacciCache(1000).get(0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidMaxBytes() {
+		new FibonacciCache(0);
+	}
+}
@@ -96,6 +96,29 @@ public class TestFibonacciIntCalculator {
 		FibonacciIntCalculator.computeUsingRecursion(FibonacciIntCalculator.MAX_POSITION_USING_INT+1);	// Expect Overflow
 	}
 
+	@Test
+	public void testFibonacciIntOverflowMessageSameForAllMethods() {
+		final int position = FibonacciIntCalculator.MAX_POSITION_USING_INT + 1;
+		try {
+			FibonacciIntCalculator.computeUsingLoop(position);
+			Assert.fail("Expected ArithmeticException");
+		} catch(ArithmeticException e) {
+			Assert.assertEquals("integer overflow", e.getMessage());
+		}
+		try {
+			FibonacciIntCalculator.computeUsingRecursion(position);
+			Assert.fail("Expected ArithmeticException");
+		} catch(ArithmeticException e) {
+			Assert.assertEquals("integer overflow", e.getMessage());
+		}
+		try {
+			FibonacciIntCalculator.computeFibonacciNumberUsingLookup(position);
+			Assert.fail("Expected ArithmeticException");
+		} catch(ArithmeticException e) {
+			Assert.assertEquals("integer overflow", e.getMessage());
+		}
+	}
+
 	@Test(expected=ArithmeticException.class)
 	public void testFibonacciLookupIntOverflowAfterPosition46() {
 		Assert.assertEquals(FibonacciIntCalculator.FIRST_46_FIBONACCI_NUMBERS[FibonacciIntCalculator.MAX_POSITION_USING_INT], FibonacciIntCalculator.computeFibonacciNumberUsingLookup(FibonacciIntCalculator.MAX_POSITION_USING_INT));	// Expect OK
@@ -0,0 +1,93 @@
+package org.justin.fibonacci;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+@SuppressWarnings("static-method")
+public class TestFibonacciLongCalculator {
+	@Test
+	public void testFibonacciTableMatchesIntAndBig() throws Exception {
+		for (int position=1; position<=FibonacciIntCalculator.MAX_POSITION_USING_INT; position++) {
+			Assert.assertEquals(FibonacciIntCalculator.FIRST_46_FIBONACCI_NUMBERS[position], FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position]);
+		}
+		for (int position=1; position<=FibonacciLongCalculator.MAX_POSITION_USING_LONG; position++) {
+			Assert.assertEquals(FibonacciBigCalculator.computeUsingDoubling(position), BigInteger.valueOf(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position]));
+		}
+		Assert.assertEquals(7540113804746346429L, FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[FibonacciLongCalculator.MAX_POSITION_USING_LONG]);
+		Assert.assertTrue(FibonacciBigCalculator.computeUsingDoubling(FibonacciLongCalculator.MAX_POSITION_USING_LONG+1).bitLength() > 63);	// next one does not fit
+	}
+
+	@Test
+	public void testFibonacciLoopValues() throws Exception {
+		for (int position=1; position<=FibonacciLongCalculator.MAX_POSITION_USING_LONG; position++) {
+			Assert.assertEquals(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position], FibonacciLongCalculator.computeUsingLoop(position));
+		}
+	}
+
+	@Test
+	public void testFibonacciRecursionValues() throws Exception {
+		for (int position=1; position<=FibonacciLongCalculator.MAX_POSITION_USING_LONG; position++) {
+			Assert.assertEquals(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position], FibonacciLongCalculator.computeUsingRecursion(position));
+		}
+	}
+
+	@Test
+	public void testFibonacciHalvingRecursionValues() throws Exception {
+		for (int position=1; position<=FibonacciLongCalculator.MAX_POSITION_USING_LONG; position++) {
+			Assert.assertEquals(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position], FibonacciLongCalculator.computeUsingHalvingRecursion(position));
+		}
+	}
+
+	@Test
+	public void testFibonacciLookupValues() throws Exception {
+		for (int position=1; position<=FibonacciLongCalculator.MAX_POSITION_USING_LONG; position++) {
+			Assert.assertEquals(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position], FibonacciLongCalculator.computeFibonacciNumberUsingLookup(position));
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFibonacciLoopInvalidParameterZero() {
+		FibonacciLongCalculator.computeUsingLoop(0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFibonacciRecursionInvalidParameterZero() {
+		FibonacciLongCalculator.computeUsingRecursion(0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFibonacciLookupInvalidParameterNegative() {
+		FibonacciLongCalculator.computeFibonacciNumberUsingLookup(-1);
+	}
+
+	@Test(expected=ArithmeticException.class)
+	public void testFibonacciLoopLongOverflowAfterPosition92() {
+		Assert.assertEquals(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[FibonacciLongCalculator.MAX_POSITION_USING_LONG], FibonacciLongCalculator.computeUsingLoop(FibonacciLongCalculator.MAX_POSITION_USING_LONG));	// Expect OK
+		FibonacciLongCalculator.computeUsingLoop(FibonacciLongCalculator.MAX_POSITION_USING_LONG+1);	// Expect Overflow
+	}
+
+	@Test(expected=ArithmeticException.class)
+	public void testFibonacciRecursionLongOverflowAfterPosition92() {
+		Assert.assertEquals(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[FibonacciLongCalculator.MAX_POSITION_USING_LONG], FibonacciLongCalculator.computeUsingRecursion(FibonacciLongCalculator.MAX_POSITION_USING_LONG));	// Expect OK
+		FibonacciLongCalculator.computeUsingRecursion(FibonacciLongCalculator.MAX_POSITION_USING_LONG+1);	// Expect Overflow
+	}
+
+	@Test(expected=ArithmeticException.class)
+	public void testFibonacciHalvingRecursionLongOverflowAfterPosition92() {
+		Assert.assertEquals(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[FibonacciLongCalculator.MAX_POSITION_USING_LONG], FibonacciLongCalculator.computeUsingHalvingRecursion(FibonacciLongCalculator.MAX_POSITION_USING_LONG));	// Expect OK
+		FibonacciLongCalculator.computeUsingHalvingRecursion(FibonacciLongCalculator.MAX_POSITION_USING_LONG+1);	// Expect Overflow
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFibonacciHalvingRecursionInvalidParameterZero() {
+		FibonacciLongCalculator.computeUsingHalvingRecursion(0);
+	}
+
+	@Test(expected=ArithmeticException.class)
+	public void testFibonacciLookupLongOverflowAfterPosition92() {
+		Assert.assertEquals(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[FibonacciLongCalculator.MAX_POSITION_USING_LONG], FibonacciLongCalculator.computeFibonacciNumberUsingLookup(FibonacciLongCalculator.MAX_POSITION_USING_LONG));	// Expect OK
+		FibonacciLongCalculator.computeFibonacciNumberUsingLookup(FibonacciLongCalculator.MAX_POSITION_USING_LONG+1);	// Expect Overflow
+	}
+}
@@ -67,6 +67,57 @@ public class TestFibonacciMain {
 		}
 	}
 
+	@Test
+	public void testFibonacciDoubling() throws Exception {
+		for (int position=1; position<=FibonacciIntCalculator.FIRST_46_FIBONACCI_NUMBERS.length-1; position++) {
+			FibonacciMain.main(new String[]{Integer.toString(position), "doubling"});	// Expect OK
+		}
+		FibonacciMain.main(new String[]{"1000", "doubling"});	// Expect OK, no overflow
+	}
+
+	@Test
+	public void testFibonacciLongType() throws Exception {
+		for (final String method : new String[]{"loop", "recursion", "lookup"}) {
+			for (int position=1; position<=FibonacciLongCalculator.MAX_POSITION_USING_LONG; position++) {
+				FibonacciMain.main(new String[]{Integer.toString(position), method, "long"});	// Expect OK, 47 to 92 overflow int
+			}
+		}
+		FibonacciMain.main(new String[]{"46", "loop", "int"});	// Expect OK
+		FibonacciMain.main(new String[]{"93", "doubling", "big"});	// Expect OK
+		FibonacciMain.main(new String[]{"100000", "recursion", "big"});	// Expect OK, stack depth 17
+	}
+
+	@Test(expected=ArithmeticException.class)
+	public void testNinetyThreeLong() throws Exception {
+		FibonacciMain.main(new String[]{"92", "lookup", "long"});	// Expect OK
+		FibonacciMain.main(new String[]{"93", "lookup", "long"});	// Expect Overflow
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnknownTypeParameter() throws Exception {
+		FibonacciMain.main(new String[]{"1", "loop", "short"});
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testNullTypeParameter() throws Exception {
+		FibonacciMain.main(new String[]{"1", "loop", null});
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testDoublingLongType() throws Exception {
+		FibonacciMain.main(new String[]{"1", "doubling", "long"});
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testLoopBigType() throws Exception {
+		FibonacciMain.main(new String[]{"1", "loop", "big"});
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testTooManyParameters() throws Exception {
+		FibonacciMain.main(new String[]{"1", "loop", "int", "extra"});
+	}
+
 	@Test(expected=IllegalArgumentException.class)
 	public void testNoParameters() throws Exception {
 		FibonacciMain.main(new String[]{});
@@ -122,6 +173,11 @@ public class TestFibonacciMain {
 		FibonacciMain.main(new String[]{"-1", "lookup"});
 	}
 
+	@Test(expected=IllegalArgumentException.class)
+	public void testNegativeOneDoubling() throws Exception {
+		FibonacciMain.main(new String[]{"-1", "doubling"});
+	}
+
 	@Test(expected=IllegalArgumentException.class)
 	public void testZeroNoMethod() throws Exception {
 		FibonacciMain.main(new String[]{"0"});
@@ -142,6 +198,11 @@ public class TestFibonacciMain {
 		FibonacciMain.main(new String[]{"0", "lookup"});
 	}
 
+	@Test(expected=IllegalArgumentException.class)
+	public void testZeroDoubling() throws Exception {
+		FibonacciMain.main(new String[]{"0", "doubling"});
+	}
+
 	@Test(expected=ArithmeticException.class)
 	public void testFortySevenNoMethod() throws Exception {
 		FibonacciMain.main(new String[]{"46"});	// Expect OK
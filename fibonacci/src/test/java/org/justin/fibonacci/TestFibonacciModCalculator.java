@@ -0,0 +1,92 @@
+package org.justin.fibonacci;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+@SuppressWarnings("static-method")
+public class TestFibonacciModCalculator {
+	private static final int  BATCH_SIZE     = 100000;
+	private static final long LARGE_POSITION = 1000000000000000000L;	// 10^18
+
+	@Test
+	public void testMatchesBigIntegerRemainder() throws Exception {
+		final long[] moduli = {1, 2, 3, 10, 1000, 1024, 1025, 1000000007L, 3037000499L, 3037000500L, 1L << 62, Long.MAX_VALUE};
+		for (final long modulus : moduli) {
+			final BigInteger m = BigInteger.valueOf(modulus);
+			for (final int position : new int[]{1, 2, 3, 46, 47, 92, 93, 1000, 4097, 12345}) {
+				final long expected = FibonacciBigCalculator.computeUsingDoubling(position).mod(m).longValue();
+				Assert.assertEquals(position + " mod " + modulus, expected, FibonacciModCalculator.computeModulo(position, modulus));
+				Assert.assertEquals(position + " mod " + modulus, expected, FibonacciModCalculator.computeUsingDoubling(position, modulus));	// bypass the Pisano table
+			}
+		}
+	}
+
+	@Test
+	public void testLargePositions() throws Exception {
+		Assert.assertEquals(0, FibonacciModCalculator.computeModulo(60 * 1000000000L, 10));	// Pisano period of 10 is 60
+		Assert.assertEquals(875, FibonacciModCalculator.computeModulo(TestFibonacciModCalculator.LARGE_POSITION, 1000));	// last three digits repeat every 1500
+		Assert.assertEquals(209783453L, FibonacciModCalculator.computeModulo(TestFibonacciModCalculator.LARGE_POSITION, 1000000007L));
+		Assert.assertEquals(FibonacciModCalculator.computeModulo(Long.MAX_VALUE, 1000), FibonacciModCalculator.computeUsingDoubling(Long.MAX_VALUE, 1000));
+	}
+
+	@Test
+	public void testMultiplyHighAndMod() throws Exception {
+		final Random random = new Random(1);
+		for (int i=0; i<10000; i++) {
+			final long m = (random.nextLong() >>> 1) | 1L;
+			final long a = (random.nextLong() >>> 1) % m;
+			final long b = (random.nextLong() >>> 1) % m;
+			final BigInteger product = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b));
+			Assert.assertEquals(product.shiftRight(64).longValue(), FibonacciModCalculator.multiplyHigh(a, b));
+			Assert.assertEquals(product.mod(BigInteger.valueOf(m)).longValue(), FibonacciModCalculator.multiplyMod(a, b, m));
+			Assert.assertEquals(BigInteger.valueOf(a).add(BigInteger.valueOf(b)).mod(BigInteger.valueOf(m)).longValue(), FibonacciModCalculator.addMod(a, b, m));
+		}
+	}
+
+	@Test
+	public void testBatchMatchesSingleQueries() throws Exception {
+		final Random random = new Random(2);
+		final long[] positions = new long[TestFibonacciModCalculator.BATCH_SIZE];
+		final long[] moduli    = new long[TestFibonacciModCalculator.BATCH_SIZE];
+		for (int i=0; i<positions.length; i++) {
+			positions[i] = 1 + ((random.nextLong() >>> 1) % TestFibonacciModCalculator.LARGE_POSITION);
+			moduli[i]    = (0 == (i & 1)) ? 1 + random.nextInt(1000) : 1 + (random.nextLong() >>> 1);
+		}
+		final long[] expected = new long[positions.length];
+		for (int i=0; i<positions.length; i++) {
+			expected[i] = FibonacciModCalculator.computeModulo(positions[i], moduli[i]);
+		}
+		final long[] results = FibonacciModCalculator.computeModulo(positions, moduli);
+		Assert.assertArrayEquals(expected, results);
+		Assert.assertEquals(0, FibonacciModCalculator.computeModulo(new long[0], new long[0]).length);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidParameterZero() {
+		FibonacciModCalculator.computeModulo(0, 10);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidModulusZero() {
+		FibonacciModCalculator.computeModulo(10, 0);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidBatchLengths() {
+		FibonacciModCalculator.computeModulo(new long[2], new long[3]);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidBatchPosition() {
+		final long[] positions = new long[FibonacciModCalculator.BATCH_THRESHOLD * 4];
+		final long[] moduli    = new long[positions.length];
+		Arrays.fill(positions, 5);
+		Arrays.fill(moduli, 7);
+		positions[positions.length - 1] = -1;
+		FibonacciModCalculator.computeModulo(positions, moduli);	// thrown on a pool thread, rethrown to the caller
+	}
+}
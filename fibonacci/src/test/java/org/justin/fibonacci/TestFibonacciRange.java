@@ -0,0 +1,108 @@
+package org.justin.fibonacci;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+@SuppressWarnings("static-method")
+public class TestFibonacciRange {
+	private static final int RANGE_START  = 100000;
+	private static final int RANGE_LENGTH = 2000;
+
+	@Test
+	public void testIteratorMatchesDoubling() throws Exception {
+		final Iterator<BigInteger> iterator = FibonacciRange.iterator(1, FibonacciLongCalculator.MAX_POSITION_USING_LONG);
+		for (int position=1; position<=FibonacciLongCalculator.MAX_POSITION_USING_LONG; position++) {
+			Assert.assertTrue(iterator.hasNext());
+			Assert.assertEquals(BigInteger.valueOf(FibonacciLongCalculator.FIRST_92_FIBONACCI_NUMBERS[position]), iterator.next());
+		}
+		Assert.assertFalse(iterator.hasNext());
+		try {
+			iterator.next();
+			Assert.fail("Expected NoSuchElementException");
+		} catch(NoSuchElementException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFillLargeRangeMatchesDoubling() throws Exception {
+		final BigInteger[] buffer = new BigInteger[TestFibonacciRange.RANGE_LENGTH];
+		FibonacciRange.fill(TestFibonacciRange.RANGE_START, buffer, 0, buffer.length);
+		for (int i=0; i<buffer.length; i+=100) {
+			Assert.assertEquals(FibonacciBigCalculator.computeUsingDoubling(TestFibonacciRange.RANGE_START + i), buffer[i]);
+		}
+		Assert.assertEquals(FibonacciBigCalculator.computeUsingDoubling(TestFibonacciRange.RANGE_START + buffer.length - 1), buffer[buffer.length - 1]);
+	}
+
+	@Test
+	public void testStreamAndFillOffset() throws Exception {
+		final List<BigInteger> streamed = FibonacciRange.stream(40, 50).collect(Collectors.toList());
+		Assert.assertEquals(11, streamed.size());
+		final BigInteger[] buffer = new BigInteger[15];
+		FibonacciRange.fill(40, buffer, 2, 11);
+		Assert.assertNull(buffer[1]);
+		Assert.assertNull(buffer[13]);
+		for (int i=0; i<11; i++) {
+			Assert.assertEquals(streamed.get(i), buffer[2 + i]);
+		}
+		Assert.assertEquals(BigInteger.valueOf(5), FibonacciRange.stream(5, 5).findFirst().get());
+		Assert.assertEquals(50, FibonacciRange.stream(1, Integer.MAX_VALUE - 1).limit(50).count());	// lazy, only 50 are computed
+	}
+
+	@Test
+	public void testWriteMatchesToString() throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final long bytes = FibonacciRange.write(5000, 5400, Channels.newChannel(out));	// about 420KB, several buffer flushes
+		final String expected = FibonacciRange.stream(5000, 5400).map(BigInteger::toString).collect(Collectors.joining("\n", "", "\n"));
+		Assert.assertEquals(expected.length(), bytes);
+		Assert.assertEquals(expected, new String(out.toByteArray(), StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void testMainRangeFile() throws Exception {
+		final File file = File.createTempFile("fibonacci", ".txt");
+		try {
+			FibonacciMain.main(new String[]{"-range", "1", "10", file.getAbsolutePath()});
+			Assert.assertEquals("1\n1\n2\n3\n5\n8\n13\n21\n34\n55\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII));
+		} finally {
+			file.delete();
+		}
+		FibonacciMain.main(new String[]{"-range", "90", "93"});	// Expect OK, standard output
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidRangeReversed() {
+		FibonacciRange.iterator(10, 9);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidRangeZero() {
+		FibonacciRange.stream(0, 9);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidFillLength() {
+		FibonacciRange.fill(1, new BigInteger[5], 2, 4);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMainRangeMissingEnd() throws Exception {
+		FibonacciMain.main(new String[]{"-range", "1"});
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMainRangeNonInteger() throws Exception {
+		FibonacciMain.main(new String[]{"-range", "1", "abc"});
+	}
+}
@@ -0,0 +1,99 @@
+package org.justin.fibonacci;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+@SuppressWarnings("static-method")
+public class TestFibonacciServer {
+	@Test
+	public void testPipelinedBatchesAnsweredInOrder() throws Exception {
+		final int numLines = 500;
+		final StringBuilder input = new StringBuilder();
+		for (int i=1; i<=numLines; i++) {
+			if (0 == i % 50) {
+				input.append(i).append(" 0\n");	// invalid position fails the whole batch
+			} else {
+				input.append(i).append(", ").append(i + 1).append(' ').append(10 * i).append(" 1\n");
+			}
+		}
+		try (final FibonacciServer server = new FibonacciServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2)) {
+			try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+				socket.getOutputStream().write(input.toString().getBytes(StandardCharsets.US_ASCII));	// write everything before reading anything
+				socket.shutdownOutput();
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				for (int i=1; i<=numLines; i++) {
+					final String expected;
+					if (0 == i % 50) {
+						expected = FibonacciServer.ERROR_PREFIX + "Invalid Fibonacci position 0. Must be 1 to " + FibonacciServer.MAX_POSITION + ".";
+					} else {
+						expected = FibonacciBigCalculator.computeUsingDoubling(i) + " " + FibonacciBigCalculator.computeUsingDoubling(i + 1) + " " + FibonacciBigCalculator.computeUsingDoubling(10 * i) + " 1";
+					}
+					Assert.assertEquals(expected, reader.readLine());
+				}
+				Assert.assertNull(reader.readLine());	// server closes after answering everything
+			}
+			Assert.assertEquals(numLines, server.getBatches());
+			Assert.assertTrue(server.getSweeps() + " sweeps", server.getSweeps() < numLines);	// buffered lines were coalesced
+		}
+	}
+
+	@Test
+	public void testPartialLineDoesNotDelayCompleteLine() throws Exception {
+		try (final FibonacciServer server = new FibonacciServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1)) {
+			try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+				socket.setSoTimeout(10000);	// fail instead of hanging if the first batch waits for the second line
+				final OutputStream output = socket.getOutputStream();
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+				output.write("5 6\n7 ".getBytes(StandardCharsets.US_ASCII));	// one full line, and half of the next
+				output.flush();
+				Assert.assertEquals("5 8", reader.readLine());
+				output.write("8\n".getBytes(StandardCharsets.US_ASCII));
+				output.flush();
+				Assert.assertEquals("13 21", reader.readLine());
+			}
+		}
+	}
+
+	@Test
+	public void testLoadGenerator() throws Exception {
+		try (final FibonacciServer server = new FibonacciServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2)) {
+			final FibonacciLoadGenerator generator = new FibonacciLoadGenerator(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()), 2, 200, 50, 5000, 4);
+			final FibonacciLoadGenerator.Result result = generator.run();
+			Assert.assertEquals(400, result.getBatches());
+			Assert.assertEquals(20000, result.getQueries());
+			Assert.assertEquals(0, result.getErrors());
+			Assert.assertTrue(result.getLatencyNanos(50D) <= result.getLatencyNanos(99D));
+			Assert.assertTrue(result.getQueriesPerSecond() > 0D);
+			Assert.assertEquals(400, server.getBatches());
+			Assert.assertEquals(20000, server.getQueries());
+		}
+	}
+
+	@Test
+	public void testMainLoadTest() throws Exception {
+		FibonacciMain.main(new String[]{"-loadtest", "1", "10", "20", "1000"});	// Expect OK
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testParseInvalidPosition() {
+		FibonacciServer.parse("1 2 abc");
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testParseTooLarge() {
+		FibonacciServer.parse(Integer.toString(FibonacciServer.MAX_POSITION + 1));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMainServerMissingPort() throws Exception {
+		FibonacciMain.main(new String[]{"-server"});
+	}
+}
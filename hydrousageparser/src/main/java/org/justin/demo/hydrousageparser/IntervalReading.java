@@ -0,0 +1,51 @@
+package org.justin.demo.hydrousageparser;
+
+import java.util.Date;
+
+/**
+ * One Green Button IntervalReading: timePeriod start (epoch seconds) and duration (seconds), cost, and value (usage).
+ * Absent fields are MISSING.
+ */
+public final class IntervalReading {
+	public static final long MISSING = Long.MIN_VALUE;
+
+	private final long start;
+	private final long duration;
+	private final long cost;
+	private final long value;
+
+	public IntervalReading(final long start, final long duration, final long cost, final long value) {
+		this.start    = start;
+		this.duration = duration;
+		this.cost     = cost;
+		this.value    = value;
+	}
+
+	public long getStart() {
+		return this.start;
+	}
+
+	public long getDuration() {
+		return this.duration;
+	}
+
+	public long getCost() {
+		return this.cost;
+	}
+
+	public long getValue() {
+		return this.value;
+	}
+
+	/**
+	 * Same line as Main.printHourly: start,cost,date,$dollars
+	 */
+	public String toHourlyLine() {
+		return this.start + "," + this.cost + "," + new Date(this.start*1000L) + ",$" + (this.cost / 10000F);
+	}
+
+	@Override
+	public String toString() {
+		return "IntervalReading[start=" + this.start + ", duration=" + this.duration + ", cost=" + this.cost + ", value=" + this.value + "]";
+	}
+}
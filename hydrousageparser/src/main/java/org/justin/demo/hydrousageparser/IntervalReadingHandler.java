@@ -0,0 +1,9 @@
+package org.justin.demo.hydrousageparser;
+
+/**
+ * Callback for IntervalReadingParser, called once per IntervalReading in document order.
+ */
+@FunctionalInterface
+public interface IntervalReadingHandler {
+	void handle(IntervalReading intervalReading) throws Exception;
+}
@@ -0,0 +1,95 @@
+package org.justin.demo.hydrousageparser;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming Green Button parser built on XMLStreamReader. Each IntervalReading is passed to the handler as soon as its
+ * end tag is read, and nothing else is kept, so memory stays constant regardless of file size. Elements are matched by
+ * local name, so prefixed (espi:IntervalReading) and default namespace documents both work.
+ * DTDs and external entities are disabled.
+ */
+public final class IntervalReadingParser {
+	private static final XMLInputFactory XML_INPUT_FACTORY = IntervalReadingParser.createXmlInputFactory();
+
+	private IntervalReadingParser() {
+		// declare private constructor to prevent instantiation of this class
+	}
+
+	/**
+	 * Parse the stream and return the number of IntervalReading elements passed to the handler. The stream is not closed.
+	 */
+	public static long parse(final InputStream inputStream, final IntervalReadingHandler handler) throws Exception {
+		final XMLStreamReader reader = IntervalReadingParser.XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+		try {
+			long count = 0;
+			while (reader.hasNext()) {
+				if ((XMLStreamConstants.START_ELEMENT == reader.next()) && "IntervalReading".equals(reader.getLocalName())) {
+					handler.handle(IntervalReadingParser.parseIntervalReading(reader));
+					count++;
+				}
+			}
+			return count;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read from the IntervalReading start tag to its end tag. Only direct children and timePeriod children are used, ReadingQuality is skipped.
+	 */
+	private static IntervalReading parseIntervalReading(final XMLStreamReader reader) throws XMLStreamException {
+		long start    = IntervalReading.MISSING;
+		long duration = IntervalReading.MISSING;
+		long cost     = IntervalReading.MISSING;
+		long value    = IntervalReading.MISSING;
+		int depth = 1;	// inside IntervalReading
+		boolean inTimePeriod = false;
+		while (depth > 0) {
+			final int event = reader.next();
+			if (XMLStreamConstants.START_ELEMENT == event) {
+				final String name = reader.getLocalName();
+				if ((1 == depth) && "cost".equals(name)) {
+					cost = IntervalReadingParser.parseLong(reader);
+				} else if ((1 == depth) && "value".equals(name)) {
+					value = IntervalReadingParser.parseLong(reader);
+				} else if (inTimePeriod && (2 == depth) && "start".equals(name)) {
+					start = IntervalReadingParser.parseLong(reader);
+				} else if (inTimePeriod && (2 == depth) && "duration".equals(name)) {
+					duration = IntervalReadingParser.parseLong(reader);
+				} else {
+					if ((1 == depth) && "timePeriod".equals(name)) {
+						inTimePeriod = true;
+					}
+					depth++;	// skipped element, ex: ReadingQuality
+				}
+			} else if (XMLStreamConstants.END_ELEMENT == event) {
+				depth--;
+				if (1 == depth) {
+					inTimePeriod = false;
+				}
+			}
+		}
+		return new IntervalReading(start, duration, cost, value);
+	}
+
+	/**
+	 * Parse the text of the current element, ignoring surrounding whitespace such as pretty-printing inside the tags.
+	 * getElementText() consumes the end tag.
+	 */
+	private static long parseLong(final XMLStreamReader reader) throws XMLStreamException {
+		return Long.parseLong(reader.getElementText().trim());
+	}
+
+	private static XMLInputFactory createXmlInputFactory() {
+		final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+		xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		return xmlInputFactory;
+	}
+}
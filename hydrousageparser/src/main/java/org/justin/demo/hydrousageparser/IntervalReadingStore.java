@@ -0,0 +1,228 @@
+package org.justin.demo.hydrousageparser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Columnar in-memory store of one meter's interval readings, appended in start order, for repeated time window queries.
+ * Readings are held in chunks of primitive arrays instead of one object per reading:
+ * - start:    first start of the chunk as a long, then int deltas from the previous start (3600 for hourly readings)
+ * - duration: one value per chunk while every reading has the same duration, else an int array
+ * - cost:     long array
+ * - value:    long array
+ * That is about 20 bytes per reading, versus a few hundred for a DOM IntervalReading element or an object with String fields.
+ * A chunk is closed early when a delta or a changed duration does not fit an int. Each chunk keeps its first and last start, so range scans
+ * skip whole chunks outside the window. Use one store per meter, IntervalReadingParser input from several meters is not in start order.
+ * Implements IntervalReadingHandler, so IntervalReadingParser.parse(inputStream, store) fills it while streaming.
+ */
+public final class IntervalReadingStore implements IntervalReadingHandler {
+	/*package*/ static final int DEFAULT_CHUNK_SIZE = 4096;	// about 80KB per chunk, a year of hourly readings (8760) fills a little over 2 chunks
+
+	private final int         chunkSize;
+	private final List<Chunk> chunks = new ArrayList<>();
+	private Chunk             last   = null;
+	private int               size   = 0;
+
+	/**
+	 * Receives each reading of a range scan as primitives, so scans do not allocate.
+	 */
+	@FunctionalInterface
+	public interface RangeVisitor {
+		void visit(long start, long duration, long cost, long value);
+	}
+
+	public IntervalReadingStore() {
+		this(IntervalReadingStore.DEFAULT_CHUNK_SIZE);
+	}
+
+	/*package*/ IntervalReadingStore(final int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Invalid chunk size. Must be 1 or more.");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public void handle(final IntervalReading intervalReading) {
+		this.add(intervalReading.getStart(), intervalReading.getDuration(), intervalReading.getCost(), intervalReading.getValue());
+	}
+
+	/**
+	 * Append one reading. Throw IllegalArgumentException if start is missing or before the previous start.
+	 */
+	public void add(final long start, final long duration, final long cost, final long value) {
+		if (IntervalReading.MISSING == start) {
+			throw new IllegalArgumentException("Missing start");
+		} else if ((null != this.last) && (start < this.last.lastStart)) {
+			throw new IllegalArgumentException("Start " + start + " is before previous start " + this.last.lastStart + ". Readings must be added in start order.");
+		}
+		if ((null == this.last) || (this.last.size == this.chunkSize) || !this.last.fits(start, duration)) {
+			this.last = new Chunk(this.chunkSize, start, duration);
+			this.chunks.add(this.last);
+		}
+		this.last.add(start, duration, cost, value);
+		this.size++;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Return the reading at index, in start order. For convenience only, scans do not create IntervalReading objects.
+	 */
+	public IntervalReading get(final int index) {
+		if ((index < 0) || (index >= this.size)) {
+			throw new IndexOutOfBoundsException("Index " + index + ", size " + this.size);
+		}
+		int remaining = index;	// chunks closed early are not full, so walk the chunk sizes
+		for (final Chunk candidate : this.chunks) {
+			if (remaining < candidate.size) {
+				return candidate.get(remaining);
+			}
+			remaining -= candidate.size;
+		}
+		throw new IndexOutOfBoundsException("Index " + index + ", size " + this.size);
+	}
+
+	/**
+	 * Visit every reading with fromInclusive <= start < toExclusive, in start order, and return the number visited.
+	 */
+	public int scan(final long fromInclusive, final long toExclusive, final RangeVisitor visitor) {
+		int visited = 0;
+		for (int c=this.firstChunk(fromInclusive); c<this.chunks.size(); c++) {
+			final Chunk chunk = this.chunks.get(c);
+			if (chunk.firstStart >= toExclusive) {
+				break;
+			}
+			long start = chunk.firstStart;
+			for (int i=0; i<chunk.size; i++) {
+				start += chunk.startDeltas[i];
+				if (start >= toExclusive) {
+					return visited;
+				} else if (start >= fromInclusive) {
+					visitor.visit(start, chunk.duration(i), chunk.costs[i], chunk.values[i]);
+					visited++;
+				}
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * Sum of costs with fromInclusive <= start < toExclusive. Missing costs are skipped.
+	 */
+	public long sumCost(final long fromInclusive, final long toExclusive) {
+		final long[] sum = new long[1];
+		this.scan(fromInclusive, toExclusive, (start, duration, cost, value) -> {
+			if (IntervalReading.MISSING != cost) {
+				sum[0] += cost;
+			}
+		});
+		return sum[0];
+	}
+
+	/**
+	 * Sum of values with fromInclusive <= start < toExclusive. Missing values are skipped.
+	 */
+	public long sumValue(final long fromInclusive, final long toExclusive) {
+		final long[] sum = new long[1];
+		this.scan(fromInclusive, toExclusive, (start, duration, cost, value) -> {
+			if (IntervalReading.MISSING != value) {
+				sum[0] += value;
+			}
+		});
+		return sum[0];
+	}
+
+	/**
+	 * Approximate heap bytes of the arrays and chunks, including unused capacity of the last chunk.
+	 */
+	public long getMemoryBytes() {
+		long bytes = 16L + 4L * this.chunks.size();	// ASSUMPTION: 16 byte array header, 4 byte compressed references
+		for (final Chunk chunk : this.chunks) {
+			bytes += chunk.getMemoryBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Index of the last chunk whose first start is before fromInclusive, so readings at fromInclusive are not skipped even when equal starts span two chunks.
+	 */
+	private int firstChunk(final long fromInclusive) {
+		int low  = 0;
+		int high = this.chunks.size() - 1;
+		int result = 0;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			if (this.chunks.get(middle).firstStart < fromInclusive) {
+				result = middle;
+				low    = middle + 1;
+			} else {
+				high   = middle - 1;
+			}
+		}
+		return result;
+	}
+
+	private static final class Chunk {
+		/*package*/ final long   firstStart;
+		/*package*/ final int[]  startDeltas;	// from the previous start, the first delta is 0
+		/*package*/ final long[] costs;
+		/*package*/ final long[] values;
+		/*package*/ final long   commonDuration;
+		/*package*/ int[]        durations = null;	// allocated when a duration differs from commonDuration
+		/*package*/ long         lastStart;
+		/*package*/ int          size      = 0;
+
+		/*package*/ Chunk(final int capacity, final long firstStart, final long commonDuration) {
+			this.firstStart     = firstStart;
+			this.lastStart      = firstStart;
+			this.commonDuration = commonDuration;
+			this.startDeltas    = new int[capacity];
+			this.costs          = new long[capacity];
+			this.values         = new long[capacity];
+		}
+
+		/**
+		 * True if the start delta fits an int, and the duration either equals commonDuration or both fit an int.
+		 */
+		/*package*/ boolean fits(final long start, final long duration) {
+			return (start - this.lastStart <= Integer.MAX_VALUE) && ((duration == this.commonDuration) || (((int) duration == duration) && ((int) this.commonDuration == this.commonDuration)));
+		}
+
+		/*package*/ void add(final long start, final long duration, final long cost, final long value) {
+			if ((null == this.durations) && (duration != this.commonDuration)) {
+				this.durations = new int[this.startDeltas.length];
+				for (int i=0; i<this.size; i++) {
+					this.durations[i] = (int) this.commonDuration;
+				}
+			}
+			if (null != this.durations) {
+				this.durations[this.size] = (int) duration;
+			}
+			this.startDeltas[this.size] = (int) (start - this.lastStart);
+			this.costs[this.size]       = cost;
+			this.values[this.size]      = value;
+			this.lastStart              = start;
+			this.size++;
+		}
+
+		/*package*/ long duration(final int index) {
+			return (null == this.durations) ? this.commonDuration : this.durations[index];
+		}
+
+		/*package*/ IntervalReading get(final int index) {
+			long start = this.firstStart;
+			for (int i=0; i<=index; i++) {
+				start += this.startDeltas[i];
+			}
+			return new IntervalReading(start, this.duration(index), this.costs[index], this.values[index]);
+		}
+
+		/*package*/ long getMemoryBytes() {
+			final long arrays = 4L * this.startDeltas.length + 8L * this.costs.length + 8L * this.values.length + ((null == this.durations) ? 0L : 4L * this.durations.length);
+			return 48L + 4L * 16L + arrays;	// ASSUMPTION: chunk object about 48 bytes, plus 16 byte header per array
+		}
+	}
+}
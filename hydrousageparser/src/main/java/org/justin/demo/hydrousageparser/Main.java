@@ -1,6 +1,9 @@
 package org.justin.demo.hydrousageparser;
 
+import java.io.BufferedInputStream;
 import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
 import java.util.Date;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -12,26 +15,63 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+/**
+ * Print start,cost,date,$dollars for each IntervalReading of a Green Button DownLoadMyData export.
+ * Usage: [file] [stax|dom]. Default parser is stax, which streams the file in constant memory.
+ * dom loads the whole Document first, and is kept to compare output.
+ */
 public class Main {
 	private static final Logger LOG = Logger.getLogger(Main.class.getName());
+	private static final String DEFAULT_FILE = "target/classes/DownLoadMyData-Hourly-2017.xml";
 
 	private Main() {
 		// declare private constructor to prevent instantiation of this class
 	}
 
 	public static void main(final String[] args) throws Exception {
+		final String file   = (args.length >= 1) ? args[0] : DEFAULT_FILE;
+		final String parser = (args.length >= 2) ? args[1] : "stax";
+		try (final InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+			if ("stax".equals(parser)) {
+				printHourlyUsingStax(is, System.out);
+			} else if ("dom".equals(parser)) {
+				printHourlyUsingDom(is, System.out);
+			} else {
+				throw new IllegalArgumentException("Invalid parser " + parser + ". Expect: [file] [stax|dom]");
+			}
+		}
+	}
+
+	/*package*/ static void printHourlyUsingDom(final InputStream is, final PrintStream out) throws Exception {
 		final DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
 		final DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
 		final Document document;
-		try (final FileInputStream fis = new FileInputStream("target/classes/DownLoadMyData-Hourly-2017.xml")) {
-			document = documentBuilder.parse(fis);
+		try {
+			document = documentBuilder.parse(is);
 		} catch (Exception ex) {
 			throw new Exception("Unable to parse XML file.", ex);	// NOSONAR Define and throw a dedicated exception instead of using a generic one.
 		}
 		LOG.log(Level.INFO, "Parsed OK");
 //		recursivePrintNodeList("", document.getChildNodes());
 		final NodeList IntervalReadings = document.getElementsByTagName("IntervalReading");
-		printHourly(IntervalReadings);
+		printHourly(IntervalReadings, out);
+	}
+
+	/**
+	 * Same output as printHourlyUsingDom, without building a Document. Readings without a cost or start are skipped, like printHourly.
+	 */
+	/*package*/ static void printHourlyUsingStax(final InputStream is, final PrintStream out) throws Exception {
+		final long count;
+		try {
+			count = IntervalReadingParser.parse(is, intervalReading -> {
+				if ((IntervalReading.MISSING != intervalReading.getCost()) && (IntervalReading.MISSING != intervalReading.getStart())) {
+					out.println(intervalReading.toHourlyLine());
+				}
+			});
+		} catch (Exception ex) {
+			throw new Exception("Unable to parse XML file.", ex);	// NOSONAR Define and throw a dedicated exception instead of using a generic one.
+		}
+		LOG.log(Level.INFO, "Parsed OK, {0} interval readings", Long.valueOf(count));
 	}
 
 	private static void recursivePrintNodeList(final String indent, final NodeList nodeList) {
@@ -45,7 +85,7 @@ public class Main {
 		}
 	}
 
-	private static void printHourly(final NodeList intervalReadings) {
+	private static void printHourly(final NodeList intervalReadings, final PrintStream out) {
 		final int numIntervalReadings = intervalReadings.getLength();
 		for (int i=0; i<numIntervalReadings; i++) {
 			final Node intervalReading = intervalReadings.item(i);
@@ -86,7 +126,7 @@ public class Main {
 			if ((null != costValue) && (null != timePeriodValue)) {
 				final float costValueDollars = Long.parseLong(costValue) / 10000F;
 				final long startValueMillis  = Long.parseLong(timePeriodValue);
-				System.out.println(timePeriodValue + "," + costValue + "," +  new Date(startValueMillis*1000L) + ",$" + costValueDollars);
+				out.println(timePeriodValue + "," + costValue + "," +  new Date(startValueMillis*1000L) + ",$" + costValueDollars);
 				costValue = null;
 				timePeriodValue = null;
 			}
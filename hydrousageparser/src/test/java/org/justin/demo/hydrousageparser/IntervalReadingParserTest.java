@@ -0,0 +1,91 @@
+package org.justin.demo.hydrousageparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings("static-method")
+public final class IntervalReadingParserTest {
+	private static final long START = 1483246800L;	// 2017-01-01T00:00:00-05:00
+
+	@Test
+	public void testStaxOutputMatchesDom() throws Exception {
+		final byte[] xml = IntervalReadingParserTest.generate(2, 5000);
+		final ByteArrayOutputStream dom  = new ByteArrayOutputStream();
+		final ByteArrayOutputStream stax = new ByteArrayOutputStream();
+		Main.printHourlyUsingDom(new ByteArrayInputStream(xml), new PrintStream(dom, true, "UTF-8"));
+		Main.printHourlyUsingStax(new ByteArrayInputStream(xml), new PrintStream(stax, true, "UTF-8"));
+		final String expected = new String(dom.toByteArray(), StandardCharsets.UTF_8);
+		Assert.assertEquals(10000, expected.split("\n").length);
+		Assert.assertEquals(expected, new String(stax.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testIntervalReadingFields() throws Exception {
+		final List<IntervalReading> intervalReadings = new ArrayList<>();
+		final long count = IntervalReadingParser.parse(new ByteArrayInputStream(IntervalReadingParserTest.generate(1, 3)), intervalReadings::add);
+		Assert.assertEquals(3, count);
+		Assert.assertEquals(3, intervalReadings.size());
+		for (int i=0; i<3; i++) {
+			final IntervalReading intervalReading = intervalReadings.get(i);
+			Assert.assertEquals(IntervalReadingParserTest.START + 3600L * i, intervalReading.getStart());
+			Assert.assertEquals(3600L, intervalReading.getDuration());
+			Assert.assertEquals(1000L + i, intervalReading.getCost());
+			Assert.assertEquals(500L + i, intervalReading.getValue());
+		}
+	}
+
+	@Test
+	public void testMissingCostIsSkipped() throws Exception {
+		final String xml = "<feed><IntervalReading><timePeriod><duration>3600</duration><start>100</start></timePeriod><value>7</value></IntervalReading>"
+			+ "<IntervalReading><cost>20000</cost><timePeriod><start>200</start></timePeriod></IntervalReading></feed>";
+		final List<IntervalReading> intervalReadings = new ArrayList<>();
+		Assert.assertEquals(2, IntervalReadingParser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), intervalReadings::add));
+		Assert.assertEquals(IntervalReading.MISSING, intervalReadings.get(0).getCost());
+		Assert.assertEquals(IntervalReading.MISSING, intervalReadings.get(1).getValue());
+		final ByteArrayOutputStream stax = new ByteArrayOutputStream();
+		Main.printHourlyUsingStax(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), new PrintStream(stax, true, "UTF-8"));
+		final String output = new String(stax.toByteArray(), StandardCharsets.UTF_8).trim();
+		Assert.assertTrue(output, output.startsWith("200,20000,"));
+		Assert.assertTrue(output, output.endsWith(",$2.0"));
+	}
+
+	@Test
+	public void testWhitespaceAroundNumbers() throws Exception {
+		final String xml = "<feed><IntervalReading><cost> 20000 </cost><timePeriod><duration>\n\t3600\n</duration><start> 100</start></timePeriod><value>7 </value></IntervalReading></feed>";
+		final List<IntervalReading> intervalReadings = new ArrayList<>();
+		Assert.assertEquals(1, IntervalReadingParser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), intervalReadings::add));
+		Assert.assertEquals(100L,   intervalReadings.get(0).getStart());
+		Assert.assertEquals(3600L,  intervalReadings.get(0).getDuration());
+		Assert.assertEquals(20000L, intervalReadings.get(0).getCost());
+		Assert.assertEquals(7L,     intervalReadings.get(0).getValue());
+	}
+
+	/**
+	 * Green Button layout: feed/entry/content/IntervalBlock/IntervalReading, default namespace, indented, with ReadingQuality.
+	 */
+	private static byte[] generate(final int numBlocks, final int readingsPerBlock) {
+		final StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<feed xmlns=\"http://www.w3.org/2005/Atom\">\n");
+		int reading = 0;
+		for (int block=0; block<numBlocks; block++) {
+			xml.append("  <entry>\n    <content>\n      <IntervalBlock xmlns=\"http://naesb.org/espi\">\n");
+			xml.append("        <interval><duration>86400</duration><start>").append(IntervalReadingParserTest.START).append("</start></interval>\n");
+			for (int i=0; i<readingsPerBlock; i++, reading++) {
+				xml.append("        <IntervalReading>\n");
+				xml.append("          <cost>").append(1000 + reading).append("</cost>\n");
+				xml.append("          <ReadingQuality><quality>19</quality></ReadingQuality>\n");
+				xml.append("          <timePeriod>\n            <duration>3600</duration>\n            <start>").append(IntervalReadingParserTest.START + 3600L * reading).append("</start>\n          </timePeriod>\n");
+				xml.append("          <value>").append(500 + reading).append("</value>\n");
+				xml.append("        </IntervalReading>\n");
+			}
+			xml.append("      </IntervalBlock>\n    </content>\n  </entry>\n");
+		}
+		return xml.append("</feed>\n").toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
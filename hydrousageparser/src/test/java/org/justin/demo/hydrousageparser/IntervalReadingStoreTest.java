@@ -0,0 +1,78 @@
+package org.justin.demo.hydrousageparser;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+@SuppressWarnings("static-method")
+public final class IntervalReadingStoreTest {
+	private static final long START          = 1483246800L;	// 2017-01-01T00:00:00-05:00
+	private static final int  HOURS_PER_YEAR = 8760;
+
+	@Test
+	public void testScanMatchesReadings() throws Exception {
+		final List<IntervalReading> expected = new ArrayList<>();
+		final IntervalReadingStore  store    = new IntervalReadingStore(100);	// many chunks, so windows cross chunk boundaries
+		for (int i=0; i<IntervalReadingStoreTest.HOURS_PER_YEAR; i++) {
+			final long start = IntervalReadingStoreTest.START + 3600L * i + ((i > 5000) ? 86400L : 0L);	// one day gap
+			final IntervalReading intervalReading = new IntervalReading(start, (0 == i % 1000) ? 1800L : 3600L, 1000L + (i % 97), (0 == i % 13) ? IntervalReading.MISSING : 500L + (i % 31));
+			expected.add(intervalReading);
+			store.handle(intervalReading);
+		}
+		Assert.assertEquals(expected.size(), store.size());
+		for (final int index : new int[]{0, 99, 100, 4321, expected.size() - 1}) {
+			Assert.assertEquals(expected.get(index).toString(), store.get(index).toString());
+		}
+		final long[][] windows = {{0L, Long.MAX_VALUE}, {IntervalReadingStoreTest.START + 3600L * 150 + 1, IntervalReadingStoreTest.START + 3600L * 777}, {IntervalReadingStoreTest.START + 3600L * 4990, IntervalReadingStoreTest.START + 3600L * 5030}, {0L, IntervalReadingStoreTest.START}, {Long.MAX_VALUE - 1, Long.MAX_VALUE}};
+		for (final long[] window : windows) {
+			final List<String> scanned = new ArrayList<>();
+			final int count = store.scan(window[0], window[1], (start, duration, cost, value) -> scanned.add(new IntervalReading(start, duration, cost, value).toString()));
+			final List<String> filtered = new ArrayList<>();
+			long sumCost  = 0;
+			long sumValue = 0;
+			for (final IntervalReading intervalReading : expected) {
+				if ((intervalReading.getStart() >= window[0]) && (intervalReading.getStart() < window[1])) {
+					filtered.add(intervalReading.toString());
+					sumCost  += intervalReading.getCost();
+					sumValue += (IntervalReading.MISSING == intervalReading.getValue()) ? 0L : intervalReading.getValue();
+				}
+			}
+			Assert.assertEquals(filtered, scanned);
+			Assert.assertEquals(filtered.size(), count);
+			Assert.assertEquals(sumCost, store.sumCost(window[0], window[1]));
+			Assert.assertEquals(sumValue, store.sumValue(window[0], window[1]));
+		}
+	}
+
+	@Test
+	public void testMemoryPerReading() throws Exception {
+		final IntervalReadingStore store = new IntervalReadingStore();
+		for (int i=0; i<IntervalReadingStoreTest.HOURS_PER_YEAR * 10; i++) {
+			store.add(IntervalReadingStoreTest.START + 3600L * i, 3600L, 1234L, 567L);
+		}
+		final long bytesPerReading = store.getMemoryBytes() / store.size();
+		Assert.assertTrue(bytesPerReading + " bytes per reading", bytesPerReading <= 21);	// versus about 56 for IntervalReading objects, and hundreds for DOM or String fields
+	}
+
+	@Test
+	public void testFillFromParser() throws Exception {
+		final String xml = "<feed><IntervalReading><cost>10</cost><timePeriod><duration>3600</duration><start>7200</start></timePeriod><value>1</value></IntervalReading>"
+			+ "<IntervalReading><cost>20</cost><timePeriod><duration>3600</duration><start>10800</start></timePeriod><value>2</value></IntervalReading></feed>";
+		final IntervalReadingStore store = new IntervalReadingStore();
+		Assert.assertEquals(2, IntervalReadingParser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), store));
+		Assert.assertEquals(2, store.size());
+		Assert.assertEquals(30L, store.sumCost(0L, 20000L));
+		Assert.assertEquals(2L, store.sumValue(10800L, 10801L));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testOutOfOrder() {
+		final IntervalReadingStore store = new IntervalReadingStore();
+		store.add(7200L, 3600L, 1L, 1L);
+		store.add(3600L, 3600L, 1L, 1L);
+	}
+}